@@ -0,0 +1,49 @@
+-- 按日查询记录的性能验证脚本（请在测试库执行，不要在生产库执行）
+-- 目标：1000万行数据下，单用户单日范围查询走 (user_id, record_type, timestamp, id) 索引，耗时保持在亚毫秒级
+
+-- 1. 构造测试表（结构与索引同 smoking_records）
+DROP TABLE IF EXISTS smoking_records_bench;
+CREATE TABLE smoking_records_bench LIKE smoking_records;
+
+-- 2. 生成1000万行数据：10000个用户，每人约1000条，时间分布在最近3年
+--    smoking_records 的 id 由序列 smoking_records_seq 分配、不是自增列，这里用序号 n 直接作为 id
+SET SESSION cte_max_recursion_depth = 10000000;
+INSERT INTO smoking_records_bench (id, user_id, record_type, timestamp, cigarette_count, created_at, updated_at)
+WITH RECURSIVE seq (n) AS (
+    SELECT 1
+    UNION ALL
+    SELECT n + 1 FROM seq WHERE n < 10000000
+)
+SELECT n,
+       n % 10000 + 1,
+       IF(n % 4 = 0, 'TRAINING', 'SMOKING'),
+       TIMESTAMPADD(SECOND, -FLOOR(RAND(n) * 94608000), UTC_TIMESTAMP()),
+       1,
+       NOW(),
+       NOW()
+FROM seq;
+
+ANALYZE TABLE smoking_records_bench;
+
+-- 3. 北京时间 2024-06-01 对应的UTC区间为 [2024-05-31 16:00:00, 2024-06-01 16:00:00)
+--    期望执行计划：type=range，key=idx_smoking_records_user_type_time_id，rows 为个位数
+EXPLAIN
+SELECT * FROM smoking_records_bench
+WHERE user_id = 42 AND record_type = 'SMOKING'
+  AND timestamp >= '2024-05-31 16:00:00' AND timestamp < '2024-06-01 16:00:00'
+ORDER BY timestamp DESC, id DESC;
+
+-- 4. 实际耗时（MySQL 8.0.18+），关注 actual time
+EXPLAIN ANALYZE
+SELECT * FROM smoking_records_bench
+WHERE user_id = 42 AND record_type = 'SMOKING'
+  AND timestamp >= '2024-05-31 16:00:00' AND timestamp < '2024-06-01 16:00:00'
+ORDER BY timestamp DESC, id DESC;
+
+-- 5. 对比：原 DATE(created_at) 写法无法使用索引，会扫描该用户全部记录
+EXPLAIN ANALYZE
+SELECT COUNT(*) FROM smoking_records_bench
+WHERE user_id = 42 AND record_type = 'SMOKING' AND DATE(created_at) = CURRENT_DATE;
+
+-- 6. 清理
+-- DROP TABLE smoking_records_bench;
@@ -0,0 +1,20 @@
+-- 每日记录计数表初始化脚本
+-- daily_record_counters 由 JPA 自动建表，本脚本用于上线时根据历史记录回填计数
+-- 统计口径与原 DATE(created_at) 一致（created_at 为北京时间）
+
+-- 1. 回填历史计数（可重复执行）
+INSERT INTO daily_record_counters (user_id, record_date, smoking_count, training_count, updated_at)
+SELECT user_id,
+       DATE(created_at)                                      AS record_date,
+       SUM(CASE WHEN record_type = 'SMOKING' THEN 1 ELSE 0 END)  AS smoking_count,
+       SUM(CASE WHEN record_type = 'TRAINING' THEN 1 ELSE 0 END) AS training_count,
+       NOW()
+FROM smoking_records
+GROUP BY user_id, DATE(created_at)
+ON DUPLICATE KEY UPDATE
+    smoking_count  = VALUES(smoking_count),
+    training_count = VALUES(training_count),
+    updated_at     = VALUES(updated_at);
+
+-- 2. 验证回填结果
+-- SELECT * FROM daily_record_counters WHERE record_date = CURDATE() LIMIT 20;
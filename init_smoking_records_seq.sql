@@ -0,0 +1,13 @@
+-- smoking_records 主键由 IDENTITY 改为池化序列（MySQL 下由 smoking_records_seq 表模拟）
+-- 序列表由 JPA 自动创建，初始值为1，需调整到现有最大ID之后，避免主键冲突
+-- 应用启动时 SmokingRecordSequenceInitializer 会自动完成此调整，本脚本仅供手工检查或修复
+
+-- 1. 查看当前最大ID
+SELECT MAX(id) AS max_id FROM smoking_records;
+
+-- 2. 将序列起点设置为最大ID + 1（allocationSize = 50，预留一个分配区间）
+UPDATE smoking_records_seq
+SET next_val = (SELECT IFNULL(MAX(id), 0) + 51 FROM smoking_records);
+
+-- 3. 验证结果
+SELECT next_val FROM smoking_records_seq;
@@ -3,12 +3,14 @@ package com.jiayan.quitsmoking;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 知行戒烟APP主应用程序类
  */
 @SpringBootApplication(scanBasePackages = "com.jiayan.quitsmoking")
 @EnableJpaRepositories
+@EnableScheduling
 public class QuitSmokingApplication {
 
     public static void main(String[] args) {
@@ -1,5 +1,9 @@
 package com.jiayan.quitsmoking.config;
 
+import com.jiayan.quitsmoking.security.JwtAuthenticationFilter;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
+import com.jiayan.quitsmoking.util.JwtUtil;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -9,6 +13,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -20,8 +25,12 @@ import java.util.Arrays;
  */
 @Configuration
 @EnableWebSecurity
+@RequiredArgsConstructor
 public class SecurityConfig {
 
+    private final JwtUtil jwtUtil;
+    private final UserPrincipalService userPrincipalService;
+
     /**
      * 配置HTTP安全
      */
@@ -47,7 +56,10 @@ public class SecurityConfig {
                 .requestMatchers("/api/v1/agreements/**").permitAll() // AgreementController
                 .requestMatchers("/api/v1/test-agreements/**").permitAll() // TestAgreementController
                 .anyRequest().permitAll() // 暂时允许所有请求
-            );
+            )
+            // 每个请求统一解析一次Token和当前用户
+            .addFilterBefore(new JwtAuthenticationFilter(jwtUtil, userPrincipalService),
+                    UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
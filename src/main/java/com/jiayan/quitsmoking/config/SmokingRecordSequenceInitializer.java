@@ -0,0 +1,47 @@
+package com.jiayan.quitsmoking.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 吸烟记录主键序列初始化
+ * smoking_records 主键由 IDENTITY 改为池化序列后，JPA 自动建出的 smoking_records_seq 从 1 开始，
+ * 会与已有记录主键冲突。启动时（表结构更新之后、对外提供服务之前）把序列抬到现有最大ID之后，只增不减
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class SmokingRecordSequenceInitializer {
+
+    /**
+     * 预留一个分配区间（allocationSize = 50）
+     */
+    private static final String SEED_SQL =
+            "UPDATE smoking_records_seq s " +
+            "JOIN (SELECT IFNULL(MAX(id), 0) + 51 AS v FROM smoking_records) m " +
+            "SET s.next_val = m.v WHERE s.next_val < m.v";
+
+    private static final String INIT_SQL =
+            "INSERT INTO smoking_records_seq (next_val) SELECT IFNULL(MAX(id), 0) + 51 FROM smoking_records";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void seed() {
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM smoking_records_seq", Integer.class);
+        if (rows == null || rows == 0) {
+            jdbcTemplate.update(INIT_SQL);
+            log.info("初始化吸烟记录主键序列");
+            return;
+        }
+        int updated = jdbcTemplate.update(SEED_SQL);
+        if (updated > 0) {
+            log.info("吸烟记录主键序列已调整到现有最大ID之后");
+        }
+    }
+}
@@ -1,33 +1,40 @@
 package com.jiayan.quitsmoking.config;
 
+import com.jiayan.quitsmoking.media.StreamingMultipartResolver;
+import com.jiayan.quitsmoking.security.CurrentUserArgumentResolver;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    /**
+     * 替代默认 multipart 解析器：流式上传接口（/upload/stream）不做预解析，由接口直接读取请求体
+     */
+    @Bean
+    public MultipartResolver multipartResolver(MultipartProperties multipartProperties) {
+        StreamingMultipartResolver resolver = new StreamingMultipartResolver();
+        resolver.setResolveLazily(multipartProperties.isResolveLazily());
+        return resolver;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CurrentUserArgumentResolver());
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/*.html")
                 .addResourceLocations("classpath:/static/");
         
-        registry.addResourceHandler("/uploads/backgrounds/**")
-                .addResourceLocations("file:uploads/backgrounds/");
-        
-        registry.addResourceHandler("/uploads/avatars/**")
-                .addResourceLocations("file:uploads/avatars/");
-        
-        registry.addResourceHandler("/uploads/audios/**")
-                .addResourceLocations("file:uploads/audios/");
-        
-        registry.addResourceHandler("/uploads/diaries/**")
-                .addResourceLocations("file:uploads/diaries/");
-        
-        registry.addResourceHandler("/uploads/articles/**")
-                .addResourceLocations("file:uploads/articles/");
-        
-        registry.addResourceHandler("/uploads/category-icons/**")
-                .addResourceLocations("file:uploads/category-icons/");
+        // /uploads/** 下的上传文件由 UploadMediaController 输出（支持 Range、条件请求和零拷贝）
     }
 }
\ No newline at end of file
@@ -1,6 +1,11 @@
 package com.jiayan.quitsmoking.controller;
 
 import com.jiayan.quitsmoking.common.ApiResponse;
+import com.jiayan.quitsmoking.media.BlobStore;
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
+import com.jiayan.quitsmoking.media.StreamingUploadReader;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
@@ -9,7 +14,6 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -17,8 +21,13 @@ import java.util.UUID;
 @RestController
 @RequestMapping("/api/v1/knowledge/articles/images")
 @Slf4j
+@RequiredArgsConstructor
 public class ArticleImageController {
 
+    private final BlobStore blobStore;
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
+    private final StreamingUploadReader streamingUploadReader;
+
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ApiResponse<String> upload(@RequestParam("file") MultipartFile file) {
         try {
@@ -51,7 +60,8 @@ public class ArticleImageController {
             }
             Path dest = dir.resolve(name);
             log.info("保存文章图片到: {}", dest.toAbsolutePath());
-            Files.copy(file.getInputStream(), dest, StandardCopyOption.REPLACE_EXISTING);
+            blobStore.store(file.getInputStream(), dest);
+            imageDerivativeGenerator.generateAsync(dest);
 
             String url = "/uploads/articles/" + name;
             return ApiResponse.success("上传成功", url);
@@ -63,4 +73,41 @@ public class ArticleImageController {
             return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 流式上传文章图片（参数同 /upload）：请求体直接写入存储，不经临时文件；按文件头识别图片类型
+     */
+    @PostMapping(value = StreamingUploadReader.STREAM_PATH_SUFFIX, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ApiResponse<String> uploadStream(HttpServletRequest request) {
+        try {
+            Path dir = Path.of("uploads", "articles");
+            Files.createDirectories(dir);
+            String name = streamingUploadReader.readFirstFile(request, "file", 20L * 1024 * 1024, (original, content) -> {
+                StreamingUploadReader.DetectedImage image = StreamingUploadReader.detectImage(content);
+                if (image == null) {
+                    throw new IllegalArgumentException("仅支持图片文件");
+                }
+                String date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+                String fileName = date + "_" + UUID.randomUUID().toString().substring(0,8) + "." + image.extension();
+                Path dest = dir.resolve(fileName);
+                blobStore.store(image.content(), dest);
+                imageDerivativeGenerator.generateAsync(dest);
+                log.info("文章图片流式上传: name={}, size={} bytes, 保存到: {}", original, Files.size(dest), dest.toAbsolutePath());
+                return fileName;
+            });
+            if (name == null) return ApiResponse.error(400, "文件为空");
+            return ApiResponse.success("上传成功", "/uploads/articles/" + name);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(400, e.getMessage());
+        } catch (IOException e) {
+            if (StreamingUploadReader.isFileSizeExceeded(e)) {
+                return ApiResponse.error(400, "图片大小不能超过20MB");
+            }
+            log.error("图片上传失败(IO)", e);
+            return ApiResponse.error(500, "IO失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("图片上传失败", e);
+            return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
+        }
+    }
+}
@@ -1,25 +1,29 @@
 package com.jiayan.quitsmoking.controller;
 
 import com.jiayan.quitsmoking.common.ApiResponse;
+import com.jiayan.quitsmoking.dto.AudioDownload;
 import com.jiayan.quitsmoking.dto.AudioRequest;
 import com.jiayan.quitsmoking.dto.AudioResponse;
+import com.jiayan.quitsmoking.enums.ErrorCode;
+import com.jiayan.quitsmoking.exception.BusinessException;
+import com.jiayan.quitsmoking.media.MediaFileSender;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.AudioService;
-import com.jiayan.quitsmoking.util.JwtUtil;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaTypeFactory;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 
 /**
  * 音频管理控制器
@@ -31,7 +35,7 @@ import java.nio.file.Paths;
 public class AudioController {
     
     private final AudioService audioService;
-    private final JwtUtil jwtUtil;
+    private final MediaFileSender mediaFileSender;
     
     /**
      * 创建音频
@@ -39,16 +43,14 @@ public class AudioController {
     @PostMapping
     public ApiResponse<AudioResponse> createAudio(
             @Valid @RequestBody AudioRequest request,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
         
         try {
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ApiResponse.error(401, "未提供有效的认证Token");
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
             AudioResponse response = audioService.createAudio(userId, request);
             return ApiResponse.success(response);
         } catch (Exception e) {
@@ -64,16 +66,14 @@ public class AudioController {
     public ApiResponse<AudioResponse> updateAudio(
             @PathVariable Long audioId,
             @Valid @RequestBody AudioRequest request,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
         
         try {
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ApiResponse.error(401, "未提供有效的认证Token");
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
             AudioResponse response = audioService.updateAudio(userId, audioId, request);
             return ApiResponse.success(response);
         } catch (Exception e) {
@@ -95,15 +95,13 @@ public class AudioController {
      * 获取用户的音频列表
      */
     @GetMapping("/my")
-    public ApiResponse<List<AudioResponse>> getMyAudios(HttpServletRequest httpRequest) {
+    public ApiResponse<List<AudioResponse>> getMyAudios(@CurrentUser UserPrincipal currentUser) {
         try {
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ApiResponse.error(401, "未提供有效的认证Token");
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
             List<AudioResponse> responses = audioService.getUserAudios(userId);
             return ApiResponse.success(responses);
         } catch (Exception e) {
@@ -136,16 +134,14 @@ public class AudioController {
     @DeleteMapping("/{audioId}")
     public ApiResponse<Void> deleteAudio(
             @PathVariable Long audioId,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
         
         try {
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ApiResponse.error(401, "未提供有效的认证Token");
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
             audioService.deleteAudio(userId, audioId);
             return ApiResponse.success(null);
         } catch (Exception e) {
@@ -160,16 +156,14 @@ public class AudioController {
     @PutMapping("/{audioId}/toggle")
     public ApiResponse<AudioResponse> toggleAudioStatus(
             @PathVariable Long audioId,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
         
         try {
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ApiResponse.error(401, "未提供有效的认证Token");
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
             AudioResponse response = audioService.toggleAudioStatus(userId, audioId);
             return ApiResponse.success(response);
         } catch (Exception e) {
@@ -180,64 +174,44 @@ public class AudioController {
     
     /**
      * 下载音频文件
+     * 支持 Range（训练播放器拖动、断点续传）和 ETag / Last-Modified 条件请求
      */
     @GetMapping("/download/{audioId}")
-    public ResponseEntity<Resource> downloadAudio(
+    public void downloadAudio(
             @PathVariable Long audioId,
-            HttpServletRequest httpRequest) {
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse,
+            @CurrentUser UserPrincipal currentUser) throws IOException {
         
         try {
-            Long userId = null;
+            // 用户ID可选，未登录或Token无效时以匿名用户身份下载
+            Long userId = currentUser != null ? currentUser.getId() : null;
             
-            // 尝试获取用户ID（可选）
-            String token = extractTokenFromHeader(httpRequest);
-            if (token != null) {
-                try {
-                    String userIdStr = jwtUtil.getUserIdFromToken(token);
-                    userId = Long.valueOf(userIdStr);
-                } catch (Exception e) {
-                    log.warn("Token无效，将以匿名用户身份下载");
-                }
-            }
-            
-            // 下载音频文件
-            Resource resource = audioService.downloadAudio(audioId, userId);
+            // 一次（缓存的）查询完成权限校验并得到文件路径和下载文件名
+            AudioDownload download = audioService.resolveDownload(audioId, userId);
             
-            // 获取音频信息用于设置文件名
-            AudioResponse audio = audioService.getAudio(audioId);
-            String downloadFileName = audio.getFileName();
-            
-            // 如果有描述，使用描述作为文件名
-            if (audio.getDescription() != null && !audio.getDescription().isEmpty()) {
-                String extension = "";
-                int lastDot = downloadFileName.lastIndexOf('.');
-                if (lastDot > 0) {
-                    extension = downloadFileName.substring(lastDot);
-                }
-                downloadFileName = audio.getDescription() + extension;
-            }
-            
-            // 设置响应头
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                        "attachment; filename=\"" + downloadFileName + "\"")
-                    .body(resource);
+            String contentDisposition = ContentDisposition.attachment()
+                    .filename(download.getDownloadFileName(), StandardCharsets.UTF_8)
+                    .build()
+                    .toString();
+            // 权限相关的响应只允许客户端私有缓存，每次用 ETag 重新验证
+            mediaFileSender.send(httpRequest, httpResponse, download.getFilePath(),
+                    MediaTypeFactory.getMediaType(download.getFilePath().getFileName().toString())
+                            .orElse(MediaType.APPLICATION_OCTET_STREAM),
+                    CacheControl.noCache().cachePrivate(), contentDisposition);
                     
-        } catch (Exception e) {
+        } catch (BusinessException e) {
+            log.warn("下载音频失败，音频ID: {}, 原因: {}", audioId, e.getMessage());
+            if (!httpResponse.isCommitted()) {
+                int code = e.getCode();
+                httpResponse.sendError(code == ErrorCode.NOT_FOUND.getCode() || code == ErrorCode.FORBIDDEN.getCode()
+                        ? code : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } catch (IOException | RuntimeException e) {
             log.error("下载音频时发生异常，音频ID: {}", audioId, e);
-            return ResponseEntity.internalServerError().build();
-        }
-    }
-    
-    /**
-     * 从请求头中提取Token
-     */
-    private String extractTokenFromHeader(HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return authHeader.substring(7);
+            if (!httpResponse.isCommitted()) {
+                httpResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
-        return null;
     }
 } 
\ No newline at end of file
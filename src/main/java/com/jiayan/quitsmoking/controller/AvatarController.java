@@ -1,20 +1,25 @@
 package com.jiayan.quitsmoking.controller;
 
 import com.jiayan.quitsmoking.common.ApiResponse;
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
+import com.jiayan.quitsmoking.media.ImageVariant;
+import com.jiayan.quitsmoking.media.MediaFileSender;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.AvatarService;
-import com.jiayan.quitsmoking.util.JwtUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.CacheControl;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * 头像管理控制器
@@ -26,18 +31,18 @@ import java.net.URL;
 public class AvatarController {
 
     private final AvatarService avatarService;
-    private final JwtUtil jwtUtil;
+    private final MediaFileSender mediaFileSender;
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
 
     /**
      * 上传头像文件
      */
     @PostMapping("/upload")
     public ApiResponse<String> uploadAvatar(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestParam("file") MultipartFile file) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = currentUser != null ? currentUser.getId() : null;
         
         // 验证Token和用户ID
         if (userId == null) {
@@ -47,7 +52,7 @@ public class AvatarController {
         log.info("上传头像: userId={}, fileName={}, size={}", userId, file.getOriginalFilename(), file.getSize());
         
         try {
-            String avatarFileName = avatarService.uploadAvatar(Long.valueOf(userId), file);
+            String avatarFileName = avatarService.uploadAvatar(userId, file);
             return ApiResponse.success("头像上传成功", avatarFileName);
         } catch (Exception e) {
             log.error("头像上传失败: userId={}, error={}", userId, e.getMessage(), e);
@@ -60,11 +65,10 @@ public class AvatarController {
      */
     @PostMapping("/download")
     public ApiResponse<String> downloadAvatar(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestParam String avatarUrl) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = currentUser != null ? currentUser.getId() : null;
         
         // 验证Token和用户ID
         if (userId == null) {
@@ -83,7 +87,7 @@ public class AvatarController {
             URL url = new URL(avatarUrl.trim());
             log.info("URL解析成功: protocol={}, host={}, path={}", url.getProtocol(), url.getHost(), url.getPath());
             
-            String avatarFileName = avatarService.downloadAvatar(Long.valueOf(userId), url);
+            String avatarFileName = avatarService.downloadAvatar(userId, url);
             return ApiResponse.success("头像下载成功", avatarFileName);
         } catch (MalformedURLException e) {
             log.error("URL格式错误: userId={}, url={}, error={}", userId, avatarUrl, e.getMessage());
@@ -96,47 +100,46 @@ public class AvatarController {
 
     /**
      * 获取头像文件
+     * size 为 thumb/small/medium 时返回对应规格的缩略图，不传或未知时返回原图
      */
     @GetMapping("/{fileName}")
-    public ResponseEntity<Resource> getAvatar(@PathVariable String fileName) {
+    public void getAvatar(@PathVariable String fileName,
+                          @RequestParam(required = false) String size,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        Path file;
         try {
-            Resource resource = avatarService.getAvatarFile(fileName);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_JPEG)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                    .body(resource);
+            file = avatarService.getAvatarFile(fileName).getFile().toPath();
         } catch (Exception e) {
             log.error("获取头像失败: fileName={}, error={}", fileName, e.getMessage(), e);
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        file = imageDerivativeGenerator.resolve(file, ImageVariant.fromCode(size));
+        // 头像文件名带时间戳和随机段，更换头像会生成新文件，可长期缓存
+        mediaFileSender.send(request, response, file, CacheControl.maxAge(Duration.ofDays(30)).cachePublic());
     }
 
     /**
      * 删除头像
      */
     @DeleteMapping("/delete")
-    public ApiResponse<Void> deleteAvatar(@RequestHeader("Authorization") String authHeader) {
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+    public ApiResponse<Void> deleteAvatar(@CurrentUser UserPrincipal currentUser) {
+        Long userId = currentUser != null ? currentUser.getId() : null;
+        
+        // 验证Token和用户ID
+        if (userId == null) {
+            return ApiResponse.error(401, "Token无效或已过期");
+        }
         
         log.info("删除头像: userId={}", userId);
         
         try {
-            avatarService.deleteAvatar(Long.valueOf(userId));
+            avatarService.deleteAvatar(userId);
             return ApiResponse.success("头像删除成功", null);
         } catch (Exception e) {
             log.error("头像删除失败: userId={}, error={}", userId, e.getMessage(), e);
             return ApiResponse.error(400, "头像删除失败: " + e.getMessage());
         }
     }
-
-    /**
-     * 从Authorization header中提取Token
-     */
-    private String extractToken(String authHeader) {
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return authHeader.substring(7);
-        }
-        throw new IllegalArgumentException("Invalid authorization header");
-    }
 } 
\ No newline at end of file
@@ -1,20 +1,25 @@
 package com.jiayan.quitsmoking.controller;
 
 import com.jiayan.quitsmoking.common.ApiResponse;
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
+import com.jiayan.quitsmoking.media.ImageVariant;
+import com.jiayan.quitsmoking.media.MediaFileSender;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.BackgroundService;
-import com.jiayan.quitsmoking.util.JwtUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.CacheControl;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -27,18 +32,18 @@ import java.util.Map;
 public class BackgroundController {
 
     private final BackgroundService backgroundService;
-    private final JwtUtil jwtUtil;
+    private final MediaFileSender mediaFileSender;
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
 
     /**
      * 上传背景图文件
      */
     @PostMapping("/upload")
     public ApiResponse<String> uploadBackground(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestParam("file") MultipartFile file) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = currentUser != null ? currentUser.getId() : null;
         
         // 验证Token和用户ID
         if (userId == null) {
@@ -48,7 +53,7 @@ public class BackgroundController {
         log.info("上传背景图: userId={}, fileName={}, size={}", userId, file.getOriginalFilename(), file.getSize());
         
         try {
-            String backgroundFileName = backgroundService.uploadBackground(Long.valueOf(userId), file);
+            String backgroundFileName = backgroundService.uploadBackground(userId, file);
             return ApiResponse.success("背景图上传成功", backgroundFileName);
         } catch (Exception e) {
             log.error("背景图上传失败: userId={}, error={}", userId, e.getMessage(), e);
@@ -61,11 +66,10 @@ public class BackgroundController {
      */
     @PostMapping("/download")
     public ApiResponse<String> downloadBackground(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestBody Map<String, String> request) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = currentUser != null ? currentUser.getId() : null;
         
         // 验证Token和用户ID
         if (userId == null) {
@@ -85,7 +89,7 @@ public class BackgroundController {
             URL url = new URL(backgroundUrl.trim());
             log.info("URL解析成功: protocol={}, host={}, path={}", url.getProtocol(), url.getHost(), url.getPath());
             
-            String backgroundFileName = backgroundService.downloadBackground(Long.valueOf(userId), url);
+            String backgroundFileName = backgroundService.downloadBackground(userId, url);
             return ApiResponse.success("背景图下载成功", backgroundFileName);
         } catch (MalformedURLException e) {
             log.error("URL格式错误: userId={}, url={}, error={}", userId, backgroundUrl, e.getMessage());
@@ -98,34 +102,39 @@ public class BackgroundController {
 
     /**
      * 获取背景图文件
+     * size 为 thumb/small/medium 时返回对应规格的缩略图，不传或未知时返回原图
      */
     @GetMapping("/{fileName}")
-    public ResponseEntity<Resource> getBackground(@PathVariable String fileName) {
+    public void getBackground(@PathVariable String fileName,
+                              @RequestParam(required = false) String size,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        Path file;
         try {
-            Resource resource = backgroundService.getBackgroundFile(fileName);
-            
-            if (resource.exists() && resource.isReadable()) {
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                        .contentType(MediaType.IMAGE_JPEG) // 根据实际文件类型调整
-                        .body(resource);
-            } else {
-                log.warn("背景图文件不存在或无法读取: fileName={}", fileName);
-                return ResponseEntity.notFound().build();
-            }
+            file = backgroundService.getBackgroundFile(fileName).getFile().toPath();
+        } catch (IOException e) {
+            log.warn("背景图文件不存在或无法读取: fileName={}", fileName);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         } catch (Exception e) {
             log.error("获取背景图文件失败: fileName={}, error={}", fileName, e.getMessage(), e);
-            return ResponseEntity.internalServerError().build();
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
         }
+        file = imageDerivativeGenerator.resolve(file, ImageVariant.fromCode(size));
+        // 背景图文件名带时间戳和随机段（默认背景除外），默认背景靠 ETag 重新验证
+        CacheControl cacheControl = "default-bg.jpg".equals(fileName)
+                ? CacheControl.noCache()
+                : CacheControl.maxAge(Duration.ofDays(30)).cachePublic();
+        mediaFileSender.send(request, response, file, cacheControl);
     }
 
     /**
      * 删除背景图
      */
     @DeleteMapping("/delete")
-    public ApiResponse<Void> deleteBackground(@RequestHeader("Authorization") String authHeader) {
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+    public ApiResponse<Void> deleteBackground(@CurrentUser UserPrincipal currentUser) {
+        Long userId = currentUser != null ? currentUser.getId() : null;
         
         // 验证Token和用户ID
         if (userId == null) {
@@ -135,21 +144,11 @@ public class BackgroundController {
         log.info("删除背景图: userId={}", userId);
         
         try {
-            backgroundService.deleteBackground(Long.valueOf(userId));
+            backgroundService.deleteBackground(userId);
             return ApiResponse.success("背景图删除成功", null);
         } catch (Exception e) {
             log.error("背景图删除失败: userId={}, error={}", userId, e.getMessage(), e);
             return ApiResponse.error(400, "背景图删除失败: " + e.getMessage());
         }
     }
-
-    /**
-     * 从Authorization header中提取Token
-     */
-    private String extractToken(String authHeader) {
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return authHeader.substring(7);
-        }
-        throw new IllegalArgumentException("Invalid authorization header");
-    }
 } 
\ No newline at end of file
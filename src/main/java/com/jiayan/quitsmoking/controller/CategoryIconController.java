@@ -1,7 +1,12 @@
 package com.jiayan.quitsmoking.controller;
 
 import com.jiayan.quitsmoking.common.ApiResponse;
+import com.jiayan.quitsmoking.media.BlobStore;
+import com.jiayan.quitsmoking.media.MediaFileSender;
+import com.jiayan.quitsmoking.media.StreamingUploadReader;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -9,16 +14,21 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/knowledge/categories/icons")
+@RequiredArgsConstructor
 @Slf4j
 public class CategoryIconController {
 
+    private final MediaFileSender mediaFileSender;
+    private final BlobStore blobStore;
+    private final StreamingUploadReader streamingUploadReader;
+
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ApiResponse<String> uploadIcon(@RequestParam("file") MultipartFile file) {
         try {
@@ -57,7 +67,7 @@ public class CategoryIconController {
             
             Path dest = dir.resolve(fileName);
             log.info("保存分类图标到: {}", dest.toAbsolutePath());
-            Files.copy(file.getInputStream(), dest, StandardCopyOption.REPLACE_EXISTING);
+            blobStore.store(file.getInputStream(), dest);
 
             return ApiResponse.success("图标上传成功", fileName);
             
@@ -70,22 +80,58 @@ public class CategoryIconController {
         }
     }
 
+    /**
+     * 流式上传分类图标（参数同 /upload）：请求体直接写入存储，不经临时文件；按文件头识别图片类型
+     */
+    @PostMapping(value = StreamingUploadReader.STREAM_PATH_SUFFIX, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ApiResponse<String> uploadIconStream(jakarta.servlet.http.HttpServletRequest request) {
+        try {
+            Path dir = Path.of("uploads", "category-icons");
+            Files.createDirectories(dir);
+            
+            String fileName = streamingUploadReader.readFirstFile(request, "file", 5L * 1024 * 1024, (original, content) -> {
+                StreamingUploadReader.DetectedImage image = StreamingUploadReader.detectImage(content);
+                if (image == null) {
+                    throw new IllegalArgumentException("仅支持图片文件");
+                }
+                String date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+                String name = "category_" + date + "_" + UUID.randomUUID().toString().substring(0,8) + "." + image.extension();
+                Path dest = dir.resolve(name);
+                blobStore.store(image.content(), dest);
+                log.info("分类图标流式上传: name={}, size={} bytes, 保存到: {}", original, Files.size(dest), dest.toAbsolutePath());
+                return name;
+            });
+            
+            if (fileName == null) {
+                return ApiResponse.error(400, "文件为空");
+            }
+            return ApiResponse.success("图标上传成功", fileName);
+            
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(400, e.getMessage());
+        } catch (IOException e) {
+            if (StreamingUploadReader.isFileSizeExceeded(e)) {
+                return ApiResponse.error(400, "图标大小不能超过5MB");
+            }
+            log.error("图标上传失败(IO)", e);
+            return ApiResponse.error(500, "IO失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("图标上传失败", e);
+            return ApiResponse.error(500, "上传失败: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{fileName}")
-    public void getIcon(@PathVariable String fileName, 
+    public void getIcon(@PathVariable String fileName,
+                       jakarta.servlet.http.HttpServletRequest request,
                        jakarta.servlet.http.HttpServletResponse response) throws IOException {
-        Path iconPath = Path.of("uploads", "category-icons", fileName);
+        Path iconPath = mediaFileSender.resolve(Path.of("uploads", "category-icons"), fileName);
         
-        if (!Files.exists(iconPath)) {
+        if (iconPath == null) {
             response.setStatus(404);
             return;
         }
         
-        String contentType = Files.probeContentType(iconPath);
-        if (contentType == null) {
-            contentType = "image/png";
-        }
-        response.setContentType(contentType);
-        
-        Files.copy(iconPath, response.getOutputStream());
+        mediaFileSender.send(request, response, iconPath, CacheControl.maxAge(Duration.ofDays(30)).cachePublic());
     }
 }
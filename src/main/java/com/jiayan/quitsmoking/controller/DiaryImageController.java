@@ -1,15 +1,31 @@
 package com.jiayan.quitsmoking.controller;
 
+import com.jiayan.quitsmoking.media.BlobStore;
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
+import com.jiayan.quitsmoking.media.ImageVariant;
+import com.jiayan.quitsmoking.media.MediaFileSender;
+import com.jiayan.quitsmoking.media.StreamingUploadReader;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.util.Streams;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.UUID;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +49,22 @@ public class DiaryImageController {
     @Value("${diary.image.allowed-types:jpg,jpeg,png,gif,webp}")
     private String allowedTypes;
     
+    private final MediaFileSender mediaFileSender;
+    
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
+    
+    private final BlobStore blobStore;
+    
+    private final StreamingUploadReader streamingUploadReader;
+    
+    public DiaryImageController(MediaFileSender mediaFileSender, ImageDerivativeGenerator imageDerivativeGenerator,
+                                BlobStore blobStore, StreamingUploadReader streamingUploadReader) {
+        this.mediaFileSender = mediaFileSender;
+        this.imageDerivativeGenerator = imageDerivativeGenerator;
+        this.blobStore = blobStore;
+        this.streamingUploadReader = streamingUploadReader;
+    }
+    
     /**
      * 上传日记图片
      */
@@ -78,7 +110,8 @@ public class DiaryImageController {
                     Path filePath = Paths.get(userDir, fileName);
                     
                     // 保存文件
-                    Files.copy(file.getInputStream(), filePath);
+                    blobStore.store(file.getInputStream(), filePath);
+                    imageDerivativeGenerator.generateAsync(filePath);
                     
                     // 构建图片信息
                     Map<String, Object> imageInfo = new HashMap<>();
@@ -109,17 +142,121 @@ public class DiaryImageController {
         return response;
     }
     
+    /**
+     * 流式上传日记图片
+     * 参数同 /upload（userId 放在查询参数或位于文件之前的表单字段），文件内容边读边写入存储，不经临时文件；
+     * 按文件头识别图片类型，超过大小限制的文件在读取中途即跳过
+     */
+    @PostMapping(value = StreamingUploadReader.STREAM_PATH_SUFFIX, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Map<String, Object> uploadImagesStream(HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        List<Map<String, Object>> uploadedImages = new ArrayList<>();
+        List<Path> savedFiles = new ArrayList<>();
+        
+        try {
+            // 不能用 request.getParameter：会触发容器解析整个请求体
+            String userIdParam = UriComponentsBuilder.newInstance().query(request.getQueryString()).build()
+                    .getQueryParams().getFirst("userId");
+            Long userId = userIdParam != null ? Long.valueOf(userIdParam) : null;
+            int fileCount = 0;
+            
+            FileItemIterator items = streamingUploadReader.open(request, maxFileSize);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField()) {
+                    if ("userId".equals(item.getFieldName())) {
+                        try (InputStream in = item.openStream()) {
+                            userId = Long.valueOf(Streams.asString(in, StandardCharsets.UTF_8.name()).trim());
+                        }
+                    }
+                    continue;
+                }
+                if (!"files".equals(item.getFieldName())) {
+                    continue;
+                }
+                
+                // 验证文件数量（超过时撤销本次已保存的文件，与 /upload 一致整体失败）
+                if (++fileCount > 6) {
+                    log.warn("文件数量超过限制: {}", fileCount);
+                    deleteSavedFiles(savedFiles);
+                    response.put("success", false);
+                    response.put("message", "最多只能上传6张图片");
+                    return response;
+                }
+                if (userId == null) {
+                    response.put("success", false);
+                    response.put("message", "缺少用户ID");
+                    return response;
+                }
+                
+                String originalFilename = item.getName();
+                try (InputStream in = item.openStream()) {
+                    StreamingUploadReader.DetectedImage image = StreamingUploadReader.detectImage(in);
+                    if (image == null || !isAllowedFileType(image.extension())) {
+                        log.warn("不支持的文件类型: {}", originalFilename);
+                        continue;
+                    }
+                    
+                    Path userDir = Paths.get(uploadPath, "user_" + userId);
+                    Files.createDirectories(userDir);
+                    String fileName = UUID.randomUUID().toString() + "." + image.extension();
+                    Path filePath = userDir.resolve(fileName);
+                    blobStore.store(image.content(), filePath);
+                    savedFiles.add(filePath);
+                    
+                    long fileSize = Files.size(filePath);
+                    Map<String, Object> imageInfo = new HashMap<>();
+                    imageInfo.put("fileName", fileName);
+                    imageInfo.put("originalName", originalFilename);
+                    imageInfo.put("fileUrl", "/api/v1/diary/image/" + userId + "/" + fileName);
+                    imageInfo.put("fileSize", fileSize);
+                    imageInfo.put("uploadTime", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                    
+                    uploadedImages.add(imageInfo);
+                    log.info("图片流式上传成功: 用户{}, 文件: {}, 大小: {} bytes", userId, fileName, fileSize);
+                } catch (IOException e) {
+                    if (!StreamingUploadReader.isFileSizeExceeded(e)) {
+                        throw e;
+                    }
+                    log.warn("文件 {} 超过大小限制: {} bytes", originalFilename, maxFileSize);
+                }
+            }
+            
+            // 全部读取成功后再生成缩略图，中途失败撤销文件时不会留下孤立的规格文件
+            savedFiles.forEach(imageDerivativeGenerator::generateAsync);
+            
+            response.put("success", true);
+            response.put("message", "图片上传成功，共上传 " + uploadedImages.size() + " 张图片");
+            response.put("data", uploadedImages);
+            
+        } catch (Exception e) {
+            log.error("图片流式上传处理异常", e);
+            deleteSavedFiles(savedFiles);
+            response.put("success", false);
+            response.put("message", "图片上传失败: " + e.getMessage());
+        }
+        
+        return response;
+    }
+    
     /**
      * 获取图片
+     * 流式输出，支持条件请求（304）和 Range；文件名为随机 UUID，允许客户端长期缓存
+     * size 为 thumb/small/medium 时返回对应规格的缩略图，不传或未知时返回原图
      */
     @GetMapping("/{userId}/{fileName}")
-    public byte[] getImage(@PathVariable Long userId,
-                          @PathVariable String fileName) throws IOException {
-        Path imagePath = Paths.get(uploadPath, "user_" + userId, fileName);
-        if (!Files.exists(imagePath)) {
-            throw new IOException("图片文件不存在: " + fileName);
+    public void getImage(@PathVariable Long userId,
+                         @PathVariable String fileName,
+                         @RequestParam(required = false) String size,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Path imagePath = mediaFileSender.resolve(Paths.get(uploadPath, "user_" + userId), fileName);
+        if (imagePath == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
-        return Files.readAllBytes(imagePath);
+        imagePath = imageDerivativeGenerator.resolve(imagePath, ImageVariant.fromCode(size));
+        mediaFileSender.send(request, response, imagePath, CacheControl.maxAge(Duration.ofDays(30)).cachePrivate());
     }
     
     /**
@@ -134,6 +271,7 @@ public class DiaryImageController {
             Path imagePath = Paths.get(uploadPath, "user_" + userId, fileName);
             if (Files.exists(imagePath)) {
                 Files.delete(imagePath);
+                imageDerivativeGenerator.deleteDerivatives(imagePath);
                 log.info("图片删除成功: 用户{}, 文件: {}", userId, fileName);
                 response.put("success", true);
                 response.put("message", "图片删除成功");
@@ -150,6 +288,20 @@ public class DiaryImageController {
         return response;
     }
     
+    /**
+     * 撤销本次请求已保存的图片
+     */
+    private void deleteSavedFiles(List<Path> savedFiles) {
+        for (Path file : savedFiles) {
+            try {
+                Files.deleteIfExists(file);
+                imageDerivativeGenerator.deleteDerivatives(file);
+            } catch (IOException e) {
+                log.warn("撤销已保存图片失败: {}", file, e);
+            }
+        }
+    }
+    
     /**
      * 获取文件扩展名
      */
@@ -9,6 +9,10 @@ import com.jiayan.quitsmoking.enums.AuditStatus;
 import com.jiayan.quitsmoking.enums.BlockType;
 import com.jiayan.quitsmoking.enums.CommentStatus;
 import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
+import com.jiayan.quitsmoking.service.ArticleCacheService;
+import com.jiayan.quitsmoking.service.ArticleSearchService;
 import com.jiayan.quitsmoking.service.KnowledgeArticleService;
 import com.jiayan.quitsmoking.service.KnowledgeCommentService;
 import com.jiayan.quitsmoking.service.KnowledgeRatingService;
@@ -20,6 +24,8 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -46,6 +52,8 @@ public class KnowledgeArticleController {
     private final UserRepository userRepository;
     private final KnowledgeCommentService commentService;
     private final KnowledgeRatingService ratingService;
+    private final ArticleSearchService articleSearchService;
+    private final ArticleCacheService articleCacheService;
     
     /**
      * 创建知识文章
@@ -194,16 +202,19 @@ public class KnowledgeArticleController {
     
     /**
      * 根据ID获取文章（含内容块）
+     * 响应体按文章缓存并带 ETag，客户端携带 If-None-Match 且未变更时返回 304
      */
     @GetMapping("/{articleId}")
-    public ResponseEntity<ArticleResponse> getArticle(@PathVariable Long articleId) {
+    public ResponseEntity<byte[]> getArticle(@PathVariable Long articleId) {
         log.info("获取文章: {}", articleId);
         try {
-            KnowledgeArticle a = articleService.getArticleById(articleId);
-            if (a == null) return ResponseEntity.notFound().build();
-            ArticleResponse r = toArticleResponse(a);
-            // 若需要可在此处加载并附加内容块到响应（当前 ArticleResponse 已包含 contentBlocks 字段）
-            return ResponseEntity.ok(r);
+            // 分类、作者和内容块在同一次查询中加载
+            ArticleCacheService.CachedResponse cached = articleCacheService.getDetail(articleId, () -> {
+                KnowledgeArticle a = articleService.getArticleWithContent(articleId);
+                return a != null ? toArticleResponse(a) : null;
+            });
+            if (cached == null) return ResponseEntity.notFound().build();
+            return cachedResponse(cached);
         } catch (Exception e) {
             log.error("获取文章失败", e);
             return ResponseEntity.badRequest().build();
@@ -214,7 +225,7 @@ public class KnowledgeArticleController {
      * 分页获取文章列表
      */
     @GetMapping
-    public ResponseEntity<PageResponse<ArticleResponse>> getArticles(
+    public ResponseEntity<?> getArticles(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
@@ -229,7 +240,31 @@ public class KnowledgeArticleController {
         Sort sort = Sort.by("DESC".equalsIgnoreCase(direction) ? Sort.Direction.DESC : Sort.Direction.ASC, sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        Page<KnowledgeArticle> articlePage;
+        // 关键词搜索组合较多、命中率低，不缓存
+        if (keyword == null || keyword.isBlank()) {
+            String cacheKey = String.join("|", "list", String.valueOf(page), String.valueOf(size), sortBy,
+                    direction.toUpperCase(), String.valueOf(categoryId), String.valueOf(status),
+                    String.valueOf(auditStatus));
+            try {
+                return cachedResponse(articleCacheService.getList(cacheKey,
+                        () -> loadArticles(null, categoryId, status, auditStatus, pageable)));
+            } catch (Exception e) {
+                log.error("获取文章列表失败", e);
+                return ResponseEntity.internalServerError().body(PageResponse.empty());
+            }
+        }
+        
+        try {
+            return ResponseEntity.ok(loadArticles(keyword, categoryId, status, auditStatus, pageable));
+        } catch (Exception e) {
+            log.error("获取文章列表失败", e);
+            return ResponseEntity.internalServerError().body(PageResponse.empty());
+        }
+    }
+    
+    private PageResponse<ArticleResponse> loadArticles(String keyword, Long categoryId, String status,
+                                                       String auditStatus, Pageable pageable) {
+        Page<ArticleSummary> articlePage;
         try {
             ArticleStatus articleStatus = null;
             AuditStatus as = null;
@@ -244,14 +279,21 @@ public class KnowledgeArticleController {
             // 枚举转换失败，返回空结果，避免500
             log.warn("筛选参数无效: status={}, auditStatus={}", status, auditStatus);
             articlePage = Page.empty(pageable);
-        } catch (Exception e) {
-            log.error("获取文章列表失败", e);
-            return ResponseEntity.internalServerError().body(PageResponse.empty());
         }
         
         Page<ArticleResponse> mapped = articlePage.map(this::toArticleResponse);
-        PageResponse<ArticleResponse> body = PageResponse.of(mapped);
-        return ResponseEntity.ok(body);
+        return PageResponse.of(mapped);
+    }
+    
+    /**
+     * 缓存响应统一输出：JSON 字节 + ETag，no-cache 要求客户端每次携带 If-None-Match 重新验证
+     */
+    private ResponseEntity<byte[]> cachedResponse(ArticleCacheService.CachedResponse cached) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(cached.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(cached.body());
     }
     
     private ArticleResponse toArticleResponse(KnowledgeArticle a) {
@@ -298,6 +340,34 @@ public class KnowledgeArticleController {
         return r;
     }
     
+    /**
+     * 列表项转换，列表不返回正文和内容块
+     */
+    private ArticleResponse toArticleResponse(ArticleSummary s) {
+        ArticleResponse r = new ArticleResponse();
+        r.setId(s.getId());
+        r.setTitle(s.getTitle());
+        r.setCategoryId(s.getCategoryId());
+        r.setCategoryName(s.getCategoryName());
+        r.setAuthorId(s.getAuthorId());
+        r.setAuthorName(s.getAuthorName());
+        r.setSource(s.getSource());
+        r.setViewCount(s.getViewCount());
+        r.setLikeCount(s.getLikeCount());
+        r.setDislikeCount(s.getDislikeCount());
+        r.setRatingScore(s.getRatingScore());
+        r.setRatingCount(s.getRatingCount());
+        r.setStatus(s.getStatus());
+        r.setAuditStatus(s.getAuditStatus());
+        r.setAuditComment(s.getAuditComment());
+        r.setPublishTime(s.getPublishTime());
+        r.setLastEditTime(s.getLastEditTime());
+        r.setCreatedAt(s.getCreatedAt());
+        r.setUpdatedAt(s.getUpdatedAt());
+        r.setHighlight(s.getHighlight());
+        return r;
+    }
+    
     private String safeDisplayName(KnowledgeArticle a) {
         try {
             return a.getAuthor() != null && a.getAuthor().getNickname() != null
@@ -312,7 +382,7 @@ public class KnowledgeArticleController {
      * 根据分类ID获取文章
      */
     @GetMapping("/by-category/{categoryId}")
-    public ResponseEntity<PageResponse<ArticleResponse>> getArticlesByCategory(
+    public ResponseEntity<byte[]> getArticlesByCategory(
             @PathVariable Long categoryId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
@@ -320,9 +390,9 @@ public class KnowledgeArticleController {
         
         Sort sort = Sort.by(Sort.Direction.DESC, "createdAt");
         Pageable pageable = PageRequest.of(page, size, sort);
-        Page<ArticleResponse> mapped = articleService.getArticlesByCategory(categoryId, pageable)
-                .map(this::toArticleResponse);
-        return ResponseEntity.ok(PageResponse.of(mapped));
+        String cacheKey = "category|" + categoryId + "|" + page + "|" + size;
+        return cachedResponse(articleCacheService.getList(cacheKey, () -> PageResponse.of(
+                articleService.getArticlesByCategory(categoryId, pageable).map(this::toArticleResponse))));
     }
     
     /**
@@ -342,44 +412,58 @@ public class KnowledgeArticleController {
         return ResponseEntity.ok(PageResponse.of(mapped));
     }
     
+    /**
+     * 重建文章全文检索索引
+     */
+    @PostMapping("/search/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        log.info("重建文章检索索引");
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("indexed", articleSearchService.rebuild());
+        return ResponseEntity.ok(result);
+    }
+    
     /**
      * 获取热门文章
      */
     @GetMapping("/popular")
-    public ResponseEntity<PageResponse<ArticleResponse>> getPopularArticles(
+    public ResponseEntity<byte[]> getPopularArticles(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         log.info("获取热门文章: page={}, size={}", page, size);
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<ArticleResponse> mapped = articleService.getPopularArticles(pageable)
-                .map(this::toArticleResponse);
-        return ResponseEntity.ok(PageResponse.of(mapped));
+        String cacheKey = "popular|" + page + "|" + size;
+        return cachedResponse(articleCacheService.getList(cacheKey, () -> PageResponse.of(
+                articleService.getPopularArticles(pageable).map(this::toArticleResponse))));
     }
     
     /**
      * 获取最新文章
      */
     @GetMapping("/latest")
-    public ResponseEntity<PageResponse<ArticleResponse>> getLatestArticles(
+    public ResponseEntity<byte[]> getLatestArticles(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         log.info("获取最新文章: page={}, size={}", page, size);
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<ArticleResponse> mapped = articleService.getLatestArticles(pageable)
-                .map(this::toArticleResponse);
-        return ResponseEntity.ok(PageResponse.of(mapped));
+        String cacheKey = "latest|" + page + "|" + size;
+        return cachedResponse(articleCacheService.getList(cacheKey, () -> PageResponse.of(
+                articleService.getLatestArticles(pageable).map(this::toArticleResponse))));
     }
     
     /**
      * 增加文章浏览次数
      */
     @PostMapping("/{articleId}/view")
-    public ResponseEntity<Void> incrementViewCount(@PathVariable Long articleId) {
-        log.info("增加文章浏览次数: {}", articleId);
+    public ResponseEntity<Void> incrementViewCount(@PathVariable Long articleId,
+                                                   @CurrentUser UserPrincipal currentUser) {
+        log.debug("增加文章浏览次数: {}", articleId);
         
-        // TODO: 实现浏览次数增加逻辑
+        articleService.incrementViewCount(articleId, currentUser != null ? currentUser.getId() : null);
         
         return ResponseEntity.ok().build();
     }
@@ -527,9 +611,10 @@ public class KnowledgeArticleController {
         log.info("获取文章评分: articleId={}", articleId);
         
         try {
-            // 调用评分服务获取文章评分统计
-            Double averageRating = ratingService.calculateAverageRating(articleId);
-            Map<Integer, Long> distribution = ratingService.getRatingDistribution(articleId);
+            // 调用评分服务获取文章评分统计（增量维护的聚合，一次读取）
+            RatingSummary summary = ratingService.getRatingSummary(articleId);
+            Double averageRating = summary.getAverageRating();
+            Map<Integer, Long> distribution = summary.getDistribution();
             
             // 添加空值检查
             if (averageRating == null) {
@@ -593,46 +678,17 @@ public class KnowledgeArticleController {
         log.info("获取文章评论统计: articleId={}", articleId);
         
         try {
-            // 调用评论服务获取评论统计
-            Pageable pageable = PageRequest.of(0, 1000); // 获取足够多的评论来计算统计
-            Page<KnowledgeComment> comments = commentService.getCommentsByArticle(articleId, pageable);
-            
-            long totalComments = comments.getTotalElements();
-            long activeComments = comments.getContent().stream()
-                    .filter(c -> c.getStatus() == CommentStatus.ACTIVE)
-                    .count();
-            long hiddenComments = comments.getContent().stream()
-                    .filter(c -> c.getStatus() != CommentStatus.ACTIVE)
-                    .count();
-            
-            // 计算总点赞数
-            long totalLikes = comments.getContent().stream()
-                    .mapToLong(c -> c.getLikeCount() != null ? c.getLikeCount() : 0)
-                    .sum();
-            
-            // 计算有用评论数
-            long helpfulComments = comments.getContent().stream()
-                    .filter(c -> Boolean.TRUE.equals(c.getIsHelpful()))
-                    .count();
-            
-            // 计算最近评论数（最近7天）
-            LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
-            long recentComments = comments.getContent().stream()
-                    .filter(c -> c.getCreatedAt() != null && c.getCreatedAt().isAfter(weekAgo))
-                    .count();
-            
-            // 判断评论趋势
-            String commentTrend = recentComments > totalComments / 4 ? "increasing" : 
-                                 recentComments > 0 ? "stable" : "none";
+            // 调用评论服务获取评论统计（一条聚合查询，最近评论为最近7天）
+            CommentStats commentStats = commentService.getCommentStats(articleId);
             
             Map<String, Object> stats = Map.of(
-                "totalComments", totalComments,
-                "activeComments", activeComments,
-                "hiddenComments", hiddenComments,
-                "totalLikes", totalLikes,
-                "helpfulComments", helpfulComments,
-                "recentComments", recentComments,
-                "commentTrend", commentTrend
+                "totalComments", commentStats.getTotalComments(),
+                "activeComments", commentStats.getActiveComments(),
+                "hiddenComments", commentStats.getHiddenComments(),
+                "totalLikes", commentStats.getTotalLikes(),
+                "helpfulComments", commentStats.getHelpfulComments(),
+                "recentComments", commentStats.getRecentComments(),
+                "commentTrend", commentStats.getCommentTrend()
             );
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
@@ -649,11 +705,12 @@ public class KnowledgeArticleController {
         log.info("获取文章评分统计: articleId={}", articleId);
         
         try {
-            // 调用评分服务获取评分统计
-            Double averageRating = ratingService.calculateAverageRating(articleId);
-            Map<Integer, Long> distribution = ratingService.getRatingDistribution(articleId);
+            // 调用评分服务获取评分统计（增量维护的聚合，一次读取）
+            RatingSummary summary = ratingService.getRatingSummary(articleId);
+            Double averageRating = summary.getAverageRating();
+            Map<Integer, Long> distribution = summary.getDistribution();
             
-            if (averageRating == null) {
+            if (summary.getTotalRatings() == 0) {
                 // 如果没有评分数据，返回默认值
                 Map<String, Object> stats = Map.of(
                     "averageRating", 0.0,
@@ -673,14 +730,13 @@ public class KnowledgeArticleController {
             // 判断是否为高分文章（平均分>=4.0）
             boolean topRated = averageRating >= 4.0;
             
-            // 计算评分百分位（简化计算）
-            int ratingPercentile = (int) (averageRating / 5.0 * 100);
-            
-            // 获取最近评分数（简化处理）
-            Long recentRatings = totalRatings > 0 ? Math.min(totalRatings, 10L) : 0L;
+            // 贝叶斯加权分在全部已评分文章中的百分位
+            int ratingPercentile = ratingService.getRatingPercentile(articleId);
             
-            // 判断评分趋势（简化处理）
-            String ratingTrend = totalRatings > 10 ? "stable" : totalRatings > 0 ? "growing" : "none";
+            // 最近7天评分数及与之前7天相比的趋势（每日汇总表）
+            RatingActivity activity = ratingService.getRatingActivity(articleId, 7);
+            Long recentRatings = activity.getRecentRatings();
+            String ratingTrend = activity.getTrend();
             
             Map<String, Object> stats = Map.of(
                 "averageRating", averageRating,
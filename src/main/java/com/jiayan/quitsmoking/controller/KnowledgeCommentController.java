@@ -1,6 +1,8 @@
 package com.jiayan.quitsmoking.controller;
 
 import com.jiayan.quitsmoking.dto.*;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.KnowledgeCommentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,7 +16,6 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.util.List;
-import java.util.stream.Collectors;
 import com.jiayan.quitsmoking.entity.KnowledgeComment;
 import com.jiayan.quitsmoking.enums.CommentStatus;
 import org.springframework.data.domain.Sort;
@@ -22,10 +23,6 @@ import java.time.LocalDateTime;
 import java.util.Map;
 import com.jiayan.quitsmoking.repository.UserRepository;
 import com.jiayan.quitsmoking.entity.User;
-import com.jiayan.quitsmoking.util.JwtUtil;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
-import jakarta.servlet.http.HttpServletRequest;
 import com.jiayan.quitsmoking.exception.BusinessException;
 
 /**
@@ -41,7 +38,6 @@ public class KnowledgeCommentController {
     
     private final KnowledgeCommentService commentService;
     private final UserRepository userRepository;
-    private final JwtUtil jwtUtil;
     
     /**
      * 创建评论
@@ -50,12 +46,13 @@ public class KnowledgeCommentController {
     @PostMapping
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> createComment(
-            @Valid @RequestBody CreateCommentRequest request) {
+            @Valid @RequestBody CreateCommentRequest request,
+            @CurrentUser UserPrincipal currentUser) {
         log.info("创建评论: articleId={}", request.getArticleId());
         
         try {
             // 获取当前登录用户ID（必须从JWT Token获取）
-            Long userId = getCurrentUserId();
+            Long userId = requireUserId(currentUser);
             log.info("当前用户ID: {}", userId);
             
             // 创建评论实体
@@ -236,26 +233,31 @@ public class KnowledgeCommentController {
     }
     
     /**
-     * 获取评论树结构
+     * 获取评论树结构（顶级评论分页，回复嵌套展开）
      */
     @GetMapping("/tree/{articleId}")
-    public ResponseEntity<?> getCommentTree(@PathVariable Long articleId) {
-        log.info("获取评论树 articleId={}", articleId);
+    public ResponseEntity<?> getCommentTree(
+            @PathVariable Long articleId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "3") int maxDepth,
+            @RequestParam(defaultValue = "20") int maxReplies) {
+        log.info("获取评论树 articleId={}, page={}, size={}", articleId, page, size);
         
         try {
             // 调用评论服务获取评论树
-            List<KnowledgeComment> commentTree = commentService.getCommentTree(articleId);
-            
-            // 转换为响应DTO
-            List<CommentResponse> responses = commentTree.stream()
-                    .map(this::toCommentResponse)
-                    .collect(Collectors.toList());
+            Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 100));
+            Page<CommentResponse> commentTree = commentService.getCommentTree(articleId, pageable,
+                    Math.min(Math.max(maxDepth, 0), 10), Math.min(Math.max(maxReplies, 0), 100));
             
             // 返回统一的响应格式
             return ResponseEntity.ok(Map.of(
                 "code", 200,
                 "message", "获取评论树成功",
-                "data", responses,
+                "data", commentTree.getContent(),
+                "totalThreads", commentTree.getTotalElements(),
+                "page", commentTree.getNumber(),
+                "size", commentTree.getSize(),
                 "timestamp", LocalDateTime.now().toString()
             ));
         } catch (Exception e) {
@@ -310,12 +312,13 @@ public class KnowledgeCommentController {
      */
     @PostMapping("/{commentId}/helpful")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Void> markCommentAsHelpful(@PathVariable Long commentId) {
+    public ResponseEntity<Void> markCommentAsHelpful(@PathVariable Long commentId,
+                                                     @CurrentUser UserPrincipal currentUser) {
         log.info("标记评论为有用 {}", commentId);
         
         try {
             // 调用评论服务标记为有用
-            commentService.markCommentAsHelpful(commentId, getCurrentUserId());
+            commentService.markCommentAsHelpful(commentId, requireUserId(currentUser));
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             log.error("标记评论为有用失败", e);
@@ -348,12 +351,13 @@ public class KnowledgeCommentController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('MODERATOR')")
     public ResponseEntity<Void> hideComment(
             @PathVariable Long commentId,
-            @RequestParam String reason) {
+            @RequestParam String reason,
+            @CurrentUser UserPrincipal currentUser) {
         log.info("隐藏评论: {} -> {}", commentId, reason);
         
         try {
             // 调用评论服务隐藏评论
-            commentService.hideComment(commentId, reason, getCurrentUserId());
+            commentService.hideComment(commentId, reason, requireUserId(currentUser));
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             log.error("隐藏评论失败", e);
@@ -366,12 +370,13 @@ public class KnowledgeCommentController {
      */
     @PostMapping("/{commentId}/restore")
     @PreAuthorize("hasRole('ADMIN') or hasRole('MODERATOR')")
-    public ResponseEntity<Void> restoreComment(@PathVariable Long commentId) {
+    public ResponseEntity<Void> restoreComment(@PathVariable Long commentId,
+                                               @CurrentUser UserPrincipal currentUser) {
         log.info("恢复评论: {}", commentId);
         
         try {
             // 调用评论服务恢复评论
-            commentService.restoreComment(commentId, getCurrentUserId());
+            commentService.restoreComment(commentId, requireUserId(currentUser));
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             log.error("恢复评论失败", e);
@@ -384,12 +389,13 @@ public class KnowledgeCommentController {
      */
     @DeleteMapping("/{commentId}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('MODERATOR')")
-    public ResponseEntity<Void> deleteComment(@PathVariable Long commentId) {
+    public ResponseEntity<Void> deleteComment(@PathVariable Long commentId,
+                                              @CurrentUser UserPrincipal currentUser) {
         log.info("删除评论: {}", commentId);
         
         try {
             // 调用评论服务软删除评论
-            commentService.softDeleteComment(commentId, getCurrentUserId(), "管理员删除");
+            commentService.softDeleteComment(commentId, requireUserId(currentUser), "管理员删除");
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
             log.error("删除评论失败", e);
@@ -472,46 +478,13 @@ public class KnowledgeCommentController {
     
     /**
      * 获取当前登录用户ID
-     * 从JWT Token中获取用户ID，这是前端用户评论的标准方式
-     * 注意：此方法不创建系统用户，只获取真实用户ID
+     * 用户由认证过滤器解析并通过 {@link CurrentUser} 注入，未登录或Token无效时为 null
      */
-    private Long getCurrentUserId() {
-        try {
-            // 获取当前请求
-            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-            if (attributes == null) {
-                throw new BusinessException("无法获取请求上下文");
-            }
-            
-            HttpServletRequest request = attributes.getRequest();
-            String authHeader = request.getHeader("Authorization");
-            
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                throw new BusinessException("Authorization头缺失或格式错误");
-            }
-            
-            // 从JWT token中提取用户ID
-            String token = authHeader.substring(7);
-            if (!jwtUtil.validateToken(token)) {
-                throw new BusinessException("JWT token无效");
-            }
-            
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                throw new BusinessException("无法从JWT token中提取用户ID");
-            }
-            
-            Long userId = Long.valueOf(userIdStr);
-            log.info("从JWT token获取到用户ID: {}", userId);
-            return userId;
-            
-        } catch (BusinessException e) {
-            // 重新抛出业务异常
-            throw e;
-        } catch (Exception e) {
-            log.error("获取用户ID时发生异常? {}", e.getMessage(), e);
-            throw new BusinessException("用户认证失败");
+    private Long requireUserId(UserPrincipal currentUser) {
+        if (currentUser == null) {
+            throw new BusinessException("JWT token无效");
         }
+        return currentUser.getId();
     }
     
     /**
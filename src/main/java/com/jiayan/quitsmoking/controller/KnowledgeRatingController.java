@@ -4,6 +4,8 @@ import com.jiayan.quitsmoking.dto.*;
 import com.jiayan.quitsmoking.entity.KnowledgeRating;
 import com.jiayan.quitsmoking.entity.User;
 import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.KnowledgeRatingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,11 +23,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
 import com.jiayan.quitsmoking.exception.BusinessException;
-import com.jiayan.quitsmoking.util.JwtUtil;
-import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * 用户评分控制器
@@ -39,7 +37,6 @@ public class KnowledgeRatingController {
     
     private final KnowledgeRatingService ratingService;
     private final UserRepository userRepository;
-    private final JwtUtil jwtUtil;
     
     /**
      * 创建评分
@@ -47,14 +44,15 @@ public class KnowledgeRatingController {
     @PostMapping
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> createRating(
-            @Valid @RequestBody CreateRatingRequest request) {
+            @Valid @RequestBody CreateRatingRequest request,
+            @CurrentUser UserPrincipal currentUser) {
         log.info("创建评分: articleId={}", request.getArticleId());
         
         try {
             // 创建评分实体
             KnowledgeRating rating = new KnowledgeRating();
             rating.setArticleId(request.getArticleId());
-            rating.setUserId(getCurrentUserId());  // 后端自动获取用户ID
+            rating.setUserId(requireUserId(currentUser));  // 后端自动获取用户ID
             rating.setRating(request.getRating());
             rating.setComment(request.getComment());
             rating.setCreatedAt(LocalDateTime.now());
@@ -414,12 +412,13 @@ public class KnowledgeRatingController {
      */
     @DeleteMapping("/by-article/{articleId}")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Void> deleteRating(@PathVariable Long articleId) {
+    public ResponseEntity<Void> deleteRating(@PathVariable Long articleId,
+                                             @CurrentUser UserPrincipal currentUser) {
         log.info("删除用户评分: articleId={}", articleId);
         
         try {
             // 调用评分服务删除评分
-            ratingService.deleteRating(articleId, getCurrentUserId());
+            ratingService.deleteRating(articleId, requireUserId(currentUser));
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
             log.error("删除用户评分失败", e);
@@ -432,12 +431,13 @@ public class KnowledgeRatingController {
      */
     @GetMapping("/check/{articleId}")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Boolean> hasUserRated(@PathVariable Long articleId) {
+    public ResponseEntity<Boolean> hasUserRated(@PathVariable Long articleId,
+                                                @CurrentUser UserPrincipal currentUser) {
         log.info("检查用户是否已评分: articleId={}", articleId);
         
         try {
             // 调用评分服务检查用户是否已评分
-            boolean hasRated = ratingService.hasUserRated(articleId, getCurrentUserId());
+            boolean hasRated = ratingService.hasUserRated(articleId, requireUserId(currentUser));
             return ResponseEntity.ok(hasRated);
         } catch (Exception e) {
             log.error("检查用户是否已评分失败", e);
@@ -486,46 +486,13 @@ public class KnowledgeRatingController {
     
     /**
      * 获取当前登录用户ID
-     * 从JWT Token中获取用户ID，这是前端用户评论的标准方式
-     * 注意：此方法不创建系统用户，只获取真实用户ID
+     * 用户由认证过滤器解析并通过 {@link CurrentUser} 注入，未登录或Token无效时为 null
      */
-    private Long getCurrentUserId() {
-        try {
-            // 获取当前请求
-            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-            if (attributes == null) {
-                throw new BusinessException("无法获取请求上下文");
-            }
-            
-            HttpServletRequest request = attributes.getRequest();
-            String authHeader = request.getHeader("Authorization");
-            
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                throw new BusinessException("Authorization头缺失或格式错误");
-            }
-            
-            // 从JWT token中提取用户ID
-            String token = authHeader.substring(7);
-            if (!jwtUtil.validateToken(token)) {
-                throw new BusinessException("JWT token无效");
-            }
-            
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                throw new BusinessException("无法从JWT token中提取用户ID");
-            }
-            
-            Long userId = Long.valueOf(userIdStr);
-            log.info("从JWT token获取到用户ID: {}", userId);
-            return userId;
-            
-        } catch (BusinessException e) {
-            // 重新抛出业务异常
-            throw e;
-        } catch (Exception e) {
-            log.error("获取用户ID时发生异常: {}", e.getMessage(), e);
-            throw new BusinessException("用户认证失败");
+    private Long requireUserId(UserPrincipal currentUser) {
+        if (currentUser == null) {
+            throw new BusinessException("JWT token无效");
         }
+        return currentUser.getId();
     }
     
     /**
@@ -2,7 +2,8 @@ package com.jiayan.quitsmoking.controller;
 
 import com.jiayan.quitsmoking.entity.Diary;
 import com.jiayan.quitsmoking.repository.DiaryRepository;
-import com.jiayan.quitsmoking.util.JwtUtil;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.dto.DiaryDetailResponse;
 import com.jiayan.quitsmoking.dto.DiaryListResponse;
 import com.jiayan.quitsmoking.dto.UpdateDiaryRequest;
@@ -29,9 +30,6 @@ public class SimpleDiaryController {
     @Autowired
     private DiaryRepository diaryRepository;
     
-    @Autowired
-    private JwtUtil jwtUtil;
-    
     @Autowired
     private ObjectMapper objectMapper;
     
@@ -41,12 +39,12 @@ public class SimpleDiaryController {
 
     @PostMapping("/create")
     public String createDiary(@RequestBody Map<String, Object> request, 
-                             @RequestHeader("Authorization") String authHeader) {
+                             @CurrentUser UserPrincipal currentUser) {
         try {
             log.info("开始创建日记，请求数据: {}", request);
             
-            // 从Authorization头获取用户ID
-            Long userId = extractUserIdFromToken(authHeader);
+            // 当前登录用户由认证过滤器解析并注入
+            Long userId = currentUser != null ? currentUser.getId() : null;
             if (userId == null) {
                 return "日记创建失败: 用户未认证或token无效";
             }
@@ -144,33 +142,6 @@ public class SimpleDiaryController {
         }
     }
     
-    /**
-     * 从Authorization头中提取用户ID
-     */
-    private Long extractUserIdFromToken(String authHeader) {
-        try {
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                String token = authHeader.substring(7);
-                
-                // 验证token
-                if (!jwtUtil.validateToken(token)) {
-                    log.warn("Token验证失败");
-                    return null;
-                }
-                
-                // 从JWT token中提取用户ID (String类型)
-                String userIdStr = jwtUtil.getUserIdFromToken(token);
-                if (userIdStr != null) {
-                    // 转换为Long类型
-                    return Long.valueOf(userIdStr);
-                }
-            }
-        } catch (Exception e) {
-            log.error("解析用户ID失败: {}", e.getMessage());
-        }
-        return null;
-    }
-    
     @GetMapping("/test")
     public String test() {
         log.info("调用 /diary/test 接口");
@@ -178,10 +149,10 @@ public class SimpleDiaryController {
     }
     
     @GetMapping("/list")
-    public DiaryListResponse getDiaryList(@RequestHeader("Authorization") String authHeader) {
+    public DiaryListResponse getDiaryList(@CurrentUser UserPrincipal currentUser) {
         try {
             // 获取当前用户ID
-            Long userId = extractUserIdFromToken(authHeader);
+            Long userId = currentUser != null ? currentUser.getId() : null;
             if (userId == null) {
                 throw DiaryException.userNotAuthenticated();
             }
@@ -278,10 +249,10 @@ public class SimpleDiaryController {
     }
     
     @GetMapping("/stats")
-    public String getDiaryStats(@RequestHeader("Authorization") String authHeader) {
+    public String getDiaryStats(@CurrentUser UserPrincipal currentUser) {
         try {
             // 获取当前用户ID
-            Long userId = extractUserIdFromToken(authHeader);
+            Long userId = currentUser != null ? currentUser.getId() : null;
             if (userId == null) {
                 return "获取日记统计失败: 用户未认证";
             }
@@ -298,12 +269,12 @@ public class SimpleDiaryController {
     
     @GetMapping("/{id}")
     public DiaryDetailResponse getDiaryDetail(@PathVariable Long id, 
-                                            @RequestHeader("Authorization") String authHeader) {
+                                            @CurrentUser UserPrincipal currentUser) {
         try {
             log.info("开始获取日记详情，日记ID: {}", id);
             
-            // 从Authorization头获取用户ID
-            Long userId = extractUserIdFromToken(authHeader);
+            // 当前登录用户由认证过滤器解析并注入
+            Long userId = currentUser != null ? currentUser.getId() : null;
             if (userId == null) {
                 throw DiaryException.userNotAuthenticated();
             }
@@ -412,12 +383,12 @@ public class SimpleDiaryController {
     @PutMapping("/{id}")
     public String updateDiary(@PathVariable Long id, 
                              @RequestBody UpdateDiaryRequest request,
-                             @RequestHeader("Authorization") String authHeader) {
+                             @CurrentUser UserPrincipal currentUser) {
         try {
             log.info("开始更新日记，日记ID: {}, 请求数据: {}", id, request);
             
-            // 从Authorization头获取用户ID
-            Long userId = extractUserIdFromToken(authHeader);
+            // 当前登录用户由认证过滤器解析并注入
+            Long userId = currentUser != null ? currentUser.getId() : null;
             if (userId == null) {
                 throw DiaryException.userNotAuthenticated();
             }
@@ -559,12 +530,12 @@ public class SimpleDiaryController {
     
     @DeleteMapping("/{id}")
     public String deleteDiary(@PathVariable Long id, 
-                             @RequestHeader("Authorization") String authHeader) {
+                             @CurrentUser UserPrincipal currentUser) {
         try {
             log.info("开始删除日记，日记ID: {}", id);
             
-            // 从Authorization头获取用户ID
-            Long userId = extractUserIdFromToken(authHeader);
+            // 当前登录用户由认证过滤器解析并注入
+            Long userId = currentUser != null ? currentUser.getId() : null;
             if (userId == null) {
                 throw DiaryException.userNotAuthenticated();
             }
@@ -626,12 +597,12 @@ public class SimpleDiaryController {
      */
     @DeleteMapping("/{id}/permanent")
     public String permanentDeleteDiary(@PathVariable Long id, 
-                                     @RequestHeader("Authorization") String authHeader) {
+                                     @CurrentUser UserPrincipal currentUser) {
         try {
             log.info("开始物理删除日记，日记ID: {}", id);
             
-            // 从Authorization头获取用户ID
-            Long userId = extractUserIdFromToken(authHeader);
+            // 当前登录用户由认证过滤器解析并注入
+            Long userId = currentUser != null ? currentUser.getId() : null;
             if (userId == null) {
                 throw DiaryException.userNotAuthenticated();
             }
@@ -3,20 +3,24 @@ package com.jiayan.quitsmoking.controller;
 import com.jiayan.quitsmoking.common.ApiResponse;
 import com.jiayan.quitsmoking.dto.CreateSmokingRecordRequest;
 import com.jiayan.quitsmoking.dto.CreateTrainingRecordRequest;
+import com.jiayan.quitsmoking.dto.CursorPageResponse;
 import com.jiayan.quitsmoking.dto.SmokingRecordResponse;
 import com.jiayan.quitsmoking.dto.TrainingRecordResponse;
+import com.jiayan.quitsmoking.enums.RecordType;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.SmokingRecordService;
-import com.jiayan.quitsmoking.util.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.time.LocalDate;
 import java.util.List;
@@ -29,32 +33,30 @@ import org.springframework.http.HttpStatus;
 public class SmokingRecordController {
 
     private final SmokingRecordService smokingRecordService;
-    private final JwtUtil jwtUtil;
 
     /**
      * 记录吸烟
+     * 开启异步批量写入（records.write-behind.enabled）时只受理不落库：返回的 recordId 为空、pending 为 true，
+     * 记录稍后写入，需要记录ID时重新查询列表
      */
     @PostMapping("/smoking")
     public ResponseEntity<ApiResponse<SmokingRecordResponse>> createSmokingRecord(
             @Valid @RequestBody CreateSmokingRecordRequest request,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
 
         log.info("接收到记录吸烟请求: {}", request);
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
-                log.error("未找到有效的Authorization头");
+            if (currentUser == null) {
+                log.error("未找到有效的认证用户");
                 return ResponseEntity.badRequest().body(ApiResponse.error(1001, "未提供有效的认证Token"));
             }
-            
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
 
             SmokingRecordResponse response = smokingRecordService.createSmokingRecord(userId, request);
 
-            return ResponseEntity.ok(ApiResponse.success("记录成功", response));
+            return ResponseEntity.ok(ApiResponse.success(
+                    Boolean.TRUE.equals(response.getPending()) ? "已受理，记录稍后保存" : "记录成功", response));
         } catch (Exception e) {
             log.error("记录吸烟时发生异常", e);
             return ResponseEntity.badRequest().body(ApiResponse.error(1001, "Token无效或已过期"));
@@ -63,28 +65,26 @@ public class SmokingRecordController {
 
     /**
      * 记录训练
+     * 开启异步批量写入时只受理不落库，响应同记录吸烟（recordId 为空、pending 为 true）
      */
     @PostMapping("/training")
     public ResponseEntity<ApiResponse<TrainingRecordResponse>> createTrainingRecord(
             @Valid @RequestBody CreateTrainingRecordRequest request,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
 
         log.info("接收到记录训练请求: {}", request);
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
-                log.error("未找到有效的Authorization头");
+            if (currentUser == null) {
+                log.error("未找到有效的认证用户");
                 return ResponseEntity.badRequest().body(ApiResponse.error(1001, "未提供有效的认证Token"));
             }
-            
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
 
             TrainingRecordResponse response = smokingRecordService.createTrainingRecord(userId, request);
 
-            return ResponseEntity.ok(ApiResponse.success("记录成功", response));
+            return ResponseEntity.ok(ApiResponse.success(
+                    Boolean.TRUE.equals(response.getPending()) ? "已受理，记录稍后保存" : "记录成功", response));
         } catch (Exception e) {
             log.error("记录训练时发生异常", e);
             return ResponseEntity.badRequest().body(ApiResponse.error(1001, "Token无效或已过期"));
@@ -100,14 +100,15 @@ public class SmokingRecordController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate date,
             @RequestParam(defaultValue = "20") int limit,
             @RequestParam(defaultValue = "0") int offset,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
 
         log.info("获取记录列表请求 - 类型: {}, 日期: {}, 限制: {}, 偏移: {}", type, date, limit, offset);
 
-        // 从JWT Token中获取用户ID
-        String token = extractTokenFromHeader(httpRequest);
-        String userIdStr = jwtUtil.getUserIdFromToken(token);
-        Long userId = Long.valueOf(userIdStr);
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(ApiResponse.error(401, "未提供认证令牌"));
+        }
+        Long userId = currentUser.getId();
 
         if ("smoking".equals(type)) {
             if (date != null) {
@@ -140,37 +141,89 @@ public class SmokingRecordController {
         return ResponseEntity.badRequest().body(ApiResponse.error(400, "不支持的记录类型，支持: smoking, training"));
     }
 
+    /**
+     * 游标分页获取记录列表（按时间倒序，cursor 为上一页返回的 nextCursor）
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<Object>> getRecordsByCursor(
+            @RequestParam(defaultValue = "smoking") String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @CurrentUser UserPrincipal currentUser) {
+
+        log.info("游标分页获取记录列表请求 - 类型: {}, 游标: {}, 限制: {}", type, cursor, limit);
+
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(ApiResponse.error(401, "未提供认证令牌"));
+        }
+        Long userId = currentUser.getId();
+
+        if ("smoking".equals(type)) {
+            CursorPageResponse<SmokingRecordResponse> page =
+                    smokingRecordService.getUserSmokingRecordsByCursor(userId, cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success("获取成功", page));
+        } else if ("training".equals(type)) {
+            CursorPageResponse<TrainingRecordResponse> page =
+                    smokingRecordService.getUserTrainingRecordsByCursor(userId, cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success("获取成功", page));
+        }
+
+        return ResponseEntity.badRequest().body(ApiResponse.error(400, "不支持的记录类型，支持: smoking, training"));
+    }
+
+    /**
+     * 以NDJSON格式流式导出全部记录
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportRecords(
+            @RequestParam(defaultValue = "smoking") String type,
+            @CurrentUser UserPrincipal currentUser) {
+
+        log.info("导出记录请求 - 类型: {}", type);
+
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Long userId = currentUser.getId();
+
+        RecordType recordType;
+        if ("smoking".equals(type)) {
+            recordType = RecordType.SMOKING;
+        } else if ("training".equals(type)) {
+            recordType = RecordType.TRAINING;
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = outputStream ->
+                smokingRecordService.exportUserRecords(userId, recordType, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson;charset=UTF-8"))
+                .header("Content-Disposition", "attachment; filename=\"" + type + "-records.ndjson\"")
+                .body(body);
+    }
+
     /**
      * 获取今日吸烟统计
      */
     @GetMapping("/smoking/today-count")
-    public ResponseEntity<ApiResponse<Long>> getTodaySmokingCount(HttpServletRequest httpRequest) {
+    public ResponseEntity<ApiResponse<Long>> getTodaySmokingCount(@CurrentUser UserPrincipal currentUser) {
         log.info("获取今日吸烟统计请求");
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ApiResponse.error(401, "未提供认证令牌"));
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ApiResponse.error(401, "认证令牌无效"));
-            }
-            
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
 
             Long count = smokingRecordService.getTodaySmokingCount(userId);
 
             return ResponseEntity.ok(ApiResponse.success("获取成功", count));
             
-        } catch (NumberFormatException e) {
-            log.error("用户ID格式错误", e);
-            return ResponseEntity.badRequest()
-                .body(ApiResponse.error(400, "用户ID格式错误"));
         } catch (Exception e) {
             log.error("获取今日吸烟统计异常", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -182,33 +235,21 @@ public class SmokingRecordController {
      * 获取今日训练统计
      */
     @GetMapping("/training/today-count")
-    public ResponseEntity<ApiResponse<Long>> getTodayTrainingCount(HttpServletRequest httpRequest) {
+    public ResponseEntity<ApiResponse<Long>> getTodayTrainingCount(@CurrentUser UserPrincipal currentUser) {
         log.info("获取今日训练统计请求");
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ApiResponse.error(401, "未提供认证令牌"));
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ApiResponse.error(401, "认证令牌无效"));
-            }
-            
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
 
             Long count = smokingRecordService.getTodayTrainingCount(userId);
 
             return ResponseEntity.ok(ApiResponse.success("获取成功", count));
             
-        } catch (NumberFormatException e) {
-            log.error("用户ID格式错误", e);
-            return ResponseEntity.badRequest()
-                .body(ApiResponse.error(400, "用户ID格式错误"));
         } catch (Exception e) {
             log.error("获取今日训练统计异常", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -220,24 +261,16 @@ public class SmokingRecordController {
      * 获取最后一次吸烟记录
      */
     @GetMapping("/smoking/last")
-    public ResponseEntity<ApiResponse<SmokingRecordResponse>> getLastSmokingRecord(HttpServletRequest httpRequest) {
+    public ResponseEntity<ApiResponse<SmokingRecordResponse>> getLastSmokingRecord(@CurrentUser UserPrincipal currentUser) {
         log.info("获取最后一次吸烟记录请求");
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ApiResponse.error(401, "未提供认证令牌"));
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ApiResponse.error(401, "认证令牌无效"));
-            }
-            
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
 
             SmokingRecordResponse response = smokingRecordService.getLastSmokingRecord(userId);
             
@@ -248,10 +281,6 @@ public class SmokingRecordController {
 
             return ResponseEntity.ok(ApiResponse.success("获取成功", response));
             
-        } catch (NumberFormatException e) {
-            log.error("用户ID格式错误", e);
-            return ResponseEntity.badRequest()
-                .body(ApiResponse.error(400, "用户ID格式错误"));
         } catch (Exception e) {
             log.error("获取最后一次吸烟记录异常", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -263,24 +292,16 @@ public class SmokingRecordController {
      * 获取最后一次训练记录
      */
     @GetMapping("/training/last")
-    public ResponseEntity<ApiResponse<TrainingRecordResponse>> getLastTrainingRecord(HttpServletRequest httpRequest) {
+    public ResponseEntity<ApiResponse<TrainingRecordResponse>> getLastTrainingRecord(@CurrentUser UserPrincipal currentUser) {
         log.info("获取最后一次训练记录请求");
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ApiResponse.error(401, "未提供认证令牌"));
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ApiResponse.error(401, "认证令牌无效"));
-            }
-            
-            Long userId = Long.valueOf(userIdStr);
+            Long userId = currentUser.getId();
 
             TrainingRecordResponse response = smokingRecordService.getLastTrainingRecord(userId);
             
@@ -291,10 +312,6 @@ public class SmokingRecordController {
 
             return ResponseEntity.ok(ApiResponse.success("获取成功", response));
             
-        } catch (NumberFormatException e) {
-            log.error("用户ID格式错误", e);
-            return ResponseEntity.badRequest()
-                .body(ApiResponse.error(400, "用户ID格式错误"));
         } catch (Exception e) {
             log.error("获取最后一次训练记录异常", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -308,35 +325,20 @@ public class SmokingRecordController {
     @DeleteMapping("/smoking/{recordId}")
     public ResponseEntity<ApiResponse<Void>> deleteSmokingRecord(
             @PathVariable Long recordId,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
 
         log.info("删除吸烟记录请求，记录ID: {}", recordId);
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ApiResponse.error(401, "未提供认证令牌"));
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ApiResponse.error(401, "认证令牌无效"));
-            }
-            
-            Long userId = Long.valueOf(recordId);
-            Long userTokenId = Long.valueOf(userIdStr);
-
-            smokingRecordService.deleteSmokingRecord(userTokenId, userId);
+            smokingRecordService.deleteSmokingRecord(currentUser.getId(), recordId);
 
             return ResponseEntity.ok(ApiResponse.success("删除成功", null));
             
-        } catch (NumberFormatException e) {
-            log.error("用户ID或记录ID格式错误", e);
-            return ResponseEntity.badRequest()
-                .body(ApiResponse.error(400, "ID格式错误"));
         } catch (Exception e) {
             log.error("删除吸烟记录异常", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -350,35 +352,20 @@ public class SmokingRecordController {
     @DeleteMapping("/training/{recordId}")
     public ResponseEntity<ApiResponse<Void>> deleteTrainingRecord(
             @PathVariable Long recordId,
-            HttpServletRequest httpRequest) {
+            @CurrentUser UserPrincipal currentUser) {
 
         log.info("删除训练记录请求，记录ID: {}", recordId);
 
         try {
-            // 从JWT Token中获取用户ID
-            String token = extractTokenFromHeader(httpRequest);
-            if (token == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ApiResponse.error(401, "未提供认证令牌"));
             }
             
-            String userIdStr = jwtUtil.getUserIdFromToken(token);
-            if (userIdStr == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ApiResponse.error(401, "认证令牌无效"));
-            }
-            
-            Long userId = Long.valueOf(recordId);
-            Long userTokenId = Long.valueOf(userIdStr);
-
-            smokingRecordService.deleteTrainingRecord(userTokenId, userId);
+            smokingRecordService.deleteTrainingRecord(currentUser.getId(), recordId);
 
             return ResponseEntity.ok(ApiResponse.success("删除成功", null));
             
-        } catch (NumberFormatException e) {
-            log.error("用户ID或记录ID格式错误", e);
-            return ResponseEntity.badRequest()
-                .body(ApiResponse.error(400, "ID格式错误"));
         } catch (Exception e) {
             log.error("删除训练记录异常", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -386,17 +373,6 @@ public class SmokingRecordController {
         }
     }
 
-    /**
-     * 从请求头中提取JWT Token
-     */
-    private String extractTokenFromHeader(HttpServletRequest request) {
-        String header = request.getHeader("Authorization");
-        if (header != null && header.startsWith("Bearer ")) {
-            return header.substring(7);
-        }
-        return null;
-    }
-
     /**
      * 吸烟记录列表响应类
      */
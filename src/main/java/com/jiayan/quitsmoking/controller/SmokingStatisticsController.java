@@ -0,0 +1,76 @@
+package com.jiayan.quitsmoking.controller;
+
+import com.jiayan.quitsmoking.common.ApiResponse;
+import com.jiayan.quitsmoking.dto.SmokingStatisticsResponse;
+import com.jiayan.quitsmoking.enums.StatisticsGranularity;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
+import com.jiayan.quitsmoking.service.SmokingStatisticsService;
+import com.jiayan.quitsmoking.util.TimeZoneUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+/**
+ * 吸烟/训练趋势统计控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/statistics")
+@RequiredArgsConstructor
+public class SmokingStatisticsController {
+
+    private final SmokingStatisticsService smokingStatisticsService;
+
+    /**
+     * 获取分桶趋势统计（默认最近30天，按天）
+     */
+    @GetMapping("/series")
+    public ResponseEntity<ApiResponse<SmokingStatisticsResponse>> getSeries(
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @CurrentUser UserPrincipal currentUser) {
+
+        log.info("获取趋势统计请求 - 粒度: {}, 范围: {} ~ {}", granularity, startDate, endDate);
+
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(ApiResponse.error(401, "认证令牌无效"));
+        }
+
+        StatisticsGranularity statisticsGranularity;
+        try {
+            statisticsGranularity = StatisticsGranularity.fromCode(granularity);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error(400, "不支持的统计粒度，支持: day, week, month"));
+        }
+
+        LocalDate end = endDate != null ? endDate : TimeZoneUtil.getCurrentBeijingDate();
+        LocalDate start = startDate != null ? startDate : end.minusDays(29);
+
+        SmokingStatisticsResponse response =
+                smokingStatisticsService.getStatistics(currentUser.getId(), start, end, statisticsGranularity);
+        return ResponseEntity.ok(ApiResponse.success("获取成功", response));
+    }
+
+    /**
+     * 根据原始记录重建当前用户的统计数据
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<ApiResponse<Void>> rebuild(@CurrentUser UserPrincipal currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(ApiResponse.error(401, "认证令牌无效"));
+        }
+
+        smokingStatisticsService.rebuildUserStatistics(currentUser.getId());
+        return ResponseEntity.ok(ApiResponse.success("重建成功", null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.jiayan.quitsmoking.controller;
+
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
+import com.jiayan.quitsmoking.media.ImageVariant;
+import com.jiayan.quitsmoking.media.MediaFileSender;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * 上传文件直链输出控制器
+ * 替代静态资源映射，统一输出 /uploads/{目录}/** 下的文件，支持 Range、条件请求和零拷贝发送
+ */
+@RestController
+@RequiredArgsConstructor
+public class UploadMediaController {
+
+    private static final String UPLOADS_PATH_PREFIX = "/uploads/";
+
+    /**
+     * 图片文件名均带随机段，上传后不再修改，可长期缓存
+     */
+    private static final CacheControl IMAGE_CACHE = CacheControl.maxAge(Duration.ofDays(30)).cachePublic();
+
+    /**
+     * 音频文件名由管理员指定，可能被同名替换，缓存时间较短；音频有会员权限，不允许共享缓存（CDN/代理）保存
+     */
+    private static final CacheControl AUDIO_CACHE = CacheControl.maxAge(Duration.ofHours(1)).cachePrivate();
+
+    @Value("${diary.image.upload-path:uploads/diaries}")
+    private String diaryUploadPath;
+
+    private final MediaFileSender mediaFileSender;
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
+
+    /**
+     * 上传文件直链
+     * 图片可带 size=thumb/small/medium 获取对应规格的缩略图
+     */
+    @GetMapping(UPLOADS_PATH_PREFIX + "{directory}/**")
+    public void getUploadedFile(@PathVariable String directory,
+                                @RequestParam(required = false) String size,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        Path baseDir = switch (directory) {
+            case "diaries" -> Paths.get(diaryUploadPath);
+            case "audios", "avatars", "backgrounds", "articles", "category-icons" -> Paths.get("uploads", directory);
+            default -> null;
+        };
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String prefix = UPLOADS_PATH_PREFIX + directory + "/";
+        Path file = baseDir != null && path != null && path.startsWith(prefix)
+                ? mediaFileSender.resolve(baseDir, UriUtils.decode(path.substring(prefix.length()), StandardCharsets.UTF_8))
+                : null;
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if ("audios".equals(directory)) {
+            mediaFileSender.send(request, response, file, AUDIO_CACHE);
+            return;
+        }
+        mediaFileSender.send(request, response, imageDerivativeGenerator.resolve(file, ImageVariant.fromCode(size)), IMAGE_CACHE);
+    }
+}
@@ -4,8 +4,11 @@ import com.jiayan.quitsmoking.common.ApiResponse;
 import com.jiayan.quitsmoking.dto.UpdateUserRequest;
 import com.jiayan.quitsmoking.dto.UserProfileResponse;
 import com.jiayan.quitsmoking.dto.QuitInfoRequest;
+import com.jiayan.quitsmoking.enums.ErrorCode;
+import com.jiayan.quitsmoking.exception.BusinessException;
+import com.jiayan.quitsmoking.security.CurrentUser;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.UserService;
-import com.jiayan.quitsmoking.util.JwtUtil;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
@@ -27,18 +30,16 @@ import java.time.LocalDate;
 public class UserProfileController {
 
     private final UserService userService;
-    private final JwtUtil jwtUtil;
 
     /**
      * 获取用户档案信息
      */
     @GetMapping("/profile")
-    public ApiResponse<UserProfileResponse> getUserProfile(@RequestHeader("Authorization") String authHeader) {
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+    public ApiResponse<UserProfileResponse> getUserProfile(@CurrentUser UserPrincipal currentUser) {
+        Long userId = requireUserId(currentUser);
         
         log.info("获取用户档案: userId={}", userId);
-        UserProfileResponse profile = userService.getUserProfile(Long.valueOf(userId));
+        UserProfileResponse profile = userService.getUserProfile(userId);
         return ApiResponse.success("获取用户档案成功", profile);
     }
 
@@ -47,14 +48,13 @@ public class UserProfileController {
      */
     @PutMapping("/profile")
     public ApiResponse<UserProfileResponse> updateUserProfile(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @Valid @RequestBody UpdateUserRequest request) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("更新用户信息: userId={}", userId);
-        UserProfileResponse updatedProfile = userService.updateUserProfile(Long.valueOf(userId), request);
+        UserProfileResponse updatedProfile = userService.updateUserProfile(userId, request);
         return ApiResponse.success("用户信息更新成功", updatedProfile);
     }
 
@@ -63,18 +63,17 @@ public class UserProfileController {
      */
     @PostMapping("/quit-goal")
     public ApiResponse<UserProfileResponse> setQuitGoal(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestParam @Min(value = 1, message = "每日吸烟数量必须大于0") Integer dailyCigarettes,
             @RequestParam @DecimalMin(value = "0.01", message = "香烟价格必须大于0") BigDecimal pricePerPack,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate quitStartDate) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("设置戒烟目标: userId={}, dailyCigarettes={}, pricePerPack={}, quitStartDate={}", 
                 userId, dailyCigarettes, pricePerPack, quitStartDate);
         
-        UserProfileResponse profile = userService.setQuitGoal(Long.valueOf(userId), dailyCigarettes, pricePerPack, quitStartDate);
+        UserProfileResponse profile = userService.setQuitGoal(userId, dailyCigarettes, pricePerPack, quitStartDate);
         return ApiResponse.success("戒烟目标设置成功", profile);
     }
 
@@ -83,17 +82,16 @@ public class UserProfileController {
      */
     @PostMapping("/quit-info")
     public ApiResponse<UserProfileResponse> setQuitInfo(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @Valid @RequestBody QuitInfoRequest request) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("设置戒烟基础信息: userId={}, age={}, smokingYears={}, originalDailyCigarettes={}, gender={}, quitMode={}", 
                 userId, request.getAge(), request.getSmokingYears(), request.getOriginalDailyCigarettes(), 
                 request.getGender(), request.getQuitMode());
         
-        UserProfileResponse profile = userService.setQuitInfo(Long.valueOf(userId), request);
+        UserProfileResponse profile = userService.setQuitInfo(userId, request);
         return ApiResponse.success("戒烟基础信息设置成功", profile);
     }
 
@@ -102,15 +100,14 @@ public class UserProfileController {
      */
     @PostMapping("/current-smoking")
     public ApiResponse<UserProfileResponse> updateCurrentSmoking(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestParam @Min(value = 1, message = "当前每日吸烟数量必须大于0") Integer currentDailyCigarettes) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("更新当前吸烟量: userId={}, currentDailyCigarettes={}", userId, currentDailyCigarettes);
         
-        UserProfileResponse profile = userService.updateCurrentSmoking(Long.valueOf(userId), currentDailyCigarettes);
+        UserProfileResponse profile = userService.updateCurrentSmoking(userId, currentDailyCigarettes);
         return ApiResponse.success("当前吸烟量更新成功", profile);
     }
 
@@ -119,14 +116,13 @@ public class UserProfileController {
      */
     @PostMapping("/avatar")
     public ApiResponse<UserProfileResponse> updateAvatar(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestParam String avatarUrl) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("更新用户头像: userId={}, avatarUrl={}", userId, avatarUrl);
-        UserProfileResponse profile = userService.updateAvatar(Long.valueOf(userId), avatarUrl);
+        UserProfileResponse profile = userService.updateAvatar(userId, avatarUrl);
         return ApiResponse.success("头像更新成功", profile);
     }
 
@@ -135,14 +131,13 @@ public class UserProfileController {
      */
     @PostMapping("/profile-custom")
     public ApiResponse<UserProfileResponse> updateProfileCustom(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestBody UpdateUserRequest request) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("批量更新用户自定义信息: userId={}, request={}", userId, request);
-        UserProfileResponse updatedProfile = userService.updateUserProfile(Long.valueOf(userId), request);
+        UserProfileResponse updatedProfile = userService.updateUserProfile(userId, request);
         return ApiResponse.success("用户自定义信息更新成功", updatedProfile);
     }
 
@@ -151,15 +146,14 @@ public class UserProfileController {
      */
     @PostMapping("/bio")
     public ApiResponse<UserProfileResponse> updateUserBio(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestBody UpdateUserRequest request) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("更新用户简介: userId={}, userBio={}", userId, request.getUserBio());
         
-        UserProfileResponse updatedProfile = userService.updateUserProfile(Long.valueOf(userId), request);
+        UserProfileResponse updatedProfile = userService.updateUserProfile(userId, request);
         return ApiResponse.success("用户简介更新成功", updatedProfile);
     }
 
@@ -168,15 +162,14 @@ public class UserProfileController {
      */
     @PostMapping("/background")
     public ApiResponse<UserProfileResponse> updateUserBackground(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser UserPrincipal currentUser,
             @RequestBody UpdateUserRequest request) {
         
-        String token = extractToken(authHeader);
-        String userId = jwtUtil.getUserIdFromToken(token);
+        Long userId = requireUserId(currentUser);
         
         log.info("更新用户背景图: userId={}, backgroundImage={}", userId, request.getBackgroundImage());
         
-        UserProfileResponse updatedProfile = userService.updateUserProfile(Long.valueOf(userId), request);
+        UserProfileResponse updatedProfile = userService.updateUserProfile(userId, request);
         return ApiResponse.success("背景图更新成功", updatedProfile);
     }
 
@@ -244,12 +237,12 @@ public class UserProfileController {
     }
 
     /**
-     * 从Authorization header中提取Token
+     * 获取当前登录用户ID，未登录或Token无效时抛出未授权异常
      */
-    private String extractToken(String authHeader) {
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return authHeader.substring(7);
+    private Long requireUserId(UserPrincipal currentUser) {
+        if (currentUser == null) {
+            throw new BusinessException(ErrorCode.UNAUTHORIZED);
         }
-        throw new IllegalArgumentException("Invalid authorization header");
+        return currentUser.getId();
     }
-} 
\ No newline at end of file
+}
@@ -119,6 +119,11 @@ public class ArticleResponse {
      */
     private List<ContentBlockResponse> contentBlocks;
     
+    /**
+     * 检索高亮片段（仅搜索结果返回）
+     */
+    private String highlight;
+    
     /**
      * 内容块响应DTO
      */
@@ -0,0 +1,71 @@
+package com.jiayan.quitsmoking.dto;
+
+import com.jiayan.quitsmoking.enums.ArticleStatus;
+import com.jiayan.quitsmoking.enums.AuditStatus;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 文章列表投影DTO
+ * 列表查询一次关联出分类名称和作者昵称，不加载正文和内容块；
+ * 构造参数为全部 final 字段（与 JPQL 构造表达式顺序一致）
+ */
+@Data
+public class ArticleSummary {
+
+    private final Long id;
+
+    private final String title;
+
+    private final Long categoryId;
+
+    private final String categoryName;
+
+    private final Long authorId;
+
+    private final String authorName;
+
+    private final String source;
+
+    private final Integer viewCount;
+
+    private final Integer likeCount;
+
+    private final Integer dislikeCount;
+
+    private final BigDecimal ratingScore;
+
+    private final Integer ratingCount;
+
+    private final ArticleStatus status;
+
+    private final AuditStatus auditStatus;
+
+    private final String auditComment;
+
+    private final LocalDateTime publishTime;
+
+    private final LocalDateTime lastEditTime;
+
+    private final LocalDateTime createdAt;
+
+    private final LocalDateTime updatedAt;
+
+    /**
+     * 检索命中的高亮片段（仅全文检索结果返回）
+     */
+    private String highlight;
+
+    /**
+     * 复制为新的浏览次数（叠加尚未落库的浏览增量）
+     */
+    public ArticleSummary withViewCount(Integer viewCount) {
+        ArticleSummary copy = new ArticleSummary(id, title, categoryId, categoryName, authorId, authorName, source,
+                viewCount, likeCount, dislikeCount, ratingScore, ratingCount, status, auditStatus, auditComment,
+                publishTime, lastEditTime, createdAt, updatedAt);
+        copy.setHighlight(highlight);
+        return copy;
+    }
+}
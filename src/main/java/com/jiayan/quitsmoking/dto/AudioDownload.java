@@ -0,0 +1,24 @@
+package com.jiayan.quitsmoking.dto;
+
+import lombok.Data;
+
+import java.nio.file.Path;
+
+/**
+ * 音频下载信息（已通过权限校验）
+ */
+@Data
+public class AudioDownload {
+
+    private final Long audioId;
+
+    /**
+     * 音频文件路径
+     */
+    private final Path filePath;
+
+    /**
+     * 下载文件名：有描述时为 描述+扩展名，否则为存储文件名
+     */
+    private final String downloadFileName;
+}
@@ -82,6 +82,11 @@ public class CommentResponse {
      */
     private List<CommentResponse> replies;
     
+    /**
+     * 直接回复总数（评论树中受展开数量/层数限制时，可能大于 replies 的数量）
+     */
+    private Integer replyCount;
+    
     /**
      * 评论图片响应DTO
      */
@@ -0,0 +1,29 @@
+package com.jiayan.quitsmoking.dto;
+
+import lombok.Data;
+
+/**
+ * 文章评论统计（不含已删除评论；点赞、有用、最近评论只统计正常状态的评论）
+ */
+@Data
+public class CommentStats {
+
+    private final long totalComments;
+
+    private final long activeComments;
+
+    private final long hiddenComments;
+
+    private final long totalLikes;
+
+    private final long helpfulComments;
+
+    private final long recentComments;
+
+    /**
+     * increasing / stable / none
+     */
+    public String getCommentTrend() {
+        return recentComments > activeComments / 4 ? "increasing" : recentComments > 0 ? "stable" : "none";
+    }
+}
@@ -0,0 +1,31 @@
+package com.jiayan.quitsmoking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页响应DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    
+    /**
+     * 数据列表
+     */
+    private List<T> records;
+    
+    /**
+     * 下一页游标，为空表示没有更多数据
+     */
+    private String nextCursor;
+    
+    /**
+     * 是否还有更多数据
+     */
+    private boolean hasMore;
+}
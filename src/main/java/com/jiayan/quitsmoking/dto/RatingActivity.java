@@ -0,0 +1,33 @@
+package com.jiayan.quitsmoking.dto;
+
+import lombok.Data;
+
+/**
+ * 文章近期评分活跃度：最近 N 天与之前 N 天的评分数对比
+ */
+@Data
+public class RatingActivity {
+
+    private final long recentRatings;
+
+    private final long previousRatings;
+
+    /**
+     * growing / declining / stable / none
+     */
+    private final String trend;
+
+    public static RatingActivity of(long recentRatings, long previousRatings) {
+        String trend;
+        if (recentRatings == 0 && previousRatings == 0) {
+            trend = "none";
+        } else if (recentRatings > previousRatings) {
+            trend = "growing";
+        } else if (recentRatings < previousRatings) {
+            trend = "declining";
+        } else {
+            trend = "stable";
+        }
+        return new RatingActivity(recentRatings, previousRatings, trend);
+    }
+}
@@ -0,0 +1,51 @@
+package com.jiayan.quitsmoking.dto;
+
+import com.jiayan.quitsmoking.entity.ArticleRatingStats;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文章评分汇总（评分人数、平均分、1-5分分布）
+ */
+@Data
+public class RatingSummary {
+
+    private final Long articleId;
+
+    private final long totalRatings;
+
+    private final long ratingSum;
+
+    /**
+     * 平均分，保留两位小数；无评分时为 0
+     */
+    private final double averageRating;
+
+    private final Map<Integer, Long> distribution;
+
+    public static RatingSummary empty(Long articleId) {
+        return new RatingSummary(articleId, 0, 0, 0.0, toDistribution(new long[5]));
+    }
+
+    public static RatingSummary of(ArticleRatingStats stats) {
+        long count = stats.getRatingCount();
+        long sum = stats.getRatingSum();
+        double average = count > 0
+                ? BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP).doubleValue()
+                : 0.0;
+        return new RatingSummary(stats.getArticleId(), count, sum, average, toDistribution(stats.getHistogram()));
+    }
+
+    private static Map<Integer, Long> toDistribution(long[] histogram) {
+        Map<Integer, Long> distribution = new LinkedHashMap<>();
+        for (int i = 0; i < histogram.length; i++) {
+            distribution.put(i + 1, histogram[i]);
+        }
+        return Collections.unmodifiableMap(distribution);
+    }
+}
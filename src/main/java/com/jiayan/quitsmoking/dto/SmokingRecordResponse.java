@@ -1,6 +1,7 @@
 package com.jiayan.quitsmoking.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.jiayan.quitsmoking.util.TimeZoneUtil;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -25,17 +26,24 @@ public class SmokingRecordResponse {
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
     private LocalDateTime createdAt;
 
+    /**
+     * 为 true 表示已受理但尚未落库（异步批量写入），此时 recordId 为空；已落库的记录不输出该字段
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean pending;
+
     public static SmokingRecordResponse fromEntity(com.jiayan.quitsmoking.entity.SmokingRecord record) {
         if (record == null) {
             return null;
         }
         
         return new SmokingRecordResponse(
-            "rec_" + record.getId(),
+            record.getId() != null ? "rec_" + record.getId() : null, // 异步批量写入时尚未分配ID
             TimeZoneUtil.convertUTCToBeijing(record.getTimestamp()), // 将UTC时间转换为北京时间
             record.getCigaretteCount() != null ? record.getCigaretteCount() : 1,
             record.getNote(),
-            record.getCreatedAt()
+            record.getCreatedAt(),
+            null
         );
     }
 } 
\ No newline at end of file
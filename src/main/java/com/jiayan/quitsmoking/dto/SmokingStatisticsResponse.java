@@ -0,0 +1,105 @@
+package com.jiayan.quitsmoking.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 吸烟/训练趋势统计响应DTO
+ */
+@Data
+public class SmokingStatisticsResponse {
+    
+    /**
+     * 统计粒度 day/week/month
+     */
+    private String granularity;
+    
+    /**
+     * 统计开始日期（北京时间，含）
+     */
+    private LocalDate startDate;
+    
+    /**
+     * 统计结束日期（北京时间，含）
+     */
+    private LocalDate endDate;
+    
+    /**
+     * 分桶统计数据
+     */
+    private List<Bucket> buckets;
+    
+    /**
+     * 总吸烟次数
+     */
+    private long totalSmokingCount;
+    
+    /**
+     * 总吸烟支数
+     */
+    private long totalCigaretteCount;
+    
+    /**
+     * 总训练次数
+     */
+    private long totalTrainingCount;
+    
+    /**
+     * 总训练时长（分钟）
+     */
+    private long totalTrainingMinutes;
+    
+    /**
+     * 无烟天数
+     */
+    private int smokeFreeDays;
+    
+    /**
+     * 截至结束日期的连续无烟天数
+     */
+    private int currentSmokeFreeStreak;
+    
+    /**
+     * 最长连续无烟天数
+     */
+    private int longestSmokeFreeStreak;
+    
+    /**
+     * 最长无烟间隔（分钟，相邻两次吸烟之间）
+     */
+    private long longestSmokeFreeMinutes;
+    
+    /**
+     * 分桶统计DTO
+     */
+    @Data
+    public static class Bucket {
+        
+        /**
+         * 分桶开始日期（天/周一/月初）
+         */
+        private LocalDate periodStart;
+        
+        /**
+         * 吸烟次数
+         */
+        private long smokingCount;
+        
+        /**
+         * 吸烟支数
+         */
+        private long cigaretteCount;
+        
+        /**
+         * 训练次数
+         */
+        private long trainingCount;
+        
+        /**
+         * 训练时长（分钟）
+         */
+        private long trainingMinutes;
+    }
+}
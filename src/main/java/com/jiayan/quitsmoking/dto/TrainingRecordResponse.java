@@ -1,6 +1,7 @@
 package com.jiayan.quitsmoking.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.jiayan.quitsmoking.entity.SmokingRecord;
 import com.jiayan.quitsmoking.util.TimeZoneUtil;
 import lombok.AllArgsConstructor;
@@ -30,6 +31,9 @@ public class TrainingRecordResponse {
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
     private LocalDateTime createdAt; // 创建时间
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean pending; // 为 true 表示已受理但尚未落库（异步批量写入），此时 recordId 为空
+
     /**
      * 从 SmokingRecord 实体转换为 TrainingRecordResponse
      */
@@ -39,7 +43,7 @@ public class TrainingRecordResponse {
         }
 
         TrainingRecordResponse response = new TrainingRecordResponse();
-        response.setRecordId("rec_" + record.getId());
+        response.setRecordId(record.getId() != null ? "rec_" + record.getId() : null); // 异步批量写入时尚未分配ID
         response.setTimestamp(TimeZoneUtil.convertUTCToBeijing(record.getTimestamp())); // 将UTC时间转换为北京时间
         response.setDuration(record.getDuration());
         response.setAudioType(record.getAudioType());
@@ -2,6 +2,7 @@ package com.jiayan.quitsmoking.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.jiayan.quitsmoking.entity.User;
+import com.jiayan.quitsmoking.security.UserProfileSnapshot;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -65,79 +66,86 @@ public class UserProfileResponse {
     private String genderText;
     
     public static UserProfileResponse fromEntity(User user) {
-        if (user == null) {
+        return user == null ? null : fromSnapshot(UserProfileSnapshot.fromUser(user));
+    }
+
+    /**
+     * 从用户资料快照创建（资料快照可能来自缓存）
+     */
+    public static UserProfileResponse fromSnapshot(UserProfileSnapshot snapshot) {
+        if (snapshot == null) {
             return null;
         }
         
         UserProfileResponse response = new UserProfileResponse();
-        response.setId(user.getId().toString());
-        response.setNickname(user.getNickname());
-        response.setPhone(user.getPhone());
-        response.setEmail(user.getEmail());
-        response.setAvatar(user.getAvatar());
-        response.setBackgroundImage(user.getBackgroundImage());
-        response.setUserBio(user.getUserBio());
-        response.setDailyCigarettes(user.getDailyCigarettes());
-        response.setSmokingYears(user.getSmokingYears());
-        response.setPricePerPack(user.getPricePerPack());
-        response.setTarContent(user.getTarContent());
-        response.setCustomTrainingCount(user.getCustomTrainingCount());
-        response.setCreatedAt(user.getCreatedAt());
-        response.setUpdatedAt(user.getUpdatedAt());
+        response.setId(snapshot.id().toString());
+        response.setNickname(snapshot.nickname());
+        response.setPhone(snapshot.phone());
+        response.setEmail(snapshot.email());
+        response.setAvatar(snapshot.avatar());
+        response.setBackgroundImage(snapshot.backgroundImage());
+        response.setUserBio(snapshot.userBio());
+        response.setDailyCigarettes(snapshot.dailyCigarettes());
+        response.setSmokingYears(snapshot.smokingYears());
+        response.setPricePerPack(snapshot.pricePerPack());
+        response.setTarContent(snapshot.tarContent());
+        response.setCustomTrainingCount(snapshot.customTrainingCount());
+        response.setCreatedAt(snapshot.createdAt());
+        response.setUpdatedAt(snapshot.updatedAt());
         
         // 新增字段
-        response.setAge(user.getAge());
+        response.setAge(snapshot.age());
         
         // 文档中声明但缺失的字段
-        response.setAudioPreference(user.getAudioPreference());
-        response.setLoginType(user.getLoginType());
-        response.setCurrentDailyCigarettes(user.getCurrentDailyCigarettes());
-        response.setOriginalDailyCigarettes(user.getOriginalDailyCigarettes());
-        response.setCigaretteBrand(user.getCigaretteBrand());
-        response.setGender(user.getGender());
-        response.setQuitMode(user.getQuitMode());
-        response.setReducedCigarettes(user.getReducedCigarettes());
-        response.setHealthImprovement(user.getHealthImprovement());
+        response.setAudioPreference(snapshot.audioPreference());
+        response.setLoginType(snapshot.loginType());
+        response.setCurrentDailyCigarettes(snapshot.currentDailyCigarettes());
+        response.setOriginalDailyCigarettes(snapshot.originalDailyCigarettes());
+        response.setCigaretteBrand(snapshot.cigaretteBrand());
+        response.setGender(snapshot.gender());
+        response.setQuitMode(snapshot.quitMode());
+        response.setReducedCigarettes(snapshot.reducedCigarettes());
+        response.setHealthImprovement(snapshot.healthImprovement());
         
         // 计算字段
-        response.setQuitStartDate(user.getQuitStartDate());
-        response.setMemberLevel(user.getMemberLevel());
-        response.setMemberExpireDate(user.getMemberExpireDate());
-        response.setIsPremiumMember(user.getIsPremiumMember());
+        response.setQuitStartDate(snapshot.quitStartDate());
+        response.setMemberLevel(snapshot.memberLevel());
+        response.setMemberExpireDate(snapshot.memberExpireDate());
+        response.setIsPremiumMember(snapshot.isPremiumMember());
         
         // 计算戒烟天数
-        if (user.getQuitStartDate() != null) {
-            long quitDays = ChronoUnit.DAYS.between(user.getQuitStartDate(), LocalDate.now());
+        if (snapshot.quitStartDate() != null) {
+            long quitDays = ChronoUnit.DAYS.between(snapshot.quitStartDate(), LocalDate.now());
             response.setQuitDays(quitDays);
         }
         
         // 计算节省金额和香烟数
-        if (user.getDailyCigarettes() != null && user.getPricePerPack() != null && user.getQuitStartDate() != null) {
-            long quitDays = ChronoUnit.DAYS.between(user.getQuitStartDate(), LocalDate.now());
+        if (snapshot.dailyCigarettes() != null && snapshot.pricePerPack() != null && snapshot.quitStartDate() != null) {
+            long quitDays = ChronoUnit.DAYS.between(snapshot.quitStartDate(), LocalDate.now());
             if (quitDays > 0) {
                 // 计算节省的香烟数
-                int savedCigarettes = user.getDailyCigarettes() * (int) quitDays;
+                int savedCigarettes = snapshot.dailyCigarettes() * (int) quitDays;
                 response.setSavedCigarettes(savedCigarettes);
                 
                 // 计算节省金额（假设每包20支）
                 BigDecimal cigarettesPerPack = new BigDecimal("20");
                 BigDecimal savedPacks = new BigDecimal(savedCigarettes).divide(cigarettesPerPack, 2, RoundingMode.HALF_UP);
-                BigDecimal savedMoney = savedPacks.multiply(user.getPricePerPack());
+                BigDecimal savedMoney = savedPacks.multiply(snapshot.pricePerPack());
                 response.setSavedMoney(savedMoney);
             }
         }
         
         // 计算减少的香烟数
-        if (user.getOriginalDailyCigarettes() != null && user.getCurrentDailyCigarettes() != null) {
-            int reduced = user.getOriginalDailyCigarettes() - user.getCurrentDailyCigarettes();
+        if (snapshot.originalDailyCigarettes() != null && snapshot.currentDailyCigarettes() != null) {
+            int reduced = snapshot.originalDailyCigarettes() - snapshot.currentDailyCigarettes();
             if (reduced > 0) {
                 response.setReducedCigarettes(reduced);
             }
         }
         
         // 设置文本显示字段
-        response.setQuitModeText(getQuitModeText(user.getQuitMode()));
-        response.setGenderText(getGenderText(user.getGender()));
+        response.setQuitModeText(getQuitModeText(snapshot.quitMode()));
+        response.setGenderText(getGenderText(snapshot.gender()));
         
         return response;
     }
@@ -0,0 +1,39 @@
+package com.jiayan.quitsmoking.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 文章每日评分汇总（按评分创建日期归属）
+ * 由评分的创建/修改/删除增量维护，用于评分趋势统计，替代按 created_at 扫描评分明细
+ */
+@Entity
+@Table(name = "article_rating_daily",
+        uniqueConstraints = @UniqueConstraint(name = "uk_rating_daily_article_date", columnNames = {"article_id", "rating_date"}))
+@Data
+@NoArgsConstructor
+public class ArticleRatingDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "article_id", nullable = false)
+    private Long articleId;
+
+    @Column(name = "rating_date", nullable = false)
+    private LocalDate ratingDate;
+
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount = 0L;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
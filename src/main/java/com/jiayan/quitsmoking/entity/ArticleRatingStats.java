@@ -0,0 +1,53 @@
+package com.jiayan.quitsmoking.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文章评分聚合（评分人数、总分、1-5分直方图）
+ * 由评分的创建/修改/删除增量维护，定时对账修复偏差，用于替代每次投票后的 AVG/COUNT 重算
+ */
+@Entity
+@Table(name = "article_rating_stats")
+@Data
+@NoArgsConstructor
+public class ArticleRatingStats {
+
+    @Id
+    @Column(name = "article_id")
+    private Long articleId;
+
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount = 0L;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    @Column(name = "count_1", nullable = false)
+    private Long count1 = 0L;
+
+    @Column(name = "count_2", nullable = false)
+    private Long count2 = 0L;
+
+    @Column(name = "count_3", nullable = false)
+    private Long count3 = 0L;
+
+    @Column(name = "count_4", nullable = false)
+    private Long count4 = 0L;
+
+    @Column(name = "count_5", nullable = false)
+    private Long count5 = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /**
+     * 按分值返回直方图计数，下标 0 对应 1 分
+     */
+    public long[] getHistogram() {
+        return new long[]{count1, count2, count3, count4, count5};
+    }
+}
@@ -0,0 +1,39 @@
+package com.jiayan.quitsmoking.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 用户每日记录计数（按北京时间自然日汇总）
+ * 由记录的创建/删除增量维护，用于替代按 DATE(created_at) 的全表扫描统计
+ */
+@Entity
+@Table(name = "daily_record_counters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_counter_user_date", columnNames = {"user_id", "record_date"}))
+@Data
+@NoArgsConstructor
+public class DailyRecordCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "record_date", nullable = false)
+    private LocalDate recordDate; // 北京时间日期
+
+    @Column(name = "smoking_count", nullable = false)
+    private Long smokingCount = 0L;
+
+    @Column(name = "training_count", nullable = false)
+    private Long trainingCount = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
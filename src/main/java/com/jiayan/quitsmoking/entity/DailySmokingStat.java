@@ -0,0 +1,54 @@
+package com.jiayan.quitsmoking.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 用户每日吸烟/训练统计（按记录时间 timestamp 所在的北京时间自然日汇总）
+ * 记录新增或删除时只重算所在的这一天，周/月统计由日数据合并得到
+ */
+@Entity
+@Table(name = "daily_smoking_stats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_stat_user_date", columnNames = {"user_id", "stat_date"}))
+@Data
+@NoArgsConstructor
+public class DailySmokingStat {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate; // 北京时间日期
+
+    @Column(name = "smoking_records", nullable = false)
+    private Long smokingRecords = 0L; // 吸烟次数
+
+    @Column(name = "cigarette_count", nullable = false)
+    private Long cigaretteCount = 0L; // 吸烟支数
+
+    @Column(name = "training_count", nullable = false)
+    private Long trainingCount = 0L; // 训练次数
+
+    @Column(name = "training_seconds", nullable = false)
+    private Long trainingSeconds = 0L; // 训练总时长（秒）
+
+    @Column(name = "first_smoking_at")
+    private LocalDateTime firstSmokingAt; // 当日第一次吸烟时间（UTC）
+
+    @Column(name = "last_smoking_at")
+    private LocalDateTime lastSmokingAt; // 当日最后一次吸烟时间（UTC）
+
+    @Column(name = "max_smoking_gap_seconds")
+    private Long maxSmokingGapSeconds; // 当日相邻两次吸烟的最大间隔（秒）
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
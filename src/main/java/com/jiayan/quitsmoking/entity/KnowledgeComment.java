@@ -14,7 +14,9 @@ import java.util.List;
  * 评论实体类
  */
 @Entity
-@Table(name = "knowledge_comments")
+@Table(name = "knowledge_comments", indexes = {
+        @Index(name = "idx_knowledge_comments_article_status", columnList = "article_id, status, is_deleted")
+})
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class KnowledgeComment {
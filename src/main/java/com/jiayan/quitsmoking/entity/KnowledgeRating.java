@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
  * 用户评分实体类
  */
 @Entity
-@Table(name = "knowledge_ratings")
+@Table(name = "knowledge_ratings", indexes = {
+        @Index(name = "idx_knowledge_ratings_article_rating", columnList = "article_id, rating"),
+        @Index(name = "idx_knowledge_ratings_user_created", columnList = "user_id, created_at")
+})
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class KnowledgeRating {
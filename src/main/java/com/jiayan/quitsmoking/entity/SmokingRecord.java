@@ -10,14 +10,21 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "smoking_records")
+@Table(name = "smoking_records", indexes = {
+        // 覆盖按用户+类型按时间倒序的游标分页与导出
+        @Index(name = "idx_smoking_records_user_type_time_id", columnList = "user_id, record_type, timestamp, id"),
+        // 覆盖不区分类型的按日统计
+        @Index(name = "idx_smoking_records_user_time", columnList = "user_id, timestamp")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class SmokingRecord {
 
+    // 使用池化序列分配ID（MySQL下由 smoking_records_seq 表模拟），使批量插入可以走 JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "smoking_record_seq")
+    @SequenceGenerator(name = "smoking_record_seq", sequenceName = "smoking_records_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
@@ -55,7 +62,9 @@ public class SmokingRecord {
 
     @PrePersist
     protected void onCreate() {
-        this.createdAt = TimeZoneUtil.getCurrentBeijingTime(); // 使用北京时间
+        if (this.createdAt == null) { // 异步批量写入时保留入队时间
+            this.createdAt = TimeZoneUtil.getCurrentBeijingTime(); // 使用北京时间
+        }
         this.updatedAt = TimeZoneUtil.getCurrentBeijingTime(); // 使用北京时间
     }
 
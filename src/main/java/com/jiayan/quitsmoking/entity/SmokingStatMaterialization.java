@@ -0,0 +1,26 @@
+package com.jiayan.quitsmoking.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户每日统计物化标记
+ * 存在即表示该用户的历史记录已全部汇总进 daily_smoking_stats，此后只需按天增量重算；
+ * 没有标记的用户（统计上线前的老用户）首次查询时整体补算一次
+ */
+@Entity
+@Table(name = "smoking_stat_materializations")
+@Data
+@NoArgsConstructor
+public class SmokingStatMaterialization {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "materialized_at", nullable = false)
+    private LocalDateTime materializedAt; // 最近一次全量重建时间（北京时间）
+}
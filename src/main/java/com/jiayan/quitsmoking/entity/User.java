@@ -15,7 +15,12 @@ import java.time.LocalDateTime;
  * 用户实体类
  */
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        // 覆盖到期禁言的批量清理
+        @Index(name = "idx_users_ban_end_time", columnList = "forum_banned, ban_end_time"),
+        // 覆盖到期发帖权限的批量清理
+        @Index(name = "idx_users_post_permission_expires_at", columnList = "post_permission_expires_at")
+})
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class User {
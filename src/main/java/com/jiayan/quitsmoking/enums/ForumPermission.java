@@ -0,0 +1,33 @@
+package com.jiayan.quitsmoking.enums;
+
+/**
+ * 论坛权限位枚举
+ * 每个权限占用权限掩码中的一位，用户快照创建时一次性计算
+ */
+public enum ForumPermission {
+
+    POST_GRANTED("已授予发帖权限"),
+    POST_ALLOWED("当前可发帖（未禁言且权限未过期）"),
+    BANNED("禁言中"),
+    MEMBER_CONTENT("可访问会员内容"),
+    PREMIUM_CONTENT("可访问高级会员内容"),
+    ADMIN("管理权限"),
+    AUDIT("审核权限");
+
+    private final String description;
+
+    ForumPermission(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 该权限在掩码中对应的位
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+}
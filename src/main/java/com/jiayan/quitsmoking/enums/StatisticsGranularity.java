@@ -0,0 +1,35 @@
+package com.jiayan.quitsmoking.enums;
+
+/**
+ * 统计粒度枚举
+ */
+public enum StatisticsGranularity {
+    DAY("day", "按天"),
+    WEEK("week", "按周"),
+    MONTH("month", "按月");
+
+    private final String code;
+    private final String description;
+
+    StatisticsGranularity(String code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public static StatisticsGranularity fromCode(String code) {
+        for (StatisticsGranularity granularity : values()) {
+            if (granularity.code.equals(code)) {
+                return granularity;
+            }
+        }
+        throw new IllegalArgumentException("Unknown statistics granularity: " + code);
+    }
+}
@@ -0,0 +1,39 @@
+package com.jiayan.quitsmoking.media;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 内容寻址的上传文件存储
+ * 文件内容按 SHA-256 只保存一份（blob），各业务目录下的文件是指向 blob 的硬链接，
+ * 原有的文件路径和访问 URL 不变；相同内容的图片、音频重复上传不再占用额外空间
+ */
+public interface BlobStore {
+
+    /**
+     * 边写边计算 SHA-256 存入 blob，再发布到 target（已存在时原子替换，不改写原文件内容）
+     *
+     * @return 内容的 SHA-256（十六进制）
+     */
+    String store(InputStream in, Path target) throws IOException;
+
+    /**
+     * 文件是否已纳入存储（与 blob 共享数据）；不支持链接计数或无法建立硬链接时视为已纳入
+     */
+    boolean isManaged(Path file) throws IOException;
+
+    /**
+     * 把未纳入存储的已有文件纳入：内容已存在时替换为指向该 blob 的链接，否则文件本身成为 blob；
+     * 无法建立硬链接时不做任何处理
+     */
+    void adopt(Path file) throws IOException;
+
+    /**
+     * 清理超过保留期且已没有任何文件链接的 blob 及残留临时文件；无法建立硬链接时不做任何处理
+     *
+     * @return 清理的 blob 数量
+     */
+    int sweep(Duration grace) throws IOException;
+}
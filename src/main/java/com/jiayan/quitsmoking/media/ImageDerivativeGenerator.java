@@ -0,0 +1,371 @@
+package com.jiayan.quitsmoking.media;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片派生规格生成器
+ * 上传后在有界线程池中异步生成各尺寸 JPEG，保存在原图所在目录的 _variants/{规格}/ 下；
+ * 请求某规格时若文件不存在或早于原图则同步生成（同一文件并发请求只生成一次，同步生成总并发有上限，超出时返回原图）。
+ * 解码时按目标尺寸做降采样读取，大图不会整张解码进内存；按 EXIF 方向旋转
+ */
+@Component
+@Slf4j
+public class ImageDerivativeGenerator {
+
+    public static final String VARIANTS_DIR = "_variants";
+
+    /**
+     * 可生成规格的原图扩展名（GIF 可能是动图，保持原图）
+     */
+    private static final Set<String> SUPPORTED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp");
+
+    @Value("${media.derivative.threads:2}")
+    private int threads;
+
+    @Value("${media.derivative.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${media.derivative.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${media.derivative.sync-permits:2}")
+    private int syncPermits;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 请求线程中同步生成的并发许可，避免缩略图请求突发时大量解码占满内存和 CPU
+     */
+    private Semaphore syncRenderPermits;
+
+    private final ConcurrentHashMap<Path, CompletableFuture<Path>> inflight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        syncRenderPermits = new Semaphore(syncPermits);
+        AtomicInteger counter = new AtomicInteger();
+        // 队列满时丢弃任务，未生成的规格在首次请求时按需生成
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "image-derivative-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 异步生成全部规格（上传完成后调用）
+     */
+    public void generateAsync(Path original) {
+        if (!isSupported(original)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                for (ImageVariant variant : ImageVariant.values()) {
+                    derive(original, variant, false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("图片规格生成队列已满，改为按需生成: {}", original);
+        }
+    }
+
+    /**
+     * 返回指定规格的文件，必要时同步生成；variant 为 null、非支持格式、本身就是规格文件、
+     * 同步生成已达并发上限或生成失败时返回原图
+     */
+    public Path resolve(Path original, ImageVariant variant) {
+        if (variant == null || !isSupported(original) || isVariantPath(original)) {
+            return original;
+        }
+        Path derived = derive(original, variant, true);
+        return derived != null ? derived : original;
+    }
+
+    /**
+     * 删除原图的全部规格文件（删除原图时调用）
+     */
+    public void deleteDerivatives(Path original) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            try {
+                Files.deleteIfExists(variantPath(original, variant));
+            } catch (IOException e) {
+                log.warn("删除图片规格文件失败: {}, variant={}", original, variant.getCode(), e);
+            }
+        }
+    }
+
+    /**
+     * @param sync 是否在请求线程中生成（受并发许可限制，拿不到许可时返回 null）
+     */
+    private Path derive(Path original, ImageVariant variant, boolean sync) {
+        Path target = variantPath(original, variant);
+        if (isFresh(target, original)) {
+            return target;
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> running = inflight.putIfAbsent(target, mine);
+        if (running != null) {
+            return running.join();
+        }
+        boolean permitted = false;
+        try {
+            Path result;
+            if (isFresh(target, original)) {
+                result = target;
+            } else if (sync && !(permitted = syncRenderPermits.tryAcquire())) {
+                log.debug("同步生成图片规格并发已满，返回原图: {}, variant={}", original, variant.getCode());
+                result = null;
+            } else {
+                result = render(original, variant, target);
+            }
+            mine.complete(result);
+            return result;
+        } catch (Exception | OutOfMemoryError e) {
+            log.warn("生成图片规格失败: {}, variant={}", original, variant.getCode(), e);
+            mine.complete(null);
+            return null;
+        } finally {
+            if (permitted) {
+                syncRenderPermits.release();
+            }
+            inflight.remove(target, mine);
+        }
+    }
+
+    private Path render(Path original, ImageVariant variant, Path target) throws IOException {
+        if (!Files.isRegularFile(original)) {
+            return null;
+        }
+        BufferedImage source = readSubsampled(original, variant.getMaxEdge());
+        if (source == null) {
+            return null;
+        }
+
+        double scale = Math.min(1.0, (double) variant.getMaxEdge() / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            // JPEG 不支持透明，透明区域铺白底
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        BufferedImage output = applyOrientation(scaled, readExifOrientation(original));
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".tmp-", ".jpg");
+        try {
+            writeJpeg(output, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.debug("生成图片规格: {} -> {} ({}x{})", original, target, output.getWidth(), output.getHeight());
+        return target;
+    }
+
+    /**
+     * 降采样读取：解码结果不小于目标尺寸的 2 倍，再由双线性缩放到目标尺寸
+     */
+    private BufferedImage readSubsampled(Path file, int maxEdge) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longEdge / (maxEdge * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * 按 EXIF 方向旋转（3: 180°，6: 顺时针 90°，8: 逆时针 90°；镜像方向较少见，不处理）
+     */
+    private static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (orientation != 3 && orientation != 6 && orientation != 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean swap = orientation != 3;
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rotated.createGraphics();
+        try {
+            switch (orientation) {
+                case 3 -> {
+                    g.translate(w, h);
+                    g.rotate(Math.PI);
+                }
+                case 6 -> {
+                    g.translate(h, 0);
+                    g.rotate(Math.PI / 2);
+                }
+                default -> {
+                    g.translate(0, w);
+                    g.rotate(-Math.PI / 2);
+                }
+            }
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rotated;
+    }
+
+    /**
+     * 读取 JPEG 的 EXIF 方向（APP1 段 IFD0 的 0x0112 标签），读取失败或无此信息返回 1
+     */
+    private static int readExifOrientation(Path file) {
+        String extension = extensionOf(file);
+        if (!"jpg".equals(extension) && !"jpeg".equals(extension)) {
+            return 1;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+                    return 1;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (marker != 0xFFE1) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                byte[] segment = new byte[length];
+                in.readFully(segment);
+                if (length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i' || segment[3] != 'f') {
+                    continue;
+                }
+                ByteBuffer tiff = ByteBuffer.wrap(segment, 6, length - 6).slice();
+                tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+                int ifd = tiff.getInt(4);
+                int entries = tiff.getShort(ifd) & 0xFFFF;
+                for (int i = 0; i < entries; i++) {
+                    int entry = ifd + 2 + i * 12;
+                    if ((tiff.getShort(entry) & 0xFFFF) == 0x0112) {
+                        return tiff.getShort(entry + 8) & 0xFFFF;
+                    }
+                }
+                return 1;
+            }
+        } catch (IOException | RuntimeException e) {
+            return 1;
+        }
+    }
+
+    private static Path variantPath(Path original, ImageVariant variant) {
+        return original.getParent().resolve(VARIANTS_DIR).resolve(variant.getCode())
+                .resolve(original.getFileName().toString() + ".jpg");
+    }
+
+    /**
+     * 路径中是否含规格目录（规格文件本身不再派生，直接按原样输出）
+     */
+    private static boolean isVariantPath(Path file) {
+        for (Path name : file) {
+            if (VARIANTS_DIR.equals(name.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isFresh(Path target, Path original) {
+        try {
+            return Files.exists(target)
+                    && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(original)) >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isSupported(Path file) {
+        return SUPPORTED_EXTENSIONS.contains(extensionOf(file));
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,42 @@
+package com.jiayan.quitsmoking.media;
+
+/**
+ * 图片尺寸规格（按长边等比缩放，输出 JPEG）
+ */
+public enum ImageVariant {
+
+    THUMB("thumb", 240),
+    SMALL("small", 640),
+    MEDIUM("medium", 1280);
+
+    private final String code;
+    private final int maxEdge;
+
+    ImageVariant(String code, int maxEdge) {
+        this.code = code;
+        this.maxEdge = maxEdge;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+
+    /**
+     * 按规格代码查找，未知或为空时返回 null（表示原图）
+     */
+    public static ImageVariant fromCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        for (ImageVariant variant : values()) {
+            if (variant.code.equalsIgnoreCase(code.trim())) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,293 @@
+package com.jiayan.quitsmoking.media;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 本地文件系统 blob 存储
+ * blob 路径为 {root}/{hash 前 2 位}/{hash 第 3-4 位}/{hash}，业务文件通过硬链接共享 blob，
+ * 链接数为 1 的 blob 即不再被任何业务文件使用。复用已有 blob 时刷新旁边的 {hash}.live 标记文件，
+ * 而不是改 blob 本身的修改时间（blob 与业务文件是同一个 inode，改了会影响 ETag 和缩略图新旧判断）。
+ * 无法建立硬链接（跨文件系统等）时切换为复制模式并记录在 {root}/.copy-mode：
+ * 此后直接保存文件、不再纳入和清理，删除该文件并重启可重新检测
+ */
+@Component
+@Slf4j
+public class LocalBlobStore implements BlobStore {
+
+    private static final String TEMP_DIR = "tmp";
+    private static final String LIVE_SUFFIX = ".live";
+    private static final String COPY_MODE_MARKER = ".copy-mode";
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * 复用的 blob 在刷新标记和建立链接之间被清理时的最大重试次数
+     */
+    private static final int MAX_STORE_ATTEMPTS = 3;
+
+    @Value("${media.blob.root:uploads/blobs}")
+    private String root;
+
+    private volatile boolean linkSupported;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path tempDir = rootPath().resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        if (Files.exists(rootPath().resolve(COPY_MODE_MARKER))) {
+            log.info("blob 存储处于复制模式（{} 存在），不做内容合并", rootPath().resolve(COPY_MODE_MARKER));
+            return;
+        }
+        if (!supportsLinkCount(tempDir)) {
+            log.info("blob 存储所在文件系统不支持链接计数，不做内容合并");
+            return;
+        }
+        Path probe = Files.createTempFile(tempDir, "probe-", ".tmp");
+        Path probeLink = tempDir.resolve(probe.getFileName() + ".link");
+        try {
+            Files.createLink(probeLink, probe);
+            linkSupported = true;
+        } catch (IOException | UnsupportedOperationException e) {
+            disableLinking(e);
+        } finally {
+            Files.deleteIfExists(probeLink);
+            Files.deleteIfExists(probe);
+        }
+    }
+
+    @Override
+    public String store(InputStream in, Path target) throws IOException {
+        Path tempDir = rootPath().resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "blob-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                in.transferTo(out);
+            }
+            String hash = HEX.formatHex(digest.digest());
+            if (!linkSupported) {
+                publish(temp, target);
+                return hash;
+            }
+            Path blob = blobPath(hash);
+            for (int attempt = 1; ; attempt++) {
+                boolean reused = markLive(blob);
+                if (!reused) {
+                    Files.createDirectories(blob.getParent());
+                    Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+                }
+                try {
+                    publish(blob, target);
+                    return hash;
+                } catch (NoSuchFileException e) {
+                    // 复用的 blob 恰好在建立链接前被清理：临时文件还在，重新存入
+                    if (!reused || attempt >= MAX_STORE_ATTEMPTS) {
+                        throw e;
+                    }
+                    log.debug("复用的 blob 已被清理，重新存入: {}", blob);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public boolean isManaged(Path file) throws IOException {
+        if (!linkSupported || !supportsLinkCount(file)) {
+            return true;
+        }
+        return (Integer) Files.getAttribute(file, "unix:nlink") > 1;
+    }
+
+    @Override
+    public void adopt(Path file) throws IOException {
+        if (!linkSupported) {
+            return;
+        }
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        Path blob = blobPath(HEX.formatHex(digest.digest()));
+        Files.createDirectories(blob.getParent());
+        try {
+            Files.createLink(blob, file);
+        } catch (FileAlreadyExistsException e) {
+            markLive(blob);
+            try {
+                publish(blob, file);
+            } catch (NoSuchFileException gone) {
+                // blob 刚被清理，原文件未动，由它成为 blob
+                Files.createLink(blob, file);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            disableLinking(e);
+        }
+    }
+
+    @Override
+    public int sweep(Duration grace) throws IOException {
+        Path rootPath = rootPath();
+        if (!linkSupported || !Files.isDirectory(rootPath)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - grace.toMillis();
+        Path tempDir = rootPath.resolve(TEMP_DIR);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(rootPath)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+
+        int removed = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                if (file.startsWith(tempDir)) {
+                    // 写入中途崩溃残留的临时文件
+                    if (lastModified(file) <= cutoff) {
+                        Files.deleteIfExists(file);
+                    }
+                } else if (name.endsWith(LIVE_SUFFIX)) {
+                    // blob 已不存在的标记
+                    Path blob = file.resolveSibling(name.substring(0, name.length() - LIVE_SUFFIX.length()));
+                    if (!Files.exists(blob) && lastModified(file) <= cutoff) {
+                        Files.deleteIfExists(file);
+                    }
+                } else if (!name.startsWith(".")) {
+                    Map<String, Object> attributes = Files.readAttributes(file, "unix:nlink,lastModifiedTime");
+                    Path marker = liveMarkerPath(file);
+                    if ((Integer) attributes.get("nlink") == 1
+                            && ((FileTime) attributes.get("lastModifiedTime")).toMillis() <= cutoff
+                            && (!Files.exists(marker) || lastModified(marker) <= cutoff)) {
+                        Files.deleteIfExists(file);
+                        Files.deleteIfExists(marker);
+                        removed++;
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // 已被删除
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 刷新已存在 blob 的存活标记（复用的 blob 不会在链接建立前被当作孤儿清理），blob 不存在返回 false
+     */
+    private boolean markLive(Path blob) throws IOException {
+        if (!Files.exists(blob)) {
+            return false;
+        }
+        Path marker = liveMarkerPath(blob);
+        try {
+            Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            try {
+                Files.createFile(marker);
+            } catch (FileAlreadyExistsException ignored) {
+                // 并发创建
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在目标目录先建立临时链接（复制模式下为临时副本）再原子改名，读者不会看到写了一半的文件
+     *
+     * @throws NoSuchFileException source 不存在
+     */
+    private void publish(Path source, Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path link = dir.resolve("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            if (linkSupported) {
+                try {
+                    Files.createLink(link, source);
+                } catch (NoSuchFileException e) {
+                    throw e;
+                } catch (IOException | UnsupportedOperationException e) {
+                    disableLinking(e);
+                    Files.copy(source, link);
+                }
+            } else {
+                Files.copy(source, link);
+            }
+            Files.move(link, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(link);
+        }
+    }
+
+    /**
+     * 切换为复制模式并持久化（只检测一次，重启后保持）：复制出的文件不与 blob 共享 inode，
+     * 链接计数不再代表引用，继续纳入和清理只会反复重建 blob
+     */
+    private synchronized void disableLinking(Exception cause) {
+        if (!linkSupported && Files.exists(rootPath().resolve(COPY_MODE_MARKER))) {
+            return;
+        }
+        linkSupported = false;
+        log.warn("无法建立硬链接，blob 存储切换为复制模式: {}", cause.toString());
+        try {
+            Files.createFile(rootPath().resolve(COPY_MODE_MARKER));
+        } catch (FileAlreadyExistsException ignored) {
+            // 已记录
+        } catch (IOException e) {
+            log.warn("记录 blob 存储复制模式失败", e);
+        }
+    }
+
+    private Path blobPath(String hash) {
+        return rootPath().resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static Path liveMarkerPath(Path blob) {
+        return blob.resolveSibling(blob.getFileName() + LIVE_SUFFIX);
+    }
+
+    private Path rootPath() {
+        return Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    private static long lastModified(Path file) throws IOException {
+        return Files.getLastModifiedTime(file).toMillis();
+    }
+
+    private static boolean supportsLinkCount(Path path) throws IOException {
+        return Files.getFileStore(path).supportsFileAttributeView("unix");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
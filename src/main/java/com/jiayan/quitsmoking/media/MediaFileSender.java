@@ -0,0 +1,179 @@
+package com.jiayan.quitsmoking.media;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.connector.ClientAbortException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * 媒体文件输出（上传的音频、日记图片、文章图片、分类图标、头像、背景图共用）
+ * 支持条件请求（ETag / Last-Modified → 304）和单段 Range 请求（206，音频拖动和断点续传），
+ * 容器支持 sendfile 时交给 Tomcat 零拷贝发送，否则用 FileChannel.transferTo 分段写出，不把文件读入堆内存
+ */
+@Component
+@Slf4j
+public class MediaFileSender {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 在基础目录下解析相对路径，越出基础目录（路径穿越）时返回 null
+     */
+    public Path resolve(Path baseDir, String relativePath) {
+        if (relativePath == null || relativePath.isBlank()) {
+            return null;
+        }
+        Path base = baseDir.toAbsolutePath().normalize();
+        Path file = base.resolve(relativePath).normalize();
+        return file.startsWith(base) && !file.equals(base) ? file : null;
+    }
+
+    /**
+     * 按扩展名确定内容类型（Spring 内置的静态类型表，不缓存、不探测文件）；无法识别时为 application/octet-stream
+     */
+    public MediaType contentTypeOf(Path file) {
+        return MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * 以 inline 方式输出文件，内容类型按扩展名确定
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path file,
+                     CacheControl cacheControl) throws IOException {
+        send(request, response, file, null, cacheControl, null);
+    }
+
+    /**
+     * 输出文件
+     *
+     * @param contentType        为 null 时在确认文件存在后按扩展名确定
+     * @param contentDisposition 为 null 时不设置 Content-Disposition
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path file,
+                     MediaType contentType, CacheControl cacheControl, String contentDisposition) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = attributes.size();
+        // HTTP 日期精度为秒
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // 命中 If-None-Match / If-Modified-Since 时写入 304 并返回 true（同时设置 ETag 和 Last-Modified）
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isRangeApplicable(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                // 无法解析的 Range 忽略，返回完整文件
+                ranges = List.of();
+            }
+            // 多段 Range 较少见，按整文件返回（RFC 9110 允许忽略 Range）
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = length == 0 ? 0 : end - start + 1;
+        response.setContentType((contentType != null ? contentType : contentTypeOf(file)).toString());
+        response.setContentLengthLong(count);
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // Tomcat 在请求结束后用 sendfile 发送，结束位置不含
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        } catch (ClientAbortException e) {
+            // 客户端中途断开（拖动进度、切换页面）属正常情况
+            log.debug("客户端中断下载: {}", file);
+        }
+    }
+
+    /**
+     * If-Range 与当前 ETag 或修改时间一致（或未携带）时 Range 才生效，否则返回完整文件
+     */
+    private boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
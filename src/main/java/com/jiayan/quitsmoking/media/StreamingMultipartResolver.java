@@ -0,0 +1,17 @@
+package com.jiayan.quitsmoking.media;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+
+/**
+ * 跳过流式上传接口的 multipart 预解析（其余请求与默认解析器一致），
+ * 使这些接口能直接读取原始请求体，见 StreamingUploadReader
+ */
+public class StreamingMultipartResolver extends StandardServletMultipartResolver {
+
+    @Override
+    public boolean isMultipart(HttpServletRequest request) {
+        return !request.getRequestURI().endsWith(StreamingUploadReader.STREAM_PATH_SUFFIX)
+                && super.isMultipart(request);
+    }
+}
@@ -0,0 +1,160 @@
+package com.jiayan.quitsmoking.media;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.UploadContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式读取 multipart 上传（commons-fileupload 流式 API）
+ * 文件部分不经容器临时文件，边读请求体边写入最终存储，只写一次盘；
+ * 单文件和整个请求的大小限制在读取过程中即时生效。
+ * 以 /upload/stream 结尾的路径由 StreamingMultipartResolver 跳过 Spring 的 multipart 预解析，
+ * 这些接口不能使用 @RequestParam（取参数会触发容器解析请求体）
+ */
+@Component
+public class StreamingUploadReader {
+
+    public static final String STREAM_PATH_SUFFIX = "/upload/stream";
+
+    /**
+     * 整个请求的大小上限，与普通上传接口一致
+     */
+    @Value("${spring.servlet.multipart.max-request-size:20MB}")
+    private DataSize maxRequestSize;
+
+    /**
+     * 打开 multipart 请求的部分迭代器：各部分按请求体顺序读取，文件部分须在取下一部分前读完或关闭
+     */
+    public FileItemIterator open(HttpServletRequest request, long maxFileSize) throws IOException, FileUploadException {
+        FileUpload upload = new FileUpload();
+        upload.setFileSizeMax(maxFileSize);
+        upload.setSizeMax(maxRequestSize.toBytes());
+        upload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+        return upload.getItemIterator(new RequestUploadContext(request));
+    }
+
+    /**
+     * 读取请求中第一个名为 fieldName 的文件部分交给 handler 处理，其余部分忽略
+     *
+     * @return handler 的结果；请求中没有该文件时返回 null
+     */
+    public <T> T readFirstFile(HttpServletRequest request, String fieldName, long maxFileSize,
+                               FileHandler<T> handler) throws IOException, FileUploadException {
+        FileItemIterator items = open(request, maxFileSize);
+        while (items.hasNext()) {
+            FileItemStream item = items.next();
+            if (item.isFormField() || !fieldName.equals(item.getFieldName())) {
+                continue;
+            }
+            try (InputStream content = item.openStream()) {
+                return handler.handle(item.getName(), content);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取过程中抛出的异常是否为单文件超过大小限制（此时该文件剩余内容已跳过，可继续读取下一部分）
+     */
+    public static boolean isFileSizeExceeded(IOException e) {
+        return e instanceof FileUploadBase.FileUploadIOException
+                && e.getCause() instanceof FileUploadBase.FileSizeLimitExceededException;
+    }
+
+    /**
+     * 按文件头识别图片类型，返回扩展名和包含已读文件头的完整内容流；不是支持的图片格式时返回 null
+     */
+    public static DetectedImage detectImage(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(12);
+        String extension = imageExtension(header);
+        if (extension == null) {
+            return null;
+        }
+        return new DetectedImage(extension, new SequenceInputStream(new ByteArrayInputStream(header), in));
+    }
+
+    private static String imageExtension(byte[] h) {
+        if (h.length >= 3 && (h[0] & 0xFF) == 0xFF && (h[1] & 0xFF) == 0xD8 && (h[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (h.length >= 8 && (h[0] & 0xFF) == 0x89 && h[1] == 'P' && h[2] == 'N' && h[3] == 'G'
+                && h[4] == 0x0D && h[5] == 0x0A && h[6] == 0x1A && h[7] == 0x0A) {
+            return "png";
+        }
+        if (h.length >= 6 && h[0] == 'G' && h[1] == 'I' && h[2] == 'F' && h[3] == '8'
+                && (h[4] == '7' || h[4] == '9') && h[5] == 'a') {
+            return "gif";
+        }
+        if (h.length >= 12 && h[0] == 'R' && h[1] == 'I' && h[2] == 'F' && h[3] == 'F'
+                && h[8] == 'W' && h[9] == 'E' && h[10] == 'B' && h[11] == 'P') {
+            return "webp";
+        }
+        if (h.length >= 2 && h[0] == 'B' && h[1] == 'M') {
+            return "bmp";
+        }
+        return null;
+    }
+
+    /**
+     * 文件部分处理
+     */
+    @FunctionalInterface
+    public interface FileHandler<T> {
+
+        T handle(String originalFilename, InputStream content) throws IOException;
+    }
+
+    /**
+     * 按文件头识别出的图片
+     *
+     * @param extension 扩展名（不含点）
+     * @param content   完整内容流
+     */
+    public record DetectedImage(String extension, InputStream content) {
+    }
+
+    /**
+     * commons-fileupload 1.x 的 ServletRequestContext 基于 javax.servlet，这里直接适配 jakarta 请求
+     */
+    private record RequestUploadContext(HttpServletRequest request) implements UploadContext {
+
+        @Override
+        public long contentLength() {
+            return request.getContentLengthLong();
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return request.getCharacterEncoding();
+        }
+
+        @Override
+        public String getContentType() {
+            return request.getContentType();
+        }
+
+        @Override
+        @Deprecated
+        public int getContentLength() {
+            return request.getContentLength();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return request.getInputStream();
+        }
+    }
+}
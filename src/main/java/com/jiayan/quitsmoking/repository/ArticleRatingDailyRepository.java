@@ -0,0 +1,57 @@
+package com.jiayan.quitsmoking.repository;
+
+import com.jiayan.quitsmoking.entity.ArticleRatingDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 文章每日评分汇总数据访问层
+ */
+@Repository
+public interface ArticleRatingDailyRepository extends JpaRepository<ArticleRatingDaily, Long> {
+
+    /**
+     * 增量更新当日汇总，不存在时插入，数值不会小于0
+     */
+    @Modifying
+    @Query(value = "INSERT INTO article_rating_daily (article_id, rating_date, rating_count, rating_sum, updated_at) " +
+            "VALUES (:articleId, :ratingDate, GREATEST(:countDelta, 0), GREATEST(:sumDelta, 0), :updatedAt) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "rating_count = GREATEST(rating_count + :countDelta, 0), " +
+            "rating_sum = GREATEST(rating_sum + :sumDelta, 0), " +
+            "updated_at = :updatedAt", nativeQuery = true)
+    void upsertDelta(@Param("articleId") Long articleId,
+                     @Param("ratingDate") LocalDate ratingDate,
+                     @Param("countDelta") long countDelta,
+                     @Param("sumDelta") long sumDelta,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 删除文章的全部每日汇总（重建前调用）
+     */
+    @Modifying
+    @Query("DELETE FROM ArticleRatingDaily d WHERE d.articleId = :articleId")
+    void deleteByArticleId(@Param("articleId") Long articleId);
+
+    /**
+     * 从评分明细重建文章的每日汇总，需先调用 {@link #deleteByArticleId}
+     */
+    @Modifying
+    @Query(value = "INSERT INTO article_rating_daily (article_id, rating_date, rating_count, rating_sum, updated_at) " +
+            "SELECT r.article_id, DATE(r.created_at), COUNT(*), SUM(r.rating), :updatedAt " +
+            "FROM knowledge_ratings r WHERE r.article_id = :articleId GROUP BY DATE(r.created_at)",
+            nativeQuery = true)
+    void rebuildForArticle(@Param("articleId") Long articleId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 查询文章在日期区间内（含两端）的每日汇总
+     */
+    List<ArticleRatingDaily> findByArticleIdAndRatingDateBetween(Long articleId, LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,79 @@
+package com.jiayan.quitsmoking.repository;
+
+import com.jiayan.quitsmoking.entity.ArticleRatingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 文章评分聚合数据访问层
+ */
+@Repository
+public interface ArticleRatingStatsRepository extends JpaRepository<ArticleRatingStats, Long> {
+
+    /**
+     * 直接从数据库读取评分人数和总分：[ratingCount, ratingSum]（不经过持久化上下文，可读到本事务内的增量更新）
+     */
+    @Query("SELECT s.ratingCount, s.ratingSum FROM ArticleRatingStats s WHERE s.articleId = :articleId")
+    List<Object[]> findCountAndSum(@Param("articleId") Long articleId);
+
+    /**
+     * 增量更新聚合（行锁内原子累加），返回受影响行数；聚合行不存在时返回 0
+     */
+    @Modifying
+    @Query(value = "UPDATE article_rating_stats SET " +
+            "rating_count = rating_count + :countDelta, " +
+            "rating_sum = rating_sum + :sumDelta, " +
+            "count_1 = count_1 + :delta1, " +
+            "count_2 = count_2 + :delta2, " +
+            "count_3 = count_3 + :delta3, " +
+            "count_4 = count_4 + :delta4, " +
+            "count_5 = count_5 + :delta5, " +
+            "updated_at = :updatedAt " +
+            "WHERE article_id = :articleId", nativeQuery = true)
+    int applyDelta(@Param("articleId") Long articleId,
+                   @Param("countDelta") long countDelta,
+                   @Param("sumDelta") long sumDelta,
+                   @Param("delta1") long delta1,
+                   @Param("delta2") long delta2,
+                   @Param("delta3") long delta3,
+                   @Param("delta4") long delta4,
+                   @Param("delta5") long delta5,
+                   @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 从评分明细全量重算单篇文章的聚合（不存在则插入），用于首次初始化和对账修复
+     */
+    @Modifying
+    @Query(value = "INSERT INTO article_rating_stats " +
+            "(article_id, rating_count, rating_sum, count_1, count_2, count_3, count_4, count_5, updated_at) " +
+            "SELECT :articleId, COUNT(*), COALESCE(SUM(r.rating), 0), " +
+            "COALESCE(SUM(r.rating = 1), 0), COALESCE(SUM(r.rating = 2), 0), COALESCE(SUM(r.rating = 3), 0), " +
+            "COALESCE(SUM(r.rating = 4), 0), COALESCE(SUM(r.rating = 5), 0), :updatedAt " +
+            "FROM knowledge_ratings r WHERE r.article_id = :articleId " +
+            "ON DUPLICATE KEY UPDATE " +
+            "rating_count = VALUES(rating_count), rating_sum = VALUES(rating_sum), " +
+            "count_1 = VALUES(count_1), count_2 = VALUES(count_2), count_3 = VALUES(count_3), " +
+            "count_4 = VALUES(count_4), count_5 = VALUES(count_5), updated_at = VALUES(updated_at)",
+            nativeQuery = true)
+    void recompute(@Param("articleId") Long articleId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 把聚合结果同步到文章表的冗余字段（平均分保留两位小数），只更新不一致的文章
+     */
+    @Modifying
+    @Query(value = "UPDATE knowledge_articles a JOIN article_rating_stats s ON s.article_id = a.id SET " +
+            "a.rating_count = s.rating_count, " +
+            "a.rating_score = CASE WHEN s.rating_count > 0 THEN ROUND(s.rating_sum / s.rating_count, 2) ELSE 0 END " +
+            "WHERE a.id IN :articleIds AND (a.rating_count IS NULL OR a.rating_count <> s.rating_count " +
+            "OR a.rating_score IS NULL OR a.rating_score <> " +
+            "CASE WHEN s.rating_count > 0 THEN ROUND(s.rating_sum / s.rating_count, 2) ELSE 0 END)",
+            nativeQuery = true)
+    void syncArticleRating(@Param("articleIds") Collection<Long> articleIds);
+}
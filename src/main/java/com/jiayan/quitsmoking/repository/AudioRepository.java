@@ -1,6 +1,7 @@
 package com.jiayan.quitsmoking.repository;
 
 import com.jiayan.quitsmoking.entity.Audio;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -71,4 +72,10 @@ public interface AudioRepository extends JpaRepository<Audio, Long>, JpaSpecific
     @Modifying
     @Query("UPDATE Audio a SET a.isDisabled = :isDisabled WHERE a.id IN :audioIds")
     void updateAudioStatusByIds(@Param("audioIds") List<Long> audioIds, @Param("isDisabled") Boolean isDisabled);
+    
+    /**
+     * 按ID分页查询音频 [ID, 文件名]（上传文件垃圾回收标记用）
+     */
+    @Query("SELECT a.id, a.fileName FROM Audio a WHERE a.id > :afterId ORDER BY a.id")
+    List<Object[]> findFileNamesAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.jiayan.quitsmoking.repository;
 
 import com.jiayan.quitsmoking.entity.CommentImage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -8,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +24,11 @@ public interface CommentImageRepository extends JpaRepository<CommentImage, Long
      */
     List<CommentImage> findByCommentIdOrderBySortOrderAsc(Long commentId);
     
+    /**
+     * 根据评论ID批量查找图片
+     */
+    List<CommentImage> findByCommentIdInOrderByCommentIdAscSortOrderAsc(Collection<Long> commentIds);
+    
     /**
      * 根据评论ID和排序查找图片
      */
@@ -104,4 +111,10 @@ public interface CommentImageRepository extends JpaRepository<CommentImage, Long
                                             @Param("maxWidth") Integer maxWidth,
                                             @Param("minHeight") Integer minHeight, 
                                             @Param("maxHeight") Integer maxHeight);
+    
+    /**
+     * 按ID分页查询评论图片 [ID, URL]（上传文件垃圾回收标记用）
+     */
+    @Query("SELECT ci.id, ci.imageUrl FROM CommentImage ci WHERE ci.id > :afterId AND ci.imageUrl IS NOT NULL ORDER BY ci.id")
+    List<Object[]> findImageUrlsAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.jiayan.quitsmoking.repository;
+
+import com.jiayan.quitsmoking.entity.DailyRecordCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 每日记录计数数据访问层
+ */
+@Repository
+public interface DailyRecordCounterRepository extends JpaRepository<DailyRecordCounter, Long> {
+
+    /**
+     * 根据用户ID和日期查找计数（走唯一索引）
+     */
+    Optional<DailyRecordCounter> findByUserIdAndRecordDate(Long userId, LocalDate recordDate);
+
+    /**
+     * 增量更新计数，不存在时插入，计数不会小于0
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_record_counters (user_id, record_date, smoking_count, training_count, updated_at) " +
+            "VALUES (:userId, :recordDate, GREATEST(:smokingDelta, 0), GREATEST(:trainingDelta, 0), :updatedAt) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "smoking_count = GREATEST(smoking_count + :smokingDelta, 0), " +
+            "training_count = GREATEST(training_count + :trainingDelta, 0), " +
+            "updated_at = :updatedAt", nativeQuery = true)
+    void upsertDelta(@Param("userId") Long userId,
+                     @Param("recordDate") LocalDate recordDate,
+                     @Param("smokingDelta") long smokingDelta,
+                     @Param("trainingDelta") long trainingDelta,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+}
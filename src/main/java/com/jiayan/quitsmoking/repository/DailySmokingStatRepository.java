@@ -0,0 +1,60 @@
+package com.jiayan.quitsmoking.repository;
+
+import com.jiayan.quitsmoking.entity.DailySmokingStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 每日吸烟统计数据访问层
+ */
+@Repository
+public interface DailySmokingStatRepository extends JpaRepository<DailySmokingStat, Long> {
+
+    /**
+     * 查询用户日期范围内的每日统计（走唯一索引）
+     */
+    List<DailySmokingStat> findByUserIdAndStatDateBetweenOrderByStatDateAsc(Long userId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 查找用户最早的一天统计
+     */
+    Optional<DailySmokingStat> findFirstByUserIdOrderByStatDateAsc(Long userId);
+
+    /**
+     * 写入某一天的统计，已存在时整行覆盖（走唯一索引原子完成，并发重算同一天不会冲突）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_smoking_stats (user_id, stat_date, smoking_records, cigarette_count, " +
+            "training_count, training_seconds, first_smoking_at, last_smoking_at, max_smoking_gap_seconds, updated_at) " +
+            "VALUES (:#{#stat.userId}, :#{#stat.statDate}, :#{#stat.smokingRecords}, :#{#stat.cigaretteCount}, " +
+            ":#{#stat.trainingCount}, :#{#stat.trainingSeconds}, :#{#stat.firstSmokingAt}, :#{#stat.lastSmokingAt}, " +
+            ":#{#stat.maxSmokingGapSeconds}, :#{#stat.updatedAt}) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "smoking_records = VALUES(smoking_records), cigarette_count = VALUES(cigarette_count), " +
+            "training_count = VALUES(training_count), training_seconds = VALUES(training_seconds), " +
+            "first_smoking_at = VALUES(first_smoking_at), last_smoking_at = VALUES(last_smoking_at), " +
+            "max_smoking_gap_seconds = VALUES(max_smoking_gap_seconds), updated_at = VALUES(updated_at)",
+            nativeQuery = true)
+    void upsert(@Param("stat") DailySmokingStat stat);
+
+    /**
+     * 删除某一天的统计（当天记录已全部删除）
+     */
+    @Modifying
+    @Query("DELETE FROM DailySmokingStat d WHERE d.userId = :userId AND d.statDate = :statDate")
+    void deleteByUserIdAndStatDate(@Param("userId") Long userId, @Param("statDate") LocalDate statDate);
+
+    /**
+     * 删除用户的全部统计（重建前清理）
+     */
+    @Modifying
+    @Query("DELETE FROM DailySmokingStat d WHERE d.userId = :userId")
+    void deleteByUserId(@Param("userId") Long userId);
+}
@@ -2,7 +2,10 @@
 package com.jiayan.quitsmoking.repository;
 
 import com.jiayan.quitsmoking.entity.Diary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
@@ -17,4 +20,11 @@ public interface DiaryRepository extends JpaRepository<Diary, Long> {
      * @return 日记列表
      */
     List<Diary> findByUserIdAndStatusNotOrderByRecordTimeDesc(Long userId, String status);
+    
+    /**
+     * 按ID分页查询含图片日记的 [ID, 用户ID, 图片信息JSON]（上传文件垃圾回收标记用）
+     */
+    @Query("SELECT d.id, d.userId, d.imageUrls FROM Diary d " +
+           "WHERE d.id > :afterId AND d.imageUrls IS NOT NULL AND d.imageUrls <> '[]' ORDER BY d.id")
+    List<Object[]> findUserImageUrlsAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
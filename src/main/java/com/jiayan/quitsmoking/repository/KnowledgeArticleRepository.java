@@ -1,10 +1,13 @@
 package com.jiayan.quitsmoking.repository;
 
+import com.jiayan.quitsmoking.dto.ArticleSummary;
 import com.jiayan.quitsmoking.entity.KnowledgeArticle;
 import com.jiayan.quitsmoking.enums.ArticleStatus;
 import com.jiayan.quitsmoking.enums.AuditStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -13,6 +16,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +26,100 @@ import java.util.Optional;
 @Repository
 public interface KnowledgeArticleRepository extends JpaRepository<KnowledgeArticle, Long>, JpaSpecificationExecutor<KnowledgeArticle> {
     
+    // ========== 列表投影查询（不加载正文，单次关联分类与作者） ==========
+    
+    String SUMMARY_SELECT = "SELECT new com.jiayan.quitsmoking.dto.ArticleSummary(" +
+            "a.id, a.title, a.categoryId, c.name, a.authorId, u.nickname, a.source, " +
+            "a.viewCount, a.likeCount, a.dislikeCount, a.ratingScore, a.ratingCount, " +
+            "a.status, a.auditStatus, a.auditComment, a.publishTime, a.lastEditTime, a.createdAt, a.updatedAt) " +
+            "FROM KnowledgeArticle a LEFT JOIN a.category c LEFT JOIN a.author u ";
+    
+    String COMBINED_FILTER = "WHERE a.isDeleted = false " +
+            "AND (:keyword IS NULL OR a.title LIKE :keyword) " +
+            "AND (:categoryId IS NULL OR a.categoryId = :categoryId) " +
+            "AND (:status IS NULL OR a.status = :status) " +
+            "AND (:auditStatus IS NULL OR a.auditStatus = :auditStatus)";
+    
+    /**
+     * 按关键字、分类、状态、审核状态组合筛选文章列表
+     */
+    @Query(value = SUMMARY_SELECT + COMBINED_FILTER,
+           countQuery = "SELECT COUNT(a) FROM KnowledgeArticle a " + COMBINED_FILTER)
+    Page<ArticleSummary> findSummaries(@Param("keyword") String keyword,
+                                       @Param("categoryId") Long categoryId,
+                                       @Param("status") ArticleStatus status,
+                                       @Param("auditStatus") AuditStatus auditStatus,
+                                       Pageable pageable);
+    
+    /**
+     * 根据分类ID查找文章列表
+     */
+    @Query(value = SUMMARY_SELECT + "WHERE a.categoryId = :categoryId AND a.status = :status AND a.isDeleted = false",
+           countQuery = "SELECT COUNT(a) FROM KnowledgeArticle a " +
+                        "WHERE a.categoryId = :categoryId AND a.status = :status AND a.isDeleted = false")
+    Page<ArticleSummary> findSummariesByCategory(@Param("categoryId") Long categoryId,
+                                                 @Param("status") ArticleStatus status,
+                                                 Pageable pageable);
+    
+    /**
+     * 根据标题搜索文章列表
+     */
+    @Query(value = SUMMARY_SELECT + "WHERE a.title LIKE :keyword AND a.status = :status AND a.isDeleted = false",
+           countQuery = "SELECT COUNT(a) FROM KnowledgeArticle a " +
+                        "WHERE a.title LIKE :keyword AND a.status = :status AND a.isDeleted = false")
+    Page<ArticleSummary> searchSummariesByTitle(@Param("keyword") String keyword,
+                                                @Param("status") ArticleStatus status,
+                                                Pageable pageable);
+    
+    /**
+     * 查找热门文章列表（按浏览次数排序）
+     */
+    @Query(value = SUMMARY_SELECT + "WHERE a.status = :status AND a.isDeleted = false ORDER BY a.viewCount DESC",
+           countQuery = "SELECT COUNT(a) FROM KnowledgeArticle a WHERE a.status = :status AND a.isDeleted = false")
+    Page<ArticleSummary> findPopularSummaries(@Param("status") ArticleStatus status, Pageable pageable);
+    
+    /**
+     * 查找最新文章列表（按发布时间排序）
+     */
+    @Query(value = SUMMARY_SELECT + "WHERE a.status = :status AND a.isDeleted = false ORDER BY a.publishTime DESC",
+           countQuery = "SELECT COUNT(a) FROM KnowledgeArticle a WHERE a.status = :status AND a.isDeleted = false")
+    Page<ArticleSummary> findLatestSummaries(@Param("status") ArticleStatus status, Pageable pageable);
+    
+    /**
+     * 按ID批量查询文章列表项（检索结果组装）
+     */
+    @Query(SUMMARY_SELECT + "WHERE a.id IN :articleIds")
+    List<ArticleSummary> findSummariesByIds(@Param("articleIds") Collection<Long> articleIds);
+    
+    /**
+     * 按ID批量查询指定状态、未删除的文章列表项
+     */
+    @Query(SUMMARY_SELECT + "WHERE a.id IN :articleIds AND a.status = :status AND a.isDeleted = false")
+    List<ArticleSummary> findSummariesByIdsAndStatus(@Param("articleIds") Collection<Long> articleIds,
+                                                     @Param("status") ArticleStatus status);
+    
+    /**
+     * 按组合筛选条件查询文章ID并排序（只取ID，检索命中后在内存中按此顺序过滤分页）
+     */
+    @Query("SELECT a.id FROM KnowledgeArticle a " + COMBINED_FILTER)
+    List<Long> findIdsByFilter(@Param("keyword") String keyword,
+                               @Param("categoryId") Long categoryId,
+                               @Param("status") ArticleStatus status,
+                               @Param("auditStatus") AuditStatus auditStatus,
+                               Sort sort);
+    
+    /**
+     * 按ID顺序分批读取未删除的文章（重建检索索引）
+     */
+    List<KnowledgeArticle> findByIsDeletedFalseAndIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+    
+    /**
+     * 查询文章详情，一次加载分类、作者和内容块
+     */
+    @EntityGraph(attributePaths = {"category", "author", "contentBlocks"})
+    @Query("SELECT a FROM KnowledgeArticle a WHERE a.id = :articleId")
+    Optional<KnowledgeArticle> findWithDetailsById(@Param("articleId") Long articleId);
+    
     /**
      * 根据分类ID查找文章
      */
@@ -102,6 +200,33 @@ public interface KnowledgeArticleRepository extends JpaRepository<KnowledgeArtic
                                                               @Param("status") ArticleStatus status,
                                                               Pageable pageable);
     
+    /**
+     * 查询指定状态、未删除文章的 [ID, 分类ID, 发布时间]（可访问文章索引全量加载）
+     */
+    @Query("SELECT a.id, a.categoryId, a.publishTime FROM KnowledgeArticle a WHERE a.status = :status AND a.isDeleted = false")
+    List<Object[]> findFeedEntriesByStatus(@Param("status") ArticleStatus status);
+    
+    /**
+     * 在给定ID中查询指定状态、未删除文章的 [ID, 分类ID, 发布时间]（可访问文章索引单篇刷新）
+     */
+    @Query("SELECT a.id, a.categoryId, a.publishTime FROM KnowledgeArticle a " +
+           "WHERE a.id IN :articleIds AND a.status = :status AND a.isDeleted = false")
+    List<Object[]> findFeedEntriesByIdInAndStatus(@Param("articleIds") Collection<Long> articleIds,
+                                                  @Param("status") ArticleStatus status);
+    
+    /**
+     * 在给定ID中筛选指定状态、未删除的文章ID
+     */
+    @Query("SELECT a.id FROM KnowledgeArticle a WHERE a.id IN :articleIds AND a.status = :status AND a.isDeleted = false")
+    List<Long> findIdsByIdInAndStatus(@Param("articleIds") Collection<Long> articleIds,
+                                      @Param("status") ArticleStatus status);
+    
+    /**
+     * 按ID游标分批查询文章ID（含已删除，用于后台对账）
+     */
+    @Query("SELECT a.id FROM KnowledgeArticle a WHERE a.id > :afterId ORDER BY a.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
     /**
      * 更新文章浏览次数
      */
@@ -109,6 +234,13 @@ public interface KnowledgeArticleRepository extends JpaRepository<KnowledgeArtic
     @Query("UPDATE KnowledgeArticle a SET a.viewCount = a.viewCount + 1 WHERE a.id = :articleId")
     void incrementViewCount(@Param("articleId") Long articleId);
     
+    /**
+     * 批量累加文章浏览次数（同一增量的文章合并为一条 UPDATE）
+     */
+    @Modifying
+    @Query("UPDATE KnowledgeArticle a SET a.viewCount = a.viewCount + :delta WHERE a.id IN :articleIds")
+    int addViewCount(@Param("articleIds") Collection<Long> articleIds, @Param("delta") int delta);
+    
     /**
      * 更新文章点赞数
      */
@@ -164,4 +296,10 @@ public interface KnowledgeArticleRepository extends JpaRepository<KnowledgeArtic
      */
     @Query("SELECT a FROM KnowledgeArticle a WHERE a.bannedReason LIKE %:reason% AND a.status = 'banned' AND a.isDeleted = false")
     Page<KnowledgeArticle> findByBannedReasonContaining(@Param("reason") String reason, Pageable pageable);
+    
+    /**
+     * 按ID分页查询正文中引用了上传文件的文章 [ID, 正文]（上传文件垃圾回收标记用，含已删除文章）
+     */
+    @Query("SELECT a.id, a.content FROM KnowledgeArticle a WHERE a.id > :afterId AND a.content LIKE '%/uploads/%' ORDER BY a.id")
+    List<Object[]> findContentsReferencingUploadsAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
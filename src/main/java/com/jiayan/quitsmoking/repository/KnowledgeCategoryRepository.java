@@ -148,4 +148,10 @@ public interface KnowledgeCategoryRepository extends JpaRepository<KnowledgeCate
     @Query("SELECT c FROM KnowledgeCategory c WHERE c.isActive = true " +
            "ORDER BY (SELECT COUNT(a) FROM KnowledgeArticle a WHERE a.categoryId = c.id AND a.status = 'published') DESC")
     List<KnowledgeCategory> findPopularCategories();
+    
+    /**
+     * 按ID分页查询分类 [ID, 图标文件名]（上传文件垃圾回收标记用）
+     */
+    @Query("SELECT c.id, c.iconName FROM KnowledgeCategory c WHERE c.id > :afterId AND c.iconName IS NOT NULL ORDER BY c.id")
+    List<Object[]> findIconNamesAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
@@ -44,9 +44,23 @@ public interface KnowledgeCommentRepository extends JpaRepository<KnowledgeComme
     /**
      * 根据文章ID查找所有可见评论
      */
-    @Query("SELECT c FROM KnowledgeComment c WHERE c.articleId = :articleId AND c.status = 'active' AND c.isDeleted = false " +
-           "ORDER BY c.parentId ASC NULLS FIRST, c.createdAt ASC")
-    List<KnowledgeComment> findVisibleCommentsByArticleId(@Param("articleId") Long articleId);
+    @Query("SELECT c FROM KnowledgeComment c WHERE c.articleId = :articleId AND c.status = :status AND c.isDeleted = false " +
+           "ORDER BY c.parentId ASC NULLS FIRST, c.createdAt ASC, c.id ASC")
+    List<KnowledgeComment> findVisibleCommentsByArticleId(@Param("articleId") Long articleId,
+                                                          @Param("status") CommentStatus status);
+    
+    /**
+     * 一次扫描统计文章评论：[总数, 正常数, 正常评论点赞数, 正常有用评论数, 正常评论中 since 之后的数量]
+     */
+    @Query("SELECT COUNT(c), " +
+           "SUM(CASE WHEN c.status = :active THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN c.status = :active THEN COALESCE(c.likeCount, 0) ELSE 0 END), " +
+           "SUM(CASE WHEN c.status = :active AND c.isHelpful = true THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN c.status = :active AND c.createdAt >= :since THEN 1 ELSE 0 END) " +
+           "FROM KnowledgeComment c WHERE c.articleId = :articleId AND c.isDeleted = false")
+    List<Object[]> aggregateStatsByArticleId(@Param("articleId") Long articleId,
+                                             @Param("active") CommentStatus active,
+                                             @Param("since") LocalDateTime since);
     
     /**
      * 统计文章的评论数量
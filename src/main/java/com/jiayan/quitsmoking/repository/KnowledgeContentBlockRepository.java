@@ -2,6 +2,7 @@ package com.jiayan.quitsmoking.repository;
 
 import com.jiayan.quitsmoking.entity.KnowledgeContentBlock;
 import com.jiayan.quitsmoking.enums.BlockType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -9,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +25,11 @@ public interface KnowledgeContentBlockRepository extends JpaRepository<Knowledge
      */
     List<KnowledgeContentBlock> findByArticleIdOrderByContentOrderAsc(Long articleId);
     
+    /**
+     * 批量查询多篇文章的内容块
+     */
+    List<KnowledgeContentBlock> findByArticleIdInOrderByArticleIdAscContentOrderAsc(Collection<Long> articleIds);
+    
     /**
      * 根据文章ID和内容类型查找内容块
      */
@@ -107,4 +114,10 @@ public interface KnowledgeContentBlockRepository extends JpaRepository<Knowledge
     List<KnowledgeContentBlock> findByContentOrderBetween(@Param("articleId") Long articleId, 
                                                          @Param("startOrder") Integer startOrder, 
                                                          @Param("endOrder") Integer endOrder);
+    
+    /**
+     * 按ID分页查询图片内容块 [ID, URL]（上传文件垃圾回收标记用）
+     */
+    @Query("SELECT c.id, c.imageUrl FROM KnowledgeContentBlock c WHERE c.id > :afterId AND c.imageUrl IS NOT NULL ORDER BY c.id")
+    List<Object[]> findImageUrlsAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
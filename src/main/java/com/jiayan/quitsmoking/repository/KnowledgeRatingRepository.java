@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -89,6 +90,19 @@ public interface KnowledgeRatingRepository extends JpaRepository<KnowledgeRating
     @Query("SELECT r.rating, COUNT(r) FROM KnowledgeRating r WHERE r.articleId = :articleId GROUP BY r.rating ORDER BY r.rating DESC")
     List<Object[]> getRatingDistributionByArticleId(@Param("articleId") Long articleId);
     
+    /**
+     * 查询用户指定时间之后的评分：[createdAt, rating]
+     */
+    @Query("SELECT r.createdAt, r.rating FROM KnowledgeRating r WHERE r.userId = :userId AND r.createdAt >= :since")
+    List<Object[]> findUserRatingsSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    /**
+     * 按文章和分值批量统计评分数量（对账用）：[articleId, rating, count]
+     */
+    @Query("SELECT r.articleId, r.rating, COUNT(r) FROM KnowledgeRating r WHERE r.articleId IN :articleIds " +
+           "GROUP BY r.articleId, r.rating")
+    List<Object[]> countByArticleIdsGroupByRating(@Param("articleIds") Collection<Long> articleIds);
+    
     /**
      * 查找用户对指定文章的评分
      */
@@ -6,11 +6,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 /**
  * 吸烟记录数据访问层
@@ -29,10 +35,71 @@ public interface SmokingRecordRepository extends JpaRepository<SmokingRecord, Lo
     Page<SmokingRecord> findByUserIdAndRecordType(Long userId, RecordType recordType, Pageable pageable);
     
     /**
-     * 根据用户ID、记录类型和日期范围查找记录
+     * 游标分页：第一页（按时间、ID倒序）
+     */
+    @Query("SELECT s FROM SmokingRecord s WHERE s.userId = :userId AND s.recordType = :recordType " +
+           "ORDER BY s.timestamp DESC, s.id DESC")
+    List<SmokingRecord> findFirstPage(@Param("userId") Long userId,
+                                      @Param("recordType") RecordType recordType,
+                                      Pageable pageable);
+    
+    /**
+     * 游标分页：从游标 (timestamp, id) 之后继续读取，走 (user_id, record_type, timestamp, id) 索引
+     */
+    @Query("SELECT s FROM SmokingRecord s WHERE s.userId = :userId AND s.recordType = :recordType " +
+           "AND (s.timestamp < :cursorTime OR (s.timestamp = :cursorTime AND s.id < :cursorId)) " +
+           "ORDER BY s.timestamp DESC, s.id DESC")
+    List<SmokingRecord> findPageAfterCursor(@Param("userId") Long userId,
+                                            @Param("recordType") RecordType recordType,
+                                            @Param("cursorTime") LocalDateTime cursorTime,
+                                            @Param("cursorId") Long cursorId,
+                                            Pageable pageable);
+    
+    /**
+     * 流式读取用户全部记录（MySQL 驱动在 fetchSize 为 Integer.MIN_VALUE 时逐行返回），需在只读事务中消费
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM SmokingRecord s WHERE s.userId = :userId AND s.recordType = :recordType " +
+           "ORDER BY s.timestamp DESC, s.id DESC")
+    Stream<SmokingRecord> streamByUserIdAndRecordType(@Param("userId") Long userId,
+                                                      @Param("recordType") RecordType recordType);
+    
+    /**
+     * 按北京时间自然日分组汇总用户 [start, end) 范围内的记录（UTC时间），用于每日统计
+     * 返回列：stat_date, smoking_records, cigarette_count, training_count, training_seconds,
+     * first_smoking_at, last_smoking_at, max_smoking_gap_seconds
+     */
+    @Query(value = "SELECT t.stat_date, " +
+            "SUM(CASE WHEN t.record_type = 'SMOKING' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN t.record_type = 'SMOKING' THEN COALESCE(t.cigarette_count, 1) ELSE 0 END), " +
+            "SUM(CASE WHEN t.record_type = 'TRAINING' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN t.record_type = 'TRAINING' THEN COALESCE(t.duration, 0) ELSE 0 END), " +
+            "MIN(CASE WHEN t.record_type = 'SMOKING' THEN t.timestamp END), " +
+            "MAX(CASE WHEN t.record_type = 'SMOKING' THEN t.timestamp END), " +
+            "MAX(CASE WHEN t.record_type = 'SMOKING' THEN t.gap_seconds END) " +
+            "FROM (SELECT s.record_type, s.cigarette_count, s.duration, s.timestamp, " +
+            "      DATE(DATE_ADD(s.timestamp, INTERVAL 8 HOUR)) AS stat_date, " +
+            "      TIMESTAMPDIFF(SECOND, LAG(s.timestamp) OVER (PARTITION BY s.record_type, DATE(DATE_ADD(s.timestamp, INTERVAL 8 HOUR)) " +
+            "                                                ORDER BY s.timestamp), s.timestamp) AS gap_seconds " +
+            "      FROM smoking_records s " +
+            "      WHERE s.user_id = :userId AND s.timestamp >= :start AND s.timestamp < :end) t " +
+            "GROUP BY t.stat_date ORDER BY t.stat_date", nativeQuery = true)
+    List<Object[]> aggregateDailyStats(@Param("userId") Long userId,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
+    
+    /**
+     * 根据用户ID、记录类型和UTC时间范围 [start, end) 查找记录，走 (user_id, record_type, timestamp) 索引前缀
      */
-    List<SmokingRecord> findByUserIdAndRecordTypeAndCreatedAtBetween(
-            Long userId, RecordType recordType, LocalDate startDate, LocalDate endDate);
+    @Query("SELECT s FROM SmokingRecord s WHERE s.userId = :userId AND s.recordType = :recordType " +
+           "AND s.timestamp >= :start AND s.timestamp < :end ORDER BY s.timestamp DESC, s.id DESC")
+    List<SmokingRecord> findByUserIdAndRecordTypeInTimeRange(@Param("userId") Long userId,
+                                                             @Param("recordType") RecordType recordType,
+                                                             @Param("start") LocalDateTime start,
+                                                             @Param("end") LocalDateTime end);
     
     /**
      * 根据记录类型统计数量
@@ -0,0 +1,25 @@
+package com.jiayan.quitsmoking.repository;
+
+import com.jiayan.quitsmoking.entity.SmokingStatMaterialization;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 每日统计物化标记数据访问层
+ */
+@Repository
+public interface SmokingStatMaterializationRepository extends JpaRepository<SmokingStatMaterialization, Long> {
+
+    /**
+     * 标记用户统计已物化，已有标记时刷新时间
+     */
+    @Modifying
+    @Query(value = "INSERT INTO smoking_stat_materializations (user_id, materialized_at) VALUES (:userId, :materializedAt) " +
+            "ON DUPLICATE KEY UPDATE materialized_at = VALUES(materialized_at)", nativeQuery = true)
+    void markMaterialized(@Param("userId") Long userId, @Param("materializedAt") LocalDateTime materializedAt);
+}
@@ -1,6 +1,8 @@
 package com.jiayan.quitsmoking.repository;
 
 import com.jiayan.quitsmoking.entity.User;
+import com.jiayan.quitsmoking.enums.PostPermissionLevel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -9,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,8 +45,65 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     void updateUserStatusByIds(@Param("userIds") List<Long> userIds, @Param("enabled") Boolean enabled);
     
     // 修复缺失的方法
+    /**
+     * 批量查询用户展示信息：[id, nickname, avatar]
+     */
+    @Query("SELECT u.id, u.nickname, u.avatar FROM User u WHERE u.id IN :userIds")
+    List<Object[]> findDisplayInfoByIds(@Param("userIds") Collection<Long> userIds);
+    
     @Query("SELECT u FROM User u WHERE u.phone = :account OR u.email = :account")
     Optional<User> findByPhoneOrEmail(@Param("account") String account);
     
     Optional<User> findByIdAndEnabled(Long id, Boolean enabled);
+    
+    // ========== 权限过期清理与批量更新 ==========
+    
+    /**
+     * 查询禁言已到期的用户ID（走 forum_banned, ban_end_time 索引）
+     */
+    @Query("SELECT u.id FROM User u WHERE u.forumBanned = true AND u.banEndTime <= :now ORDER BY u.banEndTime")
+    List<Long> findExpiredBanUserIds(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    /**
+     * 批量解除已到期的禁言，条件中再次校验到期时间，避免覆盖并发续期的禁言
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.forumBanned = false, u.banReason = null, u.banStartTime = null, u.banEndTime = null, " +
+           "u.updatedAt = :now WHERE u.id IN :userIds AND u.forumBanned = true AND u.banEndTime <= :now")
+    int releaseExpiredBans(@Param("userIds") List<Long> userIds, @Param("now") LocalDateTime now);
+    
+    /**
+     * 查询发帖权限已到期但仍处于开启状态的用户ID（走 post_permission_expires_at 索引）
+     */
+    @Query("SELECT u.id FROM User u WHERE u.postPermissionExpiresAt <= :now AND u.canCreatePosts = true " +
+           "ORDER BY u.postPermissionExpiresAt")
+    List<Long> findExpiredPostPermissionUserIds(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    /**
+     * 批量关闭已到期的发帖权限，保留过期时间以便查询权限是否过期
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.canCreatePosts = false, u.postPermissionLevel = :level, u.updatedAt = :now " +
+           "WHERE u.id IN :userIds AND u.canCreatePosts = true AND u.postPermissionExpiresAt <= :now")
+    int expirePostPermissions(@Param("userIds") List<Long> userIds,
+                              @Param("level") PostPermissionLevel level,
+                              @Param("now") LocalDateTime now);
+    
+    /**
+     * 批量更新发帖权限级别
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.postPermissionLevel = :level, u.postPermissionGrantedBy = :updatedBy, " +
+           "u.postPermissionGrantedAt = :now, u.updatedAt = :now WHERE u.id IN :userIds")
+    int updatePostPermissionLevelByIds(@Param("userIds") List<Long> userIds,
+                                       @Param("level") PostPermissionLevel level,
+                                       @Param("updatedBy") Long updatedBy,
+                                       @Param("now") LocalDateTime now);
+    
+    /**
+     * 按ID分页查询用户 [ID, 头像, 背景图]（上传文件垃圾回收标记用）
+     */
+    @Query("SELECT u.id, u.avatar, u.backgroundImage FROM User u " +
+           "WHERE u.id > :afterId AND (u.avatar IS NOT NULL OR u.backgroundImage IS NOT NULL) ORDER BY u.id")
+    List<Object[]> findAvatarsAndBackgroundsAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
@@ -0,0 +1,299 @@
+package com.jiayan.quitsmoking.search;
+
+import com.jiayan.quitsmoking.enums.ArticleStatus;
+import com.jiayan.quitsmoking.enums.AuditStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 知识文章内存倒排索引
+ * 索引标题、正文和文本内容块，使用 BM25 打分（标题词加权），查询词之间为“与”关系
+ */
+@Component
+public class ArticleSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 标题命中的词频权重
+     */
+    private static final int TITLE_BOOST = 3;
+
+    /**
+     * 高亮片段长度及命中位置前保留的上下文长度
+     */
+    private static final int SNIPPET_LENGTH = 120;
+    private static final int SNIPPET_CONTEXT = 30;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private IndexData data = new IndexData();
+
+    /**
+     * 被索引的文章
+     */
+    public record IndexedArticle(Long id, String title, String body, Long categoryId,
+                                 ArticleStatus status, AuditStatus auditStatus) {
+    }
+
+    /**
+     * 检索命中
+     */
+    public record SearchHit(Long id, double score) {
+    }
+
+    /**
+     * 新增或替换文章
+     */
+    public void put(IndexedArticle article) {
+        lock.writeLock().lock();
+        try {
+            data.remove(article.id());
+            data.add(article);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文章
+     */
+    public void remove(Long articleId) {
+        lock.writeLock().lock();
+        try {
+            data.remove(articleId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用全量文章替换索引，构建过程不阻塞查询
+     */
+    public void replaceAll(Collection<IndexedArticle> articles) {
+        IndexData rebuilt = new IndexData();
+        articles.forEach(rebuilt::add);
+
+        lock.writeLock().lock();
+        try {
+            data = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return data.docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按相关度检索，返回满足过滤条件的前 limit 条命中
+     */
+    public List<SearchHit> search(String query, Predicate<IndexedArticle> filter, int limit) {
+        Set<String> terms = new LinkedHashSet<>(BigramAnalyzer.analyzeQuery(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Posting>> termPostings = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Long, Posting> postings = data.postings.get(term);
+                if (postings == null) {
+                    return List.of();
+                }
+                termPostings.add(postings);
+            }
+            termPostings.sort(Comparator.comparingInt(Map::size));
+
+            int docCount = data.docs.size();
+            double avgLength = docCount == 0 ? 1 : (double) data.totalLength / docCount;
+            List<SearchHit> hits = new ArrayList<>();
+            for (Long docId : termPostings.get(0).keySet()) {
+                DocEntry doc = data.docs.get(docId);
+                if (!filter.test(doc.article)) {
+                    continue;
+                }
+
+                double score = 0;
+                boolean matchesAll = true;
+                for (Map<Long, Posting> postings : termPostings) {
+                    Posting posting = postings.get(docId);
+                    if (posting == null) {
+                        matchesAll = false;
+                        break;
+                    }
+                    double idf = Math.log(1 + (docCount - postings.size() + 0.5) / (postings.size() + 0.5));
+                    double tf = posting.bodyFreq + TITLE_BOOST * posting.titleFreq;
+                    score += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length / avgLength));
+                }
+                if (matchesAll) {
+                    hits.add(new SearchHit(docId, score));
+                }
+            }
+
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                    .thenComparing(SearchHit::id, Comparator.reverseOrder()));
+            return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 生成高亮片段（命中词以 &lt;em&gt; 标记，其余内容已转义），优先取正文，正文未命中时取标题
+     */
+    public String highlight(Long articleId, String query) {
+        IndexedArticle article;
+        lock.readLock().lock();
+        try {
+            DocEntry doc = data.docs.get(articleId);
+            article = doc != null ? doc.article : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (article == null) {
+            return null;
+        }
+
+        Set<String> terms = new LinkedHashSet<>(BigramAnalyzer.analyzeQuery(query));
+        String snippet = highlight(article.body(), terms);
+        return snippet != null ? snippet : highlight(article.title(), terms);
+    }
+
+    private static String highlight(String text, Set<String> terms) {
+        if (text == null || text.isEmpty() || terms.isEmpty()) {
+            return null;
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        if (lower.length() != text.length()) {
+            lower = text;
+        }
+        boolean[] marked = new boolean[text.length()];
+        int first = -1;
+        for (String term : terms) {
+            int index = lower.indexOf(term);
+            while (index >= 0) {
+                for (int i = index; i < index + term.length(); i++) {
+                    marked[i] = true;
+                }
+                first = first < 0 ? index : Math.min(first, index);
+                index = lower.indexOf(term, index + 1);
+            }
+        }
+        if (first < 0) {
+            return null;
+        }
+
+        int start = Math.max(0, first - SNIPPET_CONTEXT);
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+        StringBuilder snippet = new StringBuilder(SNIPPET_LENGTH + 32);
+        if (start > 0) {
+            snippet.append("…");
+        }
+        for (int i = start; i < end; i++) {
+            if (marked[i] && (i == start || !marked[i - 1])) {
+                snippet.append("<em>");
+            }
+            appendEscaped(snippet, text.charAt(i));
+            if (marked[i] && (i == end - 1 || !marked[i + 1])) {
+                snippet.append("</em>");
+            }
+        }
+        if (end < text.length()) {
+            snippet.append("…");
+        }
+        return snippet.toString();
+    }
+
+    private static void appendEscaped(StringBuilder builder, char c) {
+        switch (c) {
+            case '<' -> builder.append("&lt;");
+            case '>' -> builder.append("&gt;");
+            case '&' -> builder.append("&amp;");
+            case '"' -> builder.append("&quot;");
+            case '\'' -> builder.append("&#39;");
+            case '\n', '\r', '\t' -> builder.append(' ');
+            default -> builder.append(c);
+        }
+    }
+
+    /**
+     * 词在某篇文章中的标题、正文词频
+     */
+    private static final class Posting {
+        private int titleFreq;
+        private int bodyFreq;
+    }
+
+    private static final class DocEntry {
+        private final IndexedArticle article;
+        private final Set<String> terms;
+        private final int length;
+
+        private DocEntry(IndexedArticle article, Set<String> terms, int length) {
+            this.article = article;
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 索引数据，重建时整体替换
+     */
+    private static final class IndexData {
+        private final Map<String, Map<Long, Posting>> postings = new HashMap<>();
+        private final Map<Long, DocEntry> docs = new HashMap<>();
+        private long totalLength;
+
+        private void add(IndexedArticle article) {
+            Map<String, Posting> docPostings = new HashMap<>();
+            List<String> titleTokens = BigramAnalyzer.analyzeDocument(article.title());
+            List<String> bodyTokens = BigramAnalyzer.analyzeDocument(article.body());
+            titleTokens.forEach(term -> docPostings.computeIfAbsent(term, t -> new Posting()).titleFreq++);
+            bodyTokens.forEach(term -> docPostings.computeIfAbsent(term, t -> new Posting()).bodyFreq++);
+
+            docPostings.forEach((term, posting) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(article.id(), posting));
+            int length = titleTokens.size() + bodyTokens.size();
+            docs.put(article.id(), new DocEntry(article, docPostings.keySet(), length));
+            totalLength += length;
+        }
+
+        private void remove(Long articleId) {
+            DocEntry doc = docs.remove(articleId);
+            if (doc == null) {
+                return;
+            }
+            for (String term : doc.terms) {
+                Map<Long, Posting> termPostings = postings.get(term);
+                if (termPostings != null) {
+                    termPostings.remove(articleId);
+                    if (termPostings.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= doc.length;
+        }
+    }
+}
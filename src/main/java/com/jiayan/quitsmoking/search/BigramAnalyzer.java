@@ -0,0 +1,80 @@
+package com.jiayan.quitsmoking.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中文二元分词器
+ * 连续的中日韩字符切分为重叠的二元词（索引时额外保留单字，以支持单字查询），
+ * 连续的字母数字作为一个词并转为小写，其余字符视为分隔符
+ */
+public final class BigramAnalyzer {
+
+    private BigramAnalyzer() {
+    }
+
+    /**
+     * 文档分词：二元词 + 单字
+     */
+    public static List<String> analyzeDocument(String text) {
+        return analyze(text, true);
+    }
+
+    /**
+     * 查询分词：多字只取二元词，单字查询保留单字
+     */
+    public static List<String> analyzeQuery(String text) {
+        return analyze(text, false);
+    }
+
+    private static List<String> analyze(String text, boolean withUnigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        int[] codePoints = text.codePoints().toArray();
+        int i = 0;
+        while (i < codePoints.length) {
+            int start = i;
+            if (isCjk(codePoints[i])) {
+                while (i < codePoints.length && isCjk(codePoints[i])) {
+                    i++;
+                }
+                emitCjkRun(codePoints, start, i, withUnigrams, tokens);
+            } else if (Character.isLetterOrDigit(codePoints[i])) {
+                while (i < codePoints.length && Character.isLetterOrDigit(codePoints[i]) && !isCjk(codePoints[i])) {
+                    i++;
+                }
+                tokens.add(new String(codePoints, start, i - start).toLowerCase(Locale.ROOT));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static void emitCjkRun(int[] codePoints, int start, int end, boolean withUnigrams, List<String> tokens) {
+        if (end - start == 1) {
+            tokens.add(new String(codePoints, start, 1));
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            if (withUnigrams) {
+                tokens.add(new String(codePoints, i, 1));
+            }
+            if (i + 1 < end) {
+                tokens.add(new String(codePoints, i, 2));
+            }
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
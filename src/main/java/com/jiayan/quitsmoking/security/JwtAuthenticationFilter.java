@@ -0,0 +1,59 @@
+package com.jiayan.quitsmoking.security;
+
+import com.jiayan.quitsmoking.common.Constants;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
+import com.jiayan.quitsmoking.util.JwtUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * JWT认证过滤器
+ * 每个请求只验证一次Token并加载一次当前用户，结果写入请求属性和 SecurityContext；
+ * Token缺失或无效时不拦截请求，由具体接口决定是否需要登录
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private final JwtUtil jwtUtil;
+    private final UserPrincipalService userPrincipalService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(Constants.TOKEN_HEADER);
+        if (header != null && header.startsWith(Constants.TOKEN_PREFIX)) {
+            UserPrincipal principal = resolvePrincipal(header.substring(Constants.TOKEN_PREFIX.length()));
+            if (principal != null) {
+                request.setAttribute(UserPrincipal.REQUEST_ATTRIBUTE, principal);
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList()));
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private UserPrincipal resolvePrincipal(String token) {
+        try {
+            String userIdStr = jwtUtil.getUserIdFromToken(token);
+            if (userIdStr == null) {
+                return null;
+            }
+            return userPrincipalService.loadPrincipal(Long.valueOf(userIdStr));
+        } catch (Exception e) {
+            log.warn("解析当前用户失败: {}", e.getMessage());
+            return null;
+        }
+    }
+}
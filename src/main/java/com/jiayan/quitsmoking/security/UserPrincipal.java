@@ -0,0 +1,141 @@
+package com.jiayan.quitsmoking.security;
+
+import com.jiayan.quitsmoking.entity.User;
+import com.jiayan.quitsmoking.enums.ForumPermission;
+import com.jiayan.quitsmoking.enums.PostPermissionLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户的轻量不可变快照
+ * 由认证过滤器在每个请求中解析一次，控制器通过 {@link CurrentUser} 注入；
+ * 权限相关服务也直接读取快照，避免重复查询用户表
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserPrincipal {
+
+    /**
+     * 保存当前用户的请求属性名
+     */
+    public static final String REQUEST_ATTRIBUTE = UserPrincipal.class.getName();
+
+    private final Long id;
+
+    private final String memberLevel;
+
+    private final boolean premiumMember;
+
+    private final boolean enabled;
+
+    private final boolean forumBanned;
+
+    private final LocalDateTime banEndTime;
+
+    private final boolean canCreatePosts;
+
+    private final PostPermissionLevel postPermissionLevel;
+
+    private final LocalDateTime postPermissionExpiresAt;
+
+    private final int warningCount;
+
+    private final int banCount;
+
+    /**
+     * 论坛权限掩码，见 {@link ForumPermission}
+     */
+    private final int permissionMask;
+
+    /**
+     * 权限掩码的有效期限（禁言结束时间与发帖权限过期时间中较早者），null 表示长期有效
+     */
+    private final LocalDateTime permissionsValidUntil;
+
+    /**
+     * 从用户实体创建
+     */
+    public static UserPrincipal fromUser(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        return new UserPrincipal(
+                user.getId(),
+                user.getMemberLevel(),
+                Boolean.TRUE.equals(user.getIsPremiumMember()),
+                !Boolean.FALSE.equals(user.getEnabled()),
+                Boolean.TRUE.equals(user.getForumBanned()),
+                user.getBanEndTime(),
+                Boolean.TRUE.equals(user.getCanCreatePosts()),
+                user.getPostPermissionLevel() != null ? user.getPostPermissionLevel() : PostPermissionLevel.NONE,
+                user.getPostPermissionExpiresAt(),
+                user.getWarningCount() != null ? user.getWarningCount() : 0,
+                user.getBanCount() != null ? user.getBanCount() : 0,
+                computePermissionMask(user, now),
+                computePermissionsValidUntil(user, now)
+        );
+    }
+
+    /**
+     * 是否具有指定论坛权限
+     */
+    public boolean hasPermission(ForumPermission permission) {
+        return (permissionMask & permission.mask()) != 0;
+    }
+
+    private static int computePermissionMask(User user, LocalDateTime now) {
+        boolean granted = Boolean.TRUE.equals(user.getCanCreatePosts());
+        boolean premium = Boolean.TRUE.equals(user.getIsPremiumMember());
+        boolean banned = Boolean.TRUE.equals(user.getForumBanned())
+                && (user.getBanEndTime() == null || !now.isAfter(user.getBanEndTime()));
+        boolean expired = user.getPostPermissionExpiresAt() != null && now.isAfter(user.getPostPermissionExpiresAt());
+
+        int mask = 0;
+        if (granted) {
+            // 简化判断：有发帖权限的用户视为有管理、审核权限
+            mask |= ForumPermission.POST_GRANTED.mask() | ForumPermission.ADMIN.mask() | ForumPermission.AUDIT.mask();
+        }
+        if (granted && !banned && !expired) {
+            mask |= ForumPermission.POST_ALLOWED.mask();
+        }
+        if (banned) {
+            mask |= ForumPermission.BANNED.mask();
+        }
+        if (premium || "member".equals(user.getMemberLevel())) {
+            mask |= ForumPermission.MEMBER_CONTENT.mask();
+        }
+        if (premium) {
+            mask |= ForumPermission.PREMIUM_CONTENT.mask();
+        }
+        return mask;
+    }
+
+    private static LocalDateTime computePermissionsValidUntil(User user, LocalDateTime now) {
+        LocalDateTime validUntil = null;
+        if (Boolean.TRUE.equals(user.getForumBanned()) && user.getBanEndTime() != null
+                && !now.isAfter(user.getBanEndTime())) {
+            validUntil = user.getBanEndTime();
+        }
+        LocalDateTime expiresAt = user.getPostPermissionExpiresAt();
+        if (expiresAt != null && !now.isAfter(expiresAt) && (validUntil == null || expiresAt.isBefore(validUntil))) {
+            validUntil = expiresAt;
+        }
+        return validUntil;
+    }
+
+    /**
+     * 是否处于禁言期
+     */
+    public boolean isCurrentlyBanned() {
+        return forumBanned && (banEndTime == null || !LocalDateTime.now().isAfter(banEndTime));
+    }
+
+    /**
+     * 发帖权限是否已过期（无过期时间视为永久权限）
+     */
+    public boolean isPostPermissionExpired() {
+        return postPermissionExpiresAt != null && LocalDateTime.now().isAfter(postPermissionExpiresAt);
+    }
+}
@@ -0,0 +1,80 @@
+package com.jiayan.quitsmoking.security;
+
+import com.jiayan.quitsmoking.entity.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 用户资料的不可变快照
+ * 只包含资料接口需要的字段（不含密码等凭据），可以安全地在缓存中共享
+ */
+public record UserProfileSnapshot(
+        Long id,
+        String nickname,
+        String phone,
+        String email,
+        String avatar,
+        String backgroundImage,
+        String userBio,
+        Boolean enabled,
+        String audioPreference,
+        String loginType,
+        Integer age,
+        Integer dailyCigarettes,
+        Integer currentDailyCigarettes,
+        Integer originalDailyCigarettes,
+        Integer smokingYears,
+        String cigaretteBrand,
+        BigDecimal pricePerPack,
+        BigDecimal tarContent,
+        String gender,
+        String quitMode,
+        Boolean isPremiumMember,
+        Integer reducedCigarettes,
+        String healthImprovement,
+        Integer customTrainingCount,
+        LocalDate quitStartDate,
+        String memberLevel,
+        LocalDateTime memberExpireDate,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    /**
+     * 从用户实体创建
+     */
+    public static UserProfileSnapshot fromUser(User user) {
+        return new UserProfileSnapshot(
+                user.getId(),
+                user.getNickname(),
+                user.getPhone(),
+                user.getEmail(),
+                user.getAvatar(),
+                user.getBackgroundImage(),
+                user.getUserBio(),
+                user.getEnabled(),
+                user.getAudioPreference(),
+                user.getLoginType(),
+                user.getAge(),
+                user.getDailyCigarettes(),
+                user.getCurrentDailyCigarettes(),
+                user.getOriginalDailyCigarettes(),
+                user.getSmokingYears(),
+                user.getCigaretteBrand(),
+                user.getPricePerPack(),
+                user.getTarContent(),
+                user.getGender(),
+                user.getQuitMode(),
+                user.getIsPremiumMember(),
+                user.getReducedCigarettes(),
+                user.getHealthImprovement(),
+                user.getCustomTrainingCount(),
+                user.getQuitStartDate(),
+                user.getMemberLevel(),
+                user.getMemberExpireDate(),
+                user.getCreatedAt(),
+                user.getUpdatedAt()
+        );
+    }
+}
@@ -0,0 +1,37 @@
+package com.jiayan.quitsmoking.service;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * 文章读接口响应缓存服务
+ * 缓存序列化后的 JSON 字节和对应 ETag，文章写操作提交后失效
+ */
+public interface ArticleCacheService {
+
+    /**
+     * 获取文章详情响应；未命中时调用 loader 生成响应体，loader 返回 null（文章不存在）时不缓存并返回 null
+     */
+    CachedResponse getDetail(Long articleId, Supplier<Object> loader);
+
+    /**
+     * 获取列表响应，key 需包含全部筛选、排序和分页参数
+     */
+    CachedResponse getList(String key, Supplier<Object> loader);
+
+    /**
+     * 事务提交后失效指定文章的详情缓存及全部列表缓存（无事务时立即失效）
+     */
+    void evictAfterCommit(Collection<Long> articleIds);
+
+    /**
+     * 事务提交后失效全部缓存（分类名称等影响所有响应的变更）
+     */
+    void evictAllAfterCommit();
+
+    /**
+     * 缓存的响应：JSON 字节和强 ETag
+     */
+    record CachedResponse(byte[] body, String etag) {
+    }
+}
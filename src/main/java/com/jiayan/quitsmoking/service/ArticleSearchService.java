@@ -0,0 +1,41 @@
+package com.jiayan.quitsmoking.service;
+
+import com.jiayan.quitsmoking.dto.ArticleSummary;
+import com.jiayan.quitsmoking.enums.ArticleStatus;
+import com.jiayan.quitsmoking.enums.AuditStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 知识文章全文检索服务
+ */
+public interface ArticleSearchService {
+
+    /**
+     * 全文检索已发布文章，按相关度排序并附带高亮片段；索引尚未就绪时返回 null
+     */
+    Page<ArticleSummary> searchPublished(String keyword, Pageable pageable);
+
+    /**
+     * 查找匹配关键字且满足筛选条件的全部文章ID（按相关度排序，不截断）；索引尚未就绪时返回 null
+     */
+    List<Long> findMatchingIds(String keyword, Long categoryId, ArticleStatus status, AuditStatus auditStatus);
+
+    /**
+     * 文章变更后刷新索引，处于事务中时在提交后执行
+     */
+    void refreshAfterCommit(Collection<Long> articleIds);
+
+    /**
+     * 从数据库全量重建索引，返回索引的文章数
+     */
+    int rebuild();
+
+    /**
+     * 索引是否已完成首次构建
+     */
+    boolean isReady();
+}
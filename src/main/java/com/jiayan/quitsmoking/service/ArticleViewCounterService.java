@@ -0,0 +1,29 @@
+package com.jiayan.quitsmoking.service;
+
+import java.util.Map;
+
+/**
+ * 文章浏览计数服务
+ */
+public interface ArticleViewCounterService {
+
+    /**
+     * 记录一次浏览；userId 可为空（匿名浏览不去重）
+     */
+    void recordView(Long articleId, Long userId);
+
+    /**
+     * 获取指定文章尚未落库的浏览增量
+     */
+    long getPendingViews(Long articleId);
+
+    /**
+     * 获取全部尚未落库的浏览增量（文章ID -> 增量）
+     */
+    Map<Long, Long> getPendingViews();
+
+    /**
+     * 立即把累计的增量批量写入数据库，返回本次写入的文章数
+     */
+    int flush();
+}
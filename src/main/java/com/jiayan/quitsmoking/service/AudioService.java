@@ -1,5 +1,6 @@
 package com.jiayan.quitsmoking.service;
 
+import com.jiayan.quitsmoking.dto.AudioDownload;
 import com.jiayan.quitsmoking.dto.AudioRequest;
 import com.jiayan.quitsmoking.dto.AudioResponse;
 import com.jiayan.quitsmoking.entity.Audio;
@@ -62,6 +63,11 @@ public interface AudioService {
      */
     Resource downloadAudio(Long audioId, Long userId);
     
+    /**
+     * 校验下载权限并返回音频文件路径和下载文件名（音频元数据有缓存）
+     */
+    AudioDownload resolveDownload(Long audioId, Long userId);
+    
     /**
      * 检查用户是否有权限下载音频
      */
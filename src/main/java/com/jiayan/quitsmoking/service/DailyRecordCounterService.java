@@ -0,0 +1,32 @@
+package com.jiayan.quitsmoking.service;
+
+import com.jiayan.quitsmoking.entity.SmokingRecord;
+import com.jiayan.quitsmoking.enums.RecordType;
+
+import java.util.List;
+
+/**
+ * 每日记录计数服务
+ */
+public interface DailyRecordCounterService {
+
+    /**
+     * 获取用户今日（北京时间）指定类型的记录数
+     */
+    long getTodayCount(Long userId, RecordType recordType);
+
+    /**
+     * 记录创建后增加计数，需在记录保存的同一事务中调用
+     */
+    void onRecordCreated(SmokingRecord record);
+
+    /**
+     * 批量记录创建后按用户和日期合并增加计数，需在记录保存的同一事务中调用
+     */
+    void onRecordsCreated(List<SmokingRecord> records);
+
+    /**
+     * 记录删除后减少计数，需在记录删除的同一事务中调用
+     */
+    void onRecordDeleted(SmokingRecord record);
+}
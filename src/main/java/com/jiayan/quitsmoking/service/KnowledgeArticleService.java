@@ -1,5 +1,6 @@
 package com.jiayan.quitsmoking.service;
 
+import com.jiayan.quitsmoking.dto.ArticleSummary;
 import com.jiayan.quitsmoking.entity.KnowledgeArticle;
 import com.jiayan.quitsmoking.entity.KnowledgeContentBlock;
 import com.jiayan.quitsmoking.enums.ArticleStatus;
@@ -30,7 +31,7 @@ public interface KnowledgeArticleService {
     KnowledgeArticle getArticleById(Long articleId);
     
     /**
-     * 根据ID获取文章（包含内容块）
+     * 根据ID获取文章（一次加载分类、作者和内容块）
      */
     KnowledgeArticle getArticleWithContent(Long articleId);
     
@@ -42,7 +43,7 @@ public interface KnowledgeArticleService {
     /**
      * 根据分类ID获取文章
      */
-    Page<KnowledgeArticle> getArticlesByCategory(Long categoryId, Pageable pageable);
+    Page<ArticleSummary> getArticlesByCategory(Long categoryId, Pageable pageable);
     
     /**
      * 根据作者ID获取文章
@@ -62,12 +63,12 @@ public interface KnowledgeArticleService {
     /**
      * 搜索文章
      */
-    Page<KnowledgeArticle> searchArticles(String keyword, Pageable pageable);
+    Page<ArticleSummary> searchArticles(String keyword, Pageable pageable);
     
     /**
      * 获取热门文章
      */
-    Page<KnowledgeArticle> getPopularArticles(Pageable pageable);
+    Page<ArticleSummary> getPopularArticles(Pageable pageable);
     
     /**
      * 获取高评分文章
@@ -77,7 +78,7 @@ public interface KnowledgeArticleService {
     /**
      * 获取最新文章
      */
-    Page<KnowledgeArticle> getLatestArticles(Pageable pageable);
+    Page<ArticleSummary> getLatestArticles(Pageable pageable);
     
     /**
      * 根据用户权限获取可访问的文章
@@ -120,9 +121,9 @@ public interface KnowledgeArticleService {
     void restoreSoftDeletedArticle(Long articleId, Long operatorId);
     
     /**
-     * 增加文章浏览次数
+     * 增加文章浏览次数（内存合并后定时批量写库），userId 为空表示匿名浏览
      */
-    void incrementViewCount(Long articleId);
+    void incrementViewCount(Long articleId, Long userId);
     
     /**
      * 更新文章点赞数
@@ -169,5 +170,8 @@ public interface KnowledgeArticleService {
      */
     void batchUpdateAuditStatus(List<Long> articleIds, AuditStatus auditStatus, Long auditorId);
     
-    Page<KnowledgeArticle> getArticlesCombined(String keyword, Long categoryId, ArticleStatus status, AuditStatus auditStatus, Pageable pageable);
+    /**
+     * 按关键字、分类、状态、审核状态组合筛选文章列表
+     */
+    Page<ArticleSummary> getArticlesCombined(String keyword, Long categoryId, ArticleStatus status, AuditStatus auditStatus, Pageable pageable);
 } 
\ No newline at end of file
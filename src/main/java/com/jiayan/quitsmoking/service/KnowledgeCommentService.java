@@ -1,5 +1,7 @@
 package com.jiayan.quitsmoking.service;
 
+import com.jiayan.quitsmoking.dto.CommentResponse;
+import com.jiayan.quitsmoking.dto.CommentStats;
 import com.jiayan.quitsmoking.entity.KnowledgeComment;
 import com.jiayan.quitsmoking.entity.CommentImage;
 import com.jiayan.quitsmoking.enums.CommentStatus;
@@ -49,9 +51,10 @@ public interface KnowledgeCommentService {
     Page<KnowledgeComment> getTopLevelComments(Long articleId, Pageable pageable);
     
     /**
-     * 获取评论树结构
+     * 获取文章评论树：顶级评论按时间倒序分页，回复按时间正序嵌套；
+     * maxDepth 为最多展开的回复层数，maxReplies 为每条评论最多展开的直接回复数
      */
-    List<KnowledgeComment> getCommentTree(Long articleId);
+    Page<CommentResponse> getCommentTree(Long articleId, Pageable pageable, int maxDepth, int maxReplies);
     
     /**
      * 隐藏评论
@@ -108,6 +111,11 @@ public interface KnowledgeCommentService {
      */
     long getCommentCountByArticle(Long articleId);
     
+    /**
+     * 获取文章评论统计（一条聚合查询）
+     */
+    CommentStats getCommentStats(Long articleId);
+    
     /**
      * 获取指定用户的评论数量
      */
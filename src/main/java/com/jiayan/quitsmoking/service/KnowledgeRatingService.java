@@ -1,5 +1,7 @@
 package com.jiayan.quitsmoking.service;
 
+import com.jiayan.quitsmoking.dto.RatingActivity;
+import com.jiayan.quitsmoking.dto.RatingSummary;
 import com.jiayan.quitsmoking.entity.KnowledgeRating;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -67,6 +69,11 @@ public interface KnowledgeRatingService {
      */
     Map<Integer, Long> getRatingDistribution(Long articleId);
     
+    /**
+     * 获取文章评分汇总（人数、平均分、分布），读取增量维护的聚合并缓存
+     */
+    RatingSummary getRatingSummary(Long articleId);
+    
     /**
      * 获取最新评分
      */
@@ -128,15 +135,30 @@ public interface KnowledgeRatingService {
     boolean isValidRating(Integer rating);
     
     /**
-     * 更新文章的总评分和评分人数
+     * 从评分明细重算文章的评分聚合，并同步文章的总评分和评分人数
      */
     void updateArticleRatingStats(Long articleId);
     
     /**
-     * 获取热门评分文章
+     * 对账：比对全部文章的评分聚合与评分明细，修复存在偏差的文章，返回修复数量
+     */
+    int reconcileRatingStats();
+    
+    /**
+     * 获取热门评分文章（按贝叶斯加权分排序的已发布文章ID）
      */
     List<Long> getTopRatedArticleIds(int limit);
     
+    /**
+     * 获取文章加权分在全部已评分文章中的百分位（0-100），未评分返回 0
+     */
+    int getRatingPercentile(Long articleId);
+    
+    /**
+     * 获取文章最近 days 天与之前 days 天的评分数及趋势
+     */
+    RatingActivity getRatingActivity(Long articleId, int days);
+    
     /**
      * 获取用户评分趋势
      */
@@ -2,12 +2,15 @@ package com.jiayan.quitsmoking.service;
 
 import com.jiayan.quitsmoking.dto.CreateSmokingRecordRequest;
 import com.jiayan.quitsmoking.dto.CreateTrainingRecordRequest;
+import com.jiayan.quitsmoking.dto.CursorPageResponse;
 import com.jiayan.quitsmoking.dto.SmokingRecordResponse;
 import com.jiayan.quitsmoking.dto.TrainingRecordResponse;
-import com.jiayan.quitsmoking.entity.SmokingRecord;
+import com.jiayan.quitsmoking.enums.RecordType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -33,6 +36,11 @@ public interface SmokingRecordService {
      */
     Page<SmokingRecordResponse> getUserSmokingRecords(Long userId, Pageable pageable);
 
+    /**
+     * 游标分页获取用户的吸烟记录
+     */
+    CursorPageResponse<SmokingRecordResponse> getUserSmokingRecordsByCursor(Long userId, String cursor, int limit);
+
     /**
      * 获取用户指定日期的吸烟记录
      */
@@ -48,6 +56,16 @@ public interface SmokingRecordService {
      */
     Page<TrainingRecordResponse> getUserTrainingRecords(Long userId, Pageable pageable);
 
+    /**
+     * 游标分页获取用户的训练记录
+     */
+    CursorPageResponse<TrainingRecordResponse> getUserTrainingRecordsByCursor(Long userId, String cursor, int limit);
+
+    /**
+     * 以NDJSON格式流式导出用户的全部记录（每行一条）
+     */
+    void exportUserRecords(Long userId, RecordType recordType, OutputStream outputStream) throws IOException;
+
     /**
      * 获取用户指定日期的训练记录
      */
@@ -0,0 +1,38 @@
+package com.jiayan.quitsmoking.service;
+
+import com.jiayan.quitsmoking.dto.SmokingStatisticsResponse;
+import com.jiayan.quitsmoking.entity.SmokingRecord;
+import com.jiayan.quitsmoking.enums.StatisticsGranularity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 吸烟/训练趋势统计服务
+ */
+public interface SmokingStatisticsService {
+
+    /**
+     * 获取用户日期范围内（北京时间，首尾均包含）的分桶统计
+     */
+    SmokingStatisticsResponse getStatistics(Long userId, LocalDate startDate, LocalDate endDate,
+                                            StatisticsGranularity granularity);
+
+    /**
+     * 记录新增或删除后重算该记录所在日的统计，需在记录写入的同一事务中调用
+     *
+     * @param timestamp 记录时间（UTC）
+     */
+    void onRecordChanged(Long userId, LocalDateTime timestamp);
+
+    /**
+     * 批量记录写入后重算涉及的每一天，需在记录写入的同一事务中调用
+     */
+    void onRecordsChanged(List<SmokingRecord> records);
+
+    /**
+     * 根据原始记录重建用户的全部每日统计
+     */
+    void rebuildUserStatistics(Long userId);
+}
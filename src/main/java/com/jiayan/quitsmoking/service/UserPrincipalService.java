@@ -0,0 +1,33 @@
+package com.jiayan.quitsmoking.service;
+
+import com.jiayan.quitsmoking.security.UserPrincipal;
+import com.jiayan.quitsmoking.security.UserProfileSnapshot;
+
+import java.util.Map;
+
+/**
+ * 用户快照缓存服务
+ * 缓存按用户ID存放不可变的用户快照，用户信息的写路径负责调用 evict 精确失效
+ */
+public interface UserPrincipalService {
+
+    /**
+     * 加载用户快照，用户不存在时返回 null
+     */
+    UserPrincipal loadPrincipal(Long userId);
+
+    /**
+     * 加载用户资料快照（不可变，不含密码），用户不存在时返回 null
+     */
+    UserProfileSnapshot loadProfileSnapshot(Long userId);
+
+    /**
+     * 用户信息变更后失效快照，处于事务中时提交后再失效一次
+     */
+    void evict(Long userId);
+
+    /**
+     * 获取缓存统计（容量、命中、未命中、命中率）
+     */
+    Map<String, Object> getCacheStats();
+}
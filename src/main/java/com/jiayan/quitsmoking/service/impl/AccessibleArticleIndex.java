@@ -0,0 +1,264 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import com.jiayan.quitsmoking.entity.KnowledgeCategory;
+import com.jiayan.quitsmoking.enums.AccessLevel;
+import com.jiayan.quitsmoking.enums.ArticleStatus;
+import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
+import com.jiayan.quitsmoking.repository.KnowledgeCategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 会员可访问文章索引（内存）
+ * 维护 分类 → 访问级别 映射和各分类下已发布文章（按发布时间倒序），
+ * 每个会员等级的可访问文章ID列表在变更后首次读取时合并生成并缓存，分页即列表切片；
+ * 文章发布/下架/删除等变更提交后单篇刷新，分类变更提交后重载分类映射，另有定时全量重载兜底
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AccessibleArticleIndex {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing(Entry::publishTime, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Entry::articleId, Comparator.reverseOrder());
+
+    private final KnowledgeArticleRepository articleRepository;
+    private final KnowledgeCategoryRepository categoryRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 启用分类的访问级别；停用分类不在其中，其下文章不出现在免费用户和会员的文章列表中
+     */
+    private final Map<Long, AccessLevel> categoryLevels = new HashMap<>();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, TreeSet<Entry>> articlesByCategory = new HashMap<>();
+
+    /**
+     * 各等级可访问文章ID列表缓存，任何变更后清空
+     */
+    private final Map<AccessLevel, List<Long>> tierSnapshots = new EnumMap<>(AccessLevel.class);
+
+    private volatile boolean ready;
+
+    /**
+     * 索引项
+     */
+    private record Entry(Long articleId, Long categoryId, LocalDateTime publishTime) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("启动时加载可访问文章索引失败", e);
+        }
+    }
+
+    /**
+     * 全量重载分类级别和已发布文章
+     */
+    @Scheduled(initialDelayString = "${knowledge.access-index.reload-interval-ms:600000}",
+               fixedDelayString = "${knowledge.access-index.reload-interval-ms:600000}")
+    public void reload() {
+        Map<Long, AccessLevel> levels = loadCategoryLevels();
+        List<Object[]> rows = articleRepository.findFeedEntriesByStatus(ArticleStatus.PUBLISHED);
+
+        lock.writeLock().lock();
+        try {
+            categoryLevels.clear();
+            categoryLevels.putAll(levels);
+            entries.clear();
+            articlesByCategory.clear();
+            rows.forEach(row -> put(toEntry(row)));
+            tierSnapshots.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("可访问文章索引加载完成，分类数: {}, 文章数: {}", levels.size(), rows.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 事务提交后刷新指定文章（无事务时立即刷新）
+     */
+    public void refreshAfterCommit(Collection<Long> articleIds) {
+        if (articleIds == null || articleIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(articleIds);
+        runAfterCommit(() -> refresh(ids));
+    }
+
+    /**
+     * 事务提交后重载分类访问级别（无事务时立即重载）
+     */
+    public void reloadCategoriesAfterCommit() {
+        runAfterCommit(this::reloadCategories);
+    }
+
+    /**
+     * 指定等级可访问的文章ID（按发布时间倒序），返回不可变列表
+     */
+    public List<Long> accessibleIds(AccessLevel tier) {
+        lock.readLock().lock();
+        try {
+            List<Long> snapshot = tierSnapshots.get(tier);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            return tierSnapshots.computeIfAbsent(tier, this::buildSnapshot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 已发布文章所在分类ID；文章未发布、已删除或不在索引中时返回 null
+     */
+    public Long categoryOf(Long articleId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(articleId);
+            return entry != null ? entry.categoryId() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void refresh(List<Long> ids) {
+        if (!ready) {
+            return;
+        }
+        try {
+            List<Object[]> rows = articleRepository.findFeedEntriesByIdInAndStatus(ids, ArticleStatus.PUBLISHED);
+            lock.writeLock().lock();
+            try {
+                ids.forEach(this::remove);
+                rows.forEach(row -> put(toEntry(row)));
+                tierSnapshots.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            log.error("刷新可访问文章索引失败: articleIds={}", ids, e);
+        }
+    }
+
+    private void reloadCategories() {
+        if (!ready) {
+            return;
+        }
+        try {
+            Map<Long, AccessLevel> levels = loadCategoryLevels();
+            lock.writeLock().lock();
+            try {
+                categoryLevels.clear();
+                categoryLevels.putAll(levels);
+                tierSnapshots.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            log.error("重载分类访问级别失败", e);
+        }
+    }
+
+    /**
+     * 启用分类的访问级别（与原分类子查询一致：只看 access_level，未设置的分类不对任何等级列出）
+     */
+    private Map<Long, AccessLevel> loadCategoryLevels() {
+        Map<Long, AccessLevel> levels = new HashMap<>();
+        for (KnowledgeCategory category : categoryRepository.findAll()) {
+            if (Boolean.TRUE.equals(category.getIsActive()) && category.getAccessLevel() != null) {
+                levels.put(category.getId(), category.getAccessLevel());
+            }
+        }
+        return levels;
+    }
+
+    private List<Long> buildSnapshot(AccessLevel tier) {
+        List<TreeSet<Entry>> sources = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Long, TreeSet<Entry>> e : articlesByCategory.entrySet()) {
+            AccessLevel level = categoryLevels.get(e.getKey());
+            if (level != null && level.ordinal() <= tier.ordinal()) {
+                sources.add(e.getValue());
+                total += e.getValue().size();
+            }
+        }
+        if (sources.size() == 1) {
+            return sources.get(0).stream().map(Entry::articleId).toList();
+        }
+        List<Entry> merged = new ArrayList<>(total);
+        sources.forEach(merged::addAll);
+        merged.sort(ORDER);
+        return merged.stream().map(Entry::articleId).toList();
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.articleId(), entry);
+        articlesByCategory.computeIfAbsent(entry.categoryId(), k -> new TreeSet<>(ORDER)).add(entry);
+    }
+
+    private void remove(Long articleId) {
+        Entry previous = entries.remove(articleId);
+        if (previous == null) {
+            return;
+        }
+        Set<Entry> category = articlesByCategory.get(previous.categoryId());
+        if (category != null) {
+            category.remove(previous);
+            if (category.isEmpty()) {
+                articlesByCategory.remove(previous.categoryId());
+            }
+        }
+    }
+
+    private static Entry toEntry(Object[] row) {
+        return new Entry(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), (LocalDateTime) row[2]);
+    }
+
+    private static void runAfterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+}
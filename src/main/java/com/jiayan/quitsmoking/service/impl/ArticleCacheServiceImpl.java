@@ -0,0 +1,132 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jiayan.quitsmoking.exception.BusinessException;
+import com.jiayan.quitsmoking.service.ArticleCacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 文章读接口响应缓存服务实现类
+ * 两级缓存：文章详情按文章ID缓存，列表按筛选+排序+分页参数缓存；
+ * 列表包含浏览数、评分等频繁变化的字段，过期时间较短，任意文章变更时整体失效
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ArticleCacheServiceImpl implements ArticleCacheService {
+
+    /**
+     * 详情缓存容量及过期时间（毫秒）
+     */
+    private static final int DETAIL_CACHE_CAPACITY = 2000;
+    private static final long DETAIL_CACHE_TIMEOUT = 5 * 60 * 1000L;
+
+    /**
+     * 列表缓存容量及过期时间（毫秒）
+     */
+    private static final int LIST_CACHE_CAPACITY = 500;
+    private static final long LIST_CACHE_TIMEOUT = 30 * 1000L;
+
+    private final ObjectMapper objectMapper;
+
+    private final LRUCache<Long, CachedResponse> detailCache =
+            CacheUtil.newLRUCache(DETAIL_CACHE_CAPACITY, DETAIL_CACHE_TIMEOUT);
+    private final LRUCache<String, CachedResponse> listCache =
+            CacheUtil.newLRUCache(LIST_CACHE_CAPACITY, LIST_CACHE_TIMEOUT);
+
+    /**
+     * 失效代数：加载前后代数不同说明期间有写操作，结果不放入缓存，避免旧数据覆盖失效
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @Override
+    public CachedResponse getDetail(Long articleId, Supplier<Object> loader) {
+        CachedResponse cached = detailCache.get(articleId, false);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadGeneration = generation.get();
+        Object body = loader.get();
+        if (body == null) {
+            return null;
+        }
+        cached = serialize(body);
+        if (generation.get() == loadGeneration) {
+            detailCache.put(articleId, cached);
+        }
+        return cached;
+    }
+
+    @Override
+    public CachedResponse getList(String key, Supplier<Object> loader) {
+        CachedResponse cached = listCache.get(key, false);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadGeneration = generation.get();
+        cached = serialize(loader.get());
+        if (generation.get() == loadGeneration) {
+            listCache.put(key, cached);
+        }
+        return cached;
+    }
+
+    @Override
+    public void evictAfterCommit(Collection<Long> articleIds) {
+        List<Long> ids = List.copyOf(articleIds);
+        runNowAndAfterCommit(() -> {
+            generation.incrementAndGet();
+            ids.forEach(detailCache::remove);
+            listCache.clear();
+        });
+    }
+
+    @Override
+    public void evictAllAfterCommit() {
+        runNowAndAfterCommit(() -> {
+            generation.incrementAndGet();
+            detailCache.clear();
+            listCache.clear();
+        });
+    }
+
+    /**
+     * 立即失效一次，并在事务提交后再失效一次，避免并发读取把未提交前的旧值重新放回缓存
+     */
+    private void runNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private CachedResponse serialize(Object body) {
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            return new CachedResponse(bytes, "\"" + DigestUtil.md5Hex(bytes) + "\"");
+        } catch (JsonProcessingException e) {
+            log.error("序列化文章响应失败", e);
+            throw new BusinessException("序列化文章响应失败");
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import cn.hutool.http.HtmlUtil;
+import com.jiayan.quitsmoking.dto.ArticleSummary;
+import com.jiayan.quitsmoking.entity.KnowledgeArticle;
+import com.jiayan.quitsmoking.entity.KnowledgeContentBlock;
+import com.jiayan.quitsmoking.enums.ArticleStatus;
+import com.jiayan.quitsmoking.enums.AuditStatus;
+import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
+import com.jiayan.quitsmoking.repository.KnowledgeContentBlockRepository;
+import com.jiayan.quitsmoking.search.ArticleSearchIndex;
+import com.jiayan.quitsmoking.search.ArticleSearchIndex.IndexedArticle;
+import com.jiayan.quitsmoking.search.ArticleSearchIndex.SearchHit;
+import com.jiayan.quitsmoking.service.ArticleSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 知识文章全文检索服务实现类
+ * 启动后异步全量构建内存索引，文章创建、编辑、审核、发布、禁用、删除等写操作提交后增量刷新
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ArticleSearchServiceImpl implements ArticleSearchService {
+
+    /**
+     * 重建索引时每批读取的文章数
+     */
+    private static final int REBUILD_BATCH_SIZE = 200;
+
+    private final KnowledgeArticleRepository articleRepository;
+    private final KnowledgeContentBlockRepository contentBlockRepository;
+    private final ArticleSearchIndex searchIndex;
+
+    private final Object rebuildLock = new Object();
+
+    /**
+     * 重建期间发生变更的文章，重建完成后补刷
+     */
+    private final Set<Long> changedDuringRebuild = new HashSet<>();
+
+    private volatile boolean ready;
+    private volatile boolean rebuilding;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("启动时构建文章检索索引失败，检索将回退到数据库查询", e);
+            }
+        }, "article-search-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Page<ArticleSummary> searchPublished(String keyword, Pageable pageable) {
+        if (!ready) {
+            return null;
+        }
+
+        // 不截断命中数：总数准确，任意页都能取到（命中列表只含ID和分数）
+        List<SearchHit> hits = searchIndex.search(keyword,
+                article -> ArticleStatus.PUBLISHED.equals(article.status()), Integer.MAX_VALUE);
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(from + pageable.getPageSize(), hits.size());
+        List<Long> pageIds = hits.subList(from, to).stream().map(SearchHit::id).toList();
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, hits.size());
+        }
+
+        // 按相关度顺序组装列表，并附带高亮片段
+        Map<Long, ArticleSummary> summaries = articleRepository.findSummariesByIds(pageIds).stream()
+                .collect(Collectors.toMap(ArticleSummary::getId, Function.identity()));
+        List<ArticleSummary> content = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            ArticleSummary summary = summaries.get(id);
+            if (summary != null) {
+                summary.setHighlight(searchIndex.highlight(id, keyword));
+                content.add(summary);
+            }
+        }
+        return new PageImpl<>(content, pageable, hits.size());
+    }
+
+    @Override
+    public List<Long> findMatchingIds(String keyword, Long categoryId, ArticleStatus status, AuditStatus auditStatus) {
+        if (!ready) {
+            return null;
+        }
+
+        return searchIndex.search(keyword, article ->
+                        (categoryId == null || categoryId.equals(article.categoryId()))
+                                && (status == null || status.equals(article.status()))
+                                && (auditStatus == null || auditStatus.equals(article.auditStatus())),
+                        Integer.MAX_VALUE).stream()
+                .map(SearchHit::id)
+                .toList();
+    }
+
+    @Override
+    public void refreshAfterCommit(Collection<Long> articleIds) {
+        if (articleIds == null || articleIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = List.copyOf(articleIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.forEach(ArticleSearchServiceImpl.this::refresh);
+                }
+            });
+        } else {
+            ids.forEach(this::refresh);
+        }
+    }
+
+    @Override
+    public int rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            rebuilding = true;
+            try {
+                List<IndexedArticle> documents = new ArrayList<>();
+                Long lastId = 0L;
+                while (true) {
+                    List<KnowledgeArticle> batch = articleRepository.findByIsDeletedFalseAndIdGreaterThanOrderByIdAsc(
+                            lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+
+                    List<Long> batchIds = batch.stream().map(KnowledgeArticle::getId).toList();
+                    Map<Long, List<KnowledgeContentBlock>> blocks = contentBlockRepository
+                            .findByArticleIdInOrderByArticleIdAscContentOrderAsc(batchIds).stream()
+                            .collect(Collectors.groupingBy(KnowledgeContentBlock::getArticleId));
+                    for (KnowledgeArticle article : batch) {
+                        documents.add(toIndexedArticle(article, blocks.getOrDefault(article.getId(), List.of())));
+                    }
+                    lastId = batchIds.get(batchIds.size() - 1);
+                }
+
+                searchIndex.replaceAll(documents);
+                ready = true;
+                log.info("文章检索索引重建完成: count={}, cost={}ms", documents.size(), System.currentTimeMillis() - start);
+                return documents.size();
+            } finally {
+                rebuilding = false;
+                List<Long> changed;
+                synchronized (changedDuringRebuild) {
+                    changed = new ArrayList<>(changedDuringRebuild);
+                    changedDuringRebuild.clear();
+                }
+                changed.forEach(this::refresh);
+            }
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 从数据库读取文章最新状态并刷新索引，已删除的文章从索引移除
+     */
+    private void refresh(Long articleId) {
+        if (rebuilding) {
+            synchronized (changedDuringRebuild) {
+                changedDuringRebuild.add(articleId);
+            }
+        }
+
+        try {
+            KnowledgeArticle article = articleRepository.findById(articleId).orElse(null);
+            if (article == null || Boolean.TRUE.equals(article.getIsDeleted())) {
+                searchIndex.remove(articleId);
+                return;
+            }
+            List<KnowledgeContentBlock> blocks = contentBlockRepository.findByArticleIdOrderByContentOrderAsc(articleId);
+            searchIndex.put(toIndexedArticle(article, blocks));
+        } catch (Exception e) {
+            log.error("刷新文章检索索引失败: articleId={}", articleId, e);
+        }
+    }
+
+    private static IndexedArticle toIndexedArticle(KnowledgeArticle article, List<KnowledgeContentBlock> blocks) {
+        StringBuilder body = new StringBuilder(plainText(article.getContent()));
+        for (KnowledgeContentBlock block : blocks) {
+            if (block.getTextContent() != null && !block.getTextContent().isBlank()) {
+                body.append('\n').append(plainText(block.getTextContent()));
+            }
+        }
+        return new IndexedArticle(article.getId(), article.getTitle(), body.toString().trim(),
+                article.getCategoryId(), article.getStatus(), article.getAuditStatus());
+    }
+
+    /**
+     * 去除富文本中的HTML标签和实体
+     */
+    private static String plainText(String html) {
+        if (html == null || html.isEmpty()) {
+            return "";
+        }
+        return HtmlUtil.unescape(HtmlUtil.cleanHtmlTag(html));
+    }
+}
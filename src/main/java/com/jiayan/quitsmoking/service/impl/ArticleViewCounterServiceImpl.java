@@ -0,0 +1,190 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
+import com.jiayan.quitsmoking.service.ArticleViewCounterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文章浏览计数服务实现类
+ * 浏览请求只在内存中按文章累加，由定时任务把增量合并为批量 UPDATE 写库；进程崩溃时最多丢失一个刷新周期内的浏览数。
+ * 累加与空闲计数器的移除都在 ConcurrentHashMap.compute 中进行（同一文章互斥），移除时不会丢失并发的浏览
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ArticleViewCounterServiceImpl implements ArticleViewCounterService {
+
+    /**
+     * 连续多少个刷新周期无新增浏览后移除计数器
+     */
+    private static final int IDLE_ROUNDS_BEFORE_REMOVE = 3;
+
+    /**
+     * 去重缓存容量
+     */
+    private static final int DEDUP_CAPACITY = 100000;
+
+    @Value("${knowledge.view-counter.buffered:true}")
+    private boolean buffered;
+
+    @Value("${knowledge.view-counter.dedup-window-ms:0}")
+    private long dedupWindowMs;
+
+    private final KnowledgeArticleRepository articleRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    private LRUCache<String, Boolean> recentViews;
+
+    @PostConstruct
+    public void init() {
+        if (dedupWindowMs > 0) {
+            recentViews = CacheUtil.newLRUCache(DEDUP_CAPACITY, dedupWindowMs);
+        }
+        log.info("文章浏览计数: {}, 去重窗口: {}ms", buffered ? "内存合并批量写入" : "逐次写库", dedupWindowMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        int flushed = flush();
+        log.info("停机前写入文章浏览增量，文章数: {}", flushed);
+    }
+
+    @Override
+    public void recordView(Long articleId, Long userId) {
+        if (articleId == null || isDuplicate(articleId, userId)) {
+            return;
+        }
+
+        if (!buffered) {
+            transactionTemplate.executeWithoutResult(status -> articleRepository.incrementViewCount(articleId));
+            return;
+        }
+        counters.compute(articleId, (id, counter) -> {
+            Counter target = counter != null ? counter : new Counter();
+            target.views.increment();
+            return target;
+        });
+    }
+
+    @Override
+    public long getPendingViews(Long articleId) {
+        Counter counter = counters.get(articleId);
+        return counter == null ? 0 : counter.pending();
+    }
+
+    @Override
+    public Map<Long, Long> getPendingViews() {
+        Map<Long, Long> pending = new HashMap<>();
+        counters.forEach((articleId, counter) -> {
+            long delta = counter.pending();
+            if (delta > 0) {
+                pending.put(articleId, delta);
+            }
+        });
+        return pending;
+    }
+
+    @Scheduled(initialDelayString = "${knowledge.view-counter.flush-interval-ms:5000}",
+               fixedDelayString = "${knowledge.view-counter.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 计数器只增不清零，已落库的部分记录在 flushed 中；
+     * 写库失败时 flushed 不前移，增量在下个周期重试
+     */
+    @Override
+    public int flush() {
+        synchronized (flushLock) {
+            Map<Long, Long> snapshot = new HashMap<>();
+            // 按增量分组，同一增量的文章合并为一条 UPDATE ... WHERE id IN (...)
+            Map<Integer, List<Long>> idsByDelta = new HashMap<>();
+            counters.forEach((articleId, counter) -> {
+                long total = counter.views.sum();
+                long delta = total - counter.flushed;
+                if (delta <= 0) {
+                    if (++counter.idleRounds >= IDLE_ROUNDS_BEFORE_REMOVE) {
+                        removeIdle(articleId, counter);
+                    }
+                    return;
+                }
+                counter.idleRounds = 0;
+                snapshot.put(articleId, total);
+                idsByDelta.computeIfAbsent((int) Math.min(delta, Integer.MAX_VALUE), d -> new ArrayList<>())
+                        .add(articleId);
+            });
+            if (snapshot.isEmpty()) {
+                return 0;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        idsByDelta.forEach((delta, ids) -> articleRepository.addViewCount(ids, delta)));
+            } catch (Exception e) {
+                log.error("批量写入文章浏览次数失败，下个周期重试，文章数: {}", snapshot.size(), e);
+                return 0;
+            }
+
+            snapshot.forEach((articleId, total) -> counters.get(articleId).flushed = total);
+            log.debug("批量写入文章浏览次数，文章数: {}, UPDATE 语句数: {}", snapshot.size(), idsByDelta.size());
+            return snapshot.size();
+        }
+    }
+
+    /**
+     * 移除空闲计数器；在 compute 中检查增量是否为零，与 recordView 的累加互斥，检查后不会再有浏览计入旧计数器
+     */
+    private void removeIdle(Long articleId, Counter counter) {
+        counters.computeIfPresent(articleId, (id, current) ->
+                current == counter && current.pending() == 0 ? null : current);
+    }
+
+    private boolean isDuplicate(Long articleId, Long userId) {
+        if (recentViews == null || userId == null) {
+            return false;
+        }
+        String key = userId + ":" + articleId;
+        if (recentViews.containsKey(key)) {
+            return true;
+        }
+        recentViews.put(key, Boolean.TRUE);
+        return false;
+    }
+
+    /**
+     * 单篇文章的浏览计数
+     */
+    private static final class Counter {
+        private final LongAdder views = new LongAdder();
+        /**
+         * 已写入数据库的累计值，仅刷新线程读写
+         */
+        private volatile long flushed;
+        private int idleRounds;
+
+        private long pending() {
+            return Math.max(0, views.sum() - flushed);
+        }
+    }
+}
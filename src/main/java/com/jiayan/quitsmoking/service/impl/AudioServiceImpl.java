@@ -1,5 +1,8 @@
 package com.jiayan.quitsmoking.service.impl;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.jiayan.quitsmoking.dto.AudioDownload;
 import com.jiayan.quitsmoking.dto.AudioRequest;
 import com.jiayan.quitsmoking.dto.AudioResponse;
 import com.jiayan.quitsmoking.entity.Audio;
@@ -15,6 +18,8 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -37,6 +42,22 @@ public class AudioServiceImpl implements AudioService {
     // 音频文件存储路径
     private static final String AUDIO_UPLOAD_DIR = "uploads/audios/";
     
+    /**
+     * 下载用音频元数据缓存（容量、过期时间毫秒），修改、删除、启停后失效
+     */
+    private static final int DOWNLOAD_CACHE_CAPACITY = 1000;
+    private static final long DOWNLOAD_CACHE_TIMEOUT = 10 * 60 * 1000L;
+    
+    private final LRUCache<Long, AudioMeta> downloadCache =
+            CacheUtil.newLRUCache(DOWNLOAD_CACHE_CAPACITY, DOWNLOAD_CACHE_TIMEOUT);
+    
+    /**
+     * 下载和权限校验所需的音频字段
+     */
+    private record AudioMeta(Long id, String fileName, String description, Long userId,
+                             boolean isPublic, boolean isDisabled, boolean isPremiumOnly) {
+    }
+    
     @Override
     @Transactional
     public AudioResponse createAudio(Long userId, AudioRequest request) {
@@ -109,6 +130,7 @@ public class AudioServiceImpl implements AudioService {
         audio.setIsPremiumOnly(request.getIsPremiumOnly());
         
         Audio updatedAudio = audioRepository.save(audio);
+        evictDownloadCache(audioId);
         log.info("音频更新成功，ID: {}", updatedAudio.getId());
         
         return AudioResponse.fromEntity(updatedAudio);
@@ -160,6 +182,7 @@ public class AudioServiceImpl implements AudioService {
         }
         
         audioRepository.delete(audio);
+        evictDownloadCache(audioId);
         log.info("音频删除成功，ID: {}", audioId);
     }
     
@@ -177,6 +200,7 @@ public class AudioServiceImpl implements AudioService {
         
         audio.setIsDisabled(!audio.getIsDisabled());
         Audio updatedAudio = audioRepository.save(audio);
+        evictDownloadCache(audioId);
         
         log.info("音频状态切换成功，ID: {}, 新状态: {}", audioId, updatedAudio.getIsDisabled());
         return AudioResponse.fromEntity(updatedAudio);
@@ -192,23 +216,13 @@ public class AudioServiceImpl implements AudioService {
     public Resource downloadAudio(Long audioId, Long userId) {
         log.info("下载音频，音频ID: {}, 用户ID: {}", audioId, userId);
         
-        // 获取音频信息
-        Audio audio = audioRepository.findById(audioId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND.getCode(), "音频不存在"));
-        
-        // 检查权限
-        if (!canUserDownloadAudio(audioId, userId)) {
-            throw new BusinessException(ErrorCode.FORBIDDEN.getCode(), "无权限下载此音频");
-        }
-        
+        AudioDownload download = resolveDownload(audioId, userId);
         try {
-            // 构建文件路径
-            Path filePath = Paths.get(AUDIO_UPLOAD_DIR).resolve(audio.getFileName());
-            Resource resource = new UrlResource(filePath.toUri());
+            Resource resource = new UrlResource(download.getFilePath().toUri());
             
             if (resource.exists() && resource.isReadable()) {
                 log.info("音频文件准备下载，文件名: {}, 大小: {} bytes", 
-                    audio.getFileName(), resource.contentLength());
+                    download.getFilePath().getFileName(), resource.contentLength());
                 return resource;
             } else {
                 throw new BusinessException(ErrorCode.NOT_FOUND.getCode(), "音频文件不存在或无法读取");
@@ -223,19 +237,47 @@ public class AudioServiceImpl implements AudioService {
     }
     
     @Override
-    public boolean canUserDownloadAudio(Long audioId, Long userId) {
-        Audio audio = audioRepository.findById(audioId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND.getCode(), "音频不存在"));
+    public AudioDownload resolveDownload(Long audioId, Long userId) {
+        AudioMeta audio = loadAudioMeta(audioId);
+        
+        // 检查权限
+        if (!canDownload(audio, userId)) {
+            throw new BusinessException(ErrorCode.FORBIDDEN.getCode(), "无权限下载此音频");
+        }
         
+        String downloadFileName = audio.fileName();
+        // 如果有描述，使用描述作为文件名
+        if (audio.description() != null && !audio.description().isEmpty()) {
+            String extension = "";
+            int lastDot = downloadFileName.lastIndexOf('.');
+            if (lastDot > 0) {
+                extension = downloadFileName.substring(lastDot);
+            }
+            downloadFileName = audio.description() + extension;
+        }
+        
+        Path filePath = Paths.get(AUDIO_UPLOAD_DIR).resolve(audio.fileName()).normalize();
+        if (!filePath.startsWith(Paths.get(AUDIO_UPLOAD_DIR).normalize())) {
+            throw new BusinessException(ErrorCode.NOT_FOUND.getCode(), "音频文件不存在或无法读取");
+        }
+        return new AudioDownload(audio.id(), filePath, downloadFileName);
+    }
+    
+    @Override
+    public boolean canUserDownloadAudio(Long audioId, Long userId) {
+        return canDownload(loadAudioMeta(audioId), userId);
+    }
+    
+    private boolean canDownload(AudioMeta audio, Long userId) {
         // 检查音频是否被禁用
-        if (audio.getIsDisabled()) {
+        if (audio.isDisabled()) {
             return false;
         }
         
         // 公有音频：所有用户都可以下载
-        if (audio.getIsPublic()) {
+        if (audio.isPublic()) {
             // 检查会员限制
-            if (audio.getIsPremiumOnly()) {
+            if (audio.isPremiumOnly()) {
                 // TODO: 这里需要检查用户是否为会员
                 // 暂时返回true，后续需要实现会员检查逻辑
                 return true;
@@ -244,6 +286,35 @@ public class AudioServiceImpl implements AudioService {
         }
         
         // 私有音频：只有音频所有者可以下载
-        return audio.getUserId().equals(userId);
+        return audio.userId() != null && audio.userId().equals(userId);
+    }
+    
+    private AudioMeta loadAudioMeta(Long audioId) {
+        AudioMeta cached = downloadCache.get(audioId, false);
+        if (cached != null) {
+            return cached;
+        }
+        Audio audio = audioRepository.findById(audioId)
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND.getCode(), "音频不存在"));
+        AudioMeta meta = new AudioMeta(audio.getId(), audio.getFileName(), audio.getDescription(), audio.getUserId(),
+                Boolean.TRUE.equals(audio.getIsPublic()), Boolean.TRUE.equals(audio.getIsDisabled()),
+                Boolean.TRUE.equals(audio.getIsPremiumOnly()));
+        downloadCache.put(audioId, meta);
+        return meta;
+    }
+    
+    /**
+     * 立即失效，并在事务提交后再失效一次，避免并发下载把提交前的旧数据放回缓存
+     */
+    private void evictDownloadCache(Long audioId) {
+        downloadCache.remove(audioId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    downloadCache.remove(audioId);
+                }
+            });
+        }
     }
 } 
\ No newline at end of file
@@ -1,8 +1,11 @@
 package com.jiayan.quitsmoking.service.impl;
 
 import com.jiayan.quitsmoking.entity.User;
+import com.jiayan.quitsmoking.media.BlobStore;
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
 import com.jiayan.quitsmoking.repository.UserRepository;
 import com.jiayan.quitsmoking.service.AvatarService;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
@@ -17,7 +20,6 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
 /**
@@ -29,6 +31,9 @@ import java.util.UUID;
 public class AvatarServiceImpl implements AvatarService {
 
     private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
+    private final BlobStore blobStore;
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
     
     // 头像存储目录
     private static final String AVATAR_DIR = "uploads/avatars";
@@ -59,11 +64,13 @@ public class AvatarServiceImpl implements AvatarService {
         
         // 保存文件
         Path filePath = avatarDir.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        blobStore.store(file.getInputStream(), filePath);
+        imageDerivativeGenerator.generateAsync(filePath);
         
         // 更新用户头像字段
         user.setAvatar(fileName);
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         
         log.info("头像上传成功: userId={}, fileName={}", userId, fileName);
         return fileName;
@@ -114,8 +121,9 @@ public class AvatarServiceImpl implements AvatarService {
         log.info("文件保存路径: {}", filePath);
         
         try (var inputStream = avatarUrl.openStream()) {
-            Files.copy(inputStream, filePath, StandardCopyOption.REPLACE_EXISTING);
+            blobStore.store(inputStream, filePath);
             log.info("文件下载完成: {}", filePath);
+            imageDerivativeGenerator.generateAsync(filePath);
         } catch (Exception e) {
             log.error("文件下载失败: url={}, error={}", avatarUrl, e.getMessage(), e);
             throw e;
@@ -124,6 +132,7 @@ public class AvatarServiceImpl implements AvatarService {
         // 更新用户头像字段
         user.setAvatar(fileName);
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         
         log.info("头像下载成功: userId={}, fileName={}, url={}", userId, fileName, avatarUrl);
         return fileName;
@@ -152,6 +161,7 @@ public class AvatarServiceImpl implements AvatarService {
         // 清空用户头像字段
         user.setAvatar(null);
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         
         log.info("头像删除成功: userId={}", userId);
     }
@@ -201,6 +211,7 @@ public class AvatarServiceImpl implements AvatarService {
             Path oldAvatarPath = Paths.get(AVATAR_DIR).resolve(user.getAvatar());
             if (Files.exists(oldAvatarPath)) {
                 Files.delete(oldAvatarPath);
+                imageDerivativeGenerator.deleteDerivatives(oldAvatarPath);
                 log.info("删除旧头像: {}", user.getAvatar());
             }
         }
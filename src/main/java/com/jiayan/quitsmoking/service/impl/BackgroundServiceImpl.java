@@ -1,6 +1,8 @@
 package com.jiayan.quitsmoking.service.impl;
 
 import com.jiayan.quitsmoking.dto.UpdateUserRequest;
+import com.jiayan.quitsmoking.media.BlobStore;
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
 import com.jiayan.quitsmoking.service.BackgroundService;
 import com.jiayan.quitsmoking.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -17,7 +19,6 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -31,10 +32,12 @@ import java.util.UUID;
 public class BackgroundServiceImpl implements BackgroundService {
 
     private final UserService userService;
+    private final BlobStore blobStore;
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
     
     // 背景图存储目录
     private static final String BACKGROUND_UPLOAD_DIR = "uploads/backgrounds";
-    private static final String DEFAULT_BACKGROUND = "/uploads/backgrounds/default-bg.jpg";
+    public static final String DEFAULT_BACKGROUND = "/uploads/backgrounds/default-bg.jpg";
 
     @Override
     @Transactional
@@ -74,7 +77,8 @@ public class BackgroundServiceImpl implements BackgroundService {
 
         // 保存文件
         Path filePath = uploadDir.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        blobStore.store(file.getInputStream(), filePath);
+        imageDerivativeGenerator.generateAsync(filePath);
 
         log.info("背景图上传成功: userId={}, fileName={}, size={}", userId, fileName, file.getSize());
 
@@ -101,8 +105,9 @@ public class BackgroundServiceImpl implements BackgroundService {
         // 下载并保存文件
         Path filePath = uploadDir.resolve(fileName);
         try (var inputStream = url.openStream()) {
-            Files.copy(inputStream, filePath, StandardCopyOption.REPLACE_EXISTING);
+            blobStore.store(inputStream, filePath);
         }
+        imageDerivativeGenerator.generateAsync(filePath);
 
         log.info("背景图下载成功: userId={}, fileName={}, url={}", userId, fileName, url);
 
@@ -157,6 +162,7 @@ public class BackgroundServiceImpl implements BackgroundService {
             Path filePath = Paths.get(BACKGROUND_UPLOAD_DIR).resolve(fileName);
             if (Files.exists(filePath)) {
                 Files.delete(filePath);
+                imageDerivativeGenerator.deleteDerivatives(filePath);
                 log.info("背景图文件删除成功: userId={}, fileName={}", userId, fileName);
             }
         }
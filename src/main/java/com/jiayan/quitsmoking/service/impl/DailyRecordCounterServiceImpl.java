@@ -0,0 +1,122 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.jiayan.quitsmoking.entity.SmokingRecord;
+import com.jiayan.quitsmoking.enums.RecordType;
+import com.jiayan.quitsmoking.repository.DailyRecordCounterRepository;
+import com.jiayan.quitsmoking.service.DailyRecordCounterService;
+import com.jiayan.quitsmoking.util.TimeZoneUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每日记录计数服务实现类
+ * 读路径：内存热点缓存 -> daily_record_counters 唯一索引点查
+ * 写路径：与记录写入同一事务内增量 upsert，提交后失效缓存
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DailyRecordCounterServiceImpl implements DailyRecordCounterService {
+
+    /**
+     * 热点缓存容量及过期时间（毫秒）
+     */
+    private static final int CACHE_CAPACITY = 10000;
+    private static final long CACHE_TIMEOUT = 10 * 60 * 1000L;
+
+    private final DailyRecordCounterRepository dailyRecordCounterRepository;
+
+    private final LRUCache<Long, TodayCounts> todayCache = CacheUtil.newLRUCache(CACHE_CAPACITY, CACHE_TIMEOUT);
+
+    @Override
+    public long getTodayCount(Long userId, RecordType recordType) {
+        LocalDate today = TimeZoneUtil.getCurrentBeijingDate();
+
+        TodayCounts counts = todayCache.get(userId, false);
+        if (counts == null || !today.equals(counts.date())) {
+            counts = dailyRecordCounterRepository.findByUserIdAndRecordDate(userId, today)
+                    .map(c -> new TodayCounts(today, c.getSmokingCount(), c.getTrainingCount()))
+                    .orElse(new TodayCounts(today, 0L, 0L));
+            todayCache.put(userId, counts);
+        }
+
+        return recordType == RecordType.TRAINING ? counts.trainingCount() : counts.smokingCount();
+    }
+
+    @Override
+    public void onRecordCreated(SmokingRecord record) {
+        applyDelta(record, 1);
+    }
+
+    @Override
+    public void onRecordsCreated(List<SmokingRecord> records) {
+        // 按 用户ID + 日期 合并，每组只执行一次 upsert
+        Map<Long, Map<LocalDate, long[]>> deltas = new HashMap<>();
+        for (SmokingRecord record : records) {
+            long[] delta = deltas.computeIfAbsent(record.getUserId(), k -> new HashMap<>())
+                    .computeIfAbsent(record.getCreatedAt().toLocalDate(), k -> new long[2]);
+            if (record.getRecordType() == RecordType.TRAINING) {
+                delta[1]++;
+            } else {
+                delta[0]++;
+            }
+        }
+
+        LocalDateTime now = TimeZoneUtil.getCurrentBeijingTime();
+        deltas.forEach((userId, byDate) -> {
+            byDate.forEach((date, delta) ->
+                    dailyRecordCounterRepository.upsertDelta(userId, date, delta[0], delta[1], now));
+            evictAfterCommit(userId);
+        });
+    }
+
+    @Override
+    public void onRecordDeleted(SmokingRecord record) {
+        applyDelta(record, -1);
+    }
+
+    private void applyDelta(SmokingRecord record, long delta) {
+        // created_at 存储的是北京时间，与原 DATE(created_at) 统计口径一致
+        LocalDate recordDate = record.getCreatedAt().toLocalDate();
+        long smokingDelta = record.getRecordType() == RecordType.SMOKING ? delta : 0;
+        long trainingDelta = record.getRecordType() == RecordType.TRAINING ? delta : 0;
+
+        dailyRecordCounterRepository.upsertDelta(record.getUserId(), recordDate,
+                smokingDelta, trainingDelta, TimeZoneUtil.getCurrentBeijingTime());
+
+        evictAfterCommit(record.getUserId());
+    }
+
+    /**
+     * 事务提交后再失效缓存，避免并发读取把未提交前的旧值重新放回缓存
+     */
+    private void evictAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    todayCache.remove(userId);
+                }
+            });
+        } else {
+            todayCache.remove(userId);
+        }
+    }
+
+    /**
+     * 今日计数快照
+     */
+    private record TodayCounts(LocalDate date, long smokingCount, long trainingCount) {
+    }
+}
@@ -1,23 +1,34 @@
 package com.jiayan.quitsmoking.service.impl;
 
 import com.jiayan.quitsmoking.entity.User;
+import com.jiayan.quitsmoking.enums.ForumPermission;
 import com.jiayan.quitsmoking.enums.PostPermissionLevel;
 import com.jiayan.quitsmoking.exception.BusinessException;
 import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.ForumPermissionService;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * 论坛权限管理服务实现类
+ * 权限判断是对缓存用户快照中权限掩码的位测试，修改权限、禁言状态后失效对应快照
  */
 @Service
 @RequiredArgsConstructor
@@ -25,50 +36,65 @@ import java.util.Map;
 @Transactional
 public class ForumPermissionServiceImpl implements ForumPermissionService {
     
+    /**
+     * 内容访问级别对应的权限位
+     */
+    private static final Map<String, ForumPermission> CONTENT_PERMISSIONS = Map.of(
+            "member", ForumPermission.MEMBER_CONTENT,
+            "premium", ForumPermission.PREMIUM_CONTENT
+    );
+    
+    /**
+     * 操作类型对应的权限位（编辑、删除自己的或管理员处理所有内容，均按发帖权限判断）
+     */
+    private static final Map<String, ForumPermission> OPERATION_PERMISSIONS = Map.of(
+            "CREATE_POST", ForumPermission.POST_ALLOWED,
+            "EDIT_POST", ForumPermission.POST_ALLOWED,
+            "DELETE_POST", ForumPermission.POST_ALLOWED,
+            "CREATE_COMMENT", ForumPermission.POST_ALLOWED,
+            "EDIT_COMMENT", ForumPermission.POST_ALLOWED,
+            "DELETE_COMMENT", ForumPermission.POST_ALLOWED,
+            "ACCESS_PREMIUM_CONTENT", ForumPermission.PREMIUM_CONTENT,
+            "ACCESS_MEMBER_CONTENT", ForumPermission.MEMBER_CONTENT
+    );
+    
+    /**
+     * 过期权限清理每批处理的用户数
+     */
+    private static final int SWEEP_BATCH_SIZE = 500;
+    
+    /**
+     * 批量更新权限时单条 UPDATE 的最大用户数
+     */
+    private static final int BATCH_UPDATE_CHUNK_SIZE = 1000;
+    
     private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
+    private final TransactionTemplate transactionTemplate;
     
     @Override
     @Transactional(readOnly = true)
     public boolean canUserCreatePosts(Long userId) {
         log.debug("检查用户发帖权限: userId={}", userId);
         
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        // 检查用户是否被禁言
-        if (Boolean.TRUE.equals(user.getForumBanned())) {
-            if (user.getBanEndTime() != null && LocalDateTime.now().isAfter(user.getBanEndTime())) {
-                // 禁言已过期，自动解除
-                unbanUser(userId, null);
-                return user.getCanCreatePosts() != null && user.getCanCreatePosts();
-            }
-            return false;
-        }
-        
-        // 检查是否有发帖权限
-        if (user.getCanCreatePosts() == null || !user.getCanCreatePosts()) {
-            return false;
-        }
-        
-        // 检查权限是否过期
-        if (user.getPostPermissionExpiresAt() != null && LocalDateTime.now().isAfter(user.getPostPermissionExpiresAt())) {
-            return false;
-        }
-        
-        return true;
+        // 未禁言、有发帖权限且权限未过期
+        return hasPermission(user, ForumPermission.POST_ALLOWED);
     }
     
     @Override
     @Transactional(readOnly = true)
     public PostPermissionLevel getUserPostPermissionLevel(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return PostPermissionLevel.NONE;
         }
         
-        return user.getPostPermissionLevel() != null ? user.getPostPermissionLevel() : PostPermissionLevel.NONE;
+        return user.getPostPermissionLevel();
     }
     
     @Override
@@ -87,6 +113,7 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         log.info("用户发帖权限授予成功: userId={}, level={}", userId, level);
     }
     
@@ -106,6 +133,7 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         log.info("用户发帖权限撤销成功: userId={}", userId);
     }
     
@@ -123,27 +151,20 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         log.info("用户发帖权限级别更新成功: userId={}, level={}", userId, level);
     }
     
     @Override
     @Transactional(readOnly = true)
     public boolean isUserBanned(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        if (!Boolean.TRUE.equals(user.getForumBanned())) {
-            return false;
-        }
-        
-        // 检查禁言是否已过期
-        if (user.getBanEndTime() != null && LocalDateTime.now().isAfter(user.getBanEndTime())) {
-            return false;
-        }
-        
-        return true;
+        // 已过期的禁言不计入
+        return user.hasPermission(ForumPermission.BANNED);
     }
     
     @Override
@@ -163,6 +184,7 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         log.info("用户禁言成功: userId={}, endTime={}", userId, endTime);
     }
     
@@ -185,6 +207,7 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         log.info("用户禁言解除成功: userId={}", userId);
     }
     
@@ -200,6 +223,7 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
         user.setUpdatedAt(LocalDateTime.now());
         
         userRepository.save(user);
+        userPrincipalService.evict(userId);
         log.info("用户警告成功: userId={}, warningCount={}", userId, user.getWarningCount());
     }
     
@@ -217,27 +241,31 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
     @Override
     @Transactional(readOnly = true)
     public int getUserWarningCount(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         return user != null ? user.getWarningCount() : 0;
     }
     
     @Override
     @Transactional(readOnly = true)
     public int getUserBanCount(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         return user != null ? user.getBanCount() : 0;
     }
     
     @Override
     @Transactional(readOnly = true)
     public boolean canUserAccessContent(Long userId, String contentAccessLevel) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return false;
         }
         
         // 检查用户会员等级是否满足要求
-        return user.meetsMemberRequirement(contentAccessLevel);
+        if ("free".equals(contentAccessLevel)) {
+            return true;
+        }
+        ForumPermission required = CONTENT_PERMISSIONS.get(contentAccessLevel);
+        return required != null && user.hasPermission(required);
     }
     
     @Override
@@ -264,24 +292,59 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
     @Override
     @Transactional(readOnly = true)
     public boolean isUserPermissionExpired(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return true;
         }
         
-        if (user.getPostPermissionExpiresAt() == null) {
-            return false; // 永久权限
-        }
-        
-        return LocalDateTime.now().isAfter(user.getPostPermissionExpiresAt());
+        // 无过期时间为永久权限
+        return user.isPostPermissionExpired();
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Scheduled(initialDelayString = "${forum.permission-sweep.initial-delay-ms:60000}",
+               fixedDelayString = "${forum.permission-sweep.interval-ms:60000}")
     public void cleanupExpiredPermissions() {
-        log.info("开始清理过期权限");
-        
-        // 暂时跳过清理，因为Repository方法不存在
-        log.info("过期权限清理完成: count=0");
+        LocalDateTime now = LocalDateTime.now();
+        
+        // 按到期时间索引分批取出用户ID，每批一条 UPDATE，各批独立提交
+        int releasedBans = sweepExpired(
+                () -> userRepository.findExpiredBanUserIds(now, PageRequest.of(0, SWEEP_BATCH_SIZE)),
+                ids -> userRepository.releaseExpiredBans(ids, now));
+        int expiredPermissions = sweepExpired(
+                () -> userRepository.findExpiredPostPermissionUserIds(now, PageRequest.of(0, SWEEP_BATCH_SIZE)),
+                ids -> userRepository.expirePostPermissions(ids, PostPermissionLevel.NONE, now));
+        
+        if (releasedBans > 0 || expiredPermissions > 0) {
+            log.info("过期权限清理完成: releasedBans={}, expiredPostPermissions={}", releasedBans, expiredPermissions);
+        } else {
+            log.debug("过期权限清理完成: count=0");
+        }
+    }
+    
+    /**
+     * 循环处理一类到期记录直到清空，返回更新的用户数
+     */
+    private int sweepExpired(Supplier<List<Long>> finder, ToIntFunction<List<Long>> updater) {
+        int total = 0;
+        while (true) {
+            int[] result = transactionTemplate.execute(status -> {
+                List<Long> userIds = finder.get();
+                if (userIds.isEmpty()) {
+                    return new int[]{0, 0};
+                }
+                int updated = updater.applyAsInt(userIds);
+                userIds.forEach(userPrincipalService::evict);
+                return new int[]{userIds.size(), updated};
+            });
+            total += result[1];
+            
+            // 本批不足一页，或被并发修改导致没有更新，说明已清理完毕
+            if (result[0] < SWEEP_BATCH_SIZE || result[1] == 0) {
+                return total;
+            }
+        }
     }
     
     @Override
@@ -311,51 +374,54 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
     
     @Override
     public void batchUpdateUserPermissions(List<Long> userIds, PostPermissionLevel level, Long updatedBy) {
-        log.info("批量更新用户权限: userIds={}, level={}, updatedBy={}", userIds, updatedBy, level);
+        log.info("批量更新用户权限: userIds={}, level={}, updatedBy={}", userIds, level, updatedBy);
         
         if (userIds == null || userIds.isEmpty()) {
             throw new BusinessException("用户ID列表不能为空");
         }
         
-        for (Long userId : userIds) {
-            try {
-                updatePostPermissionLevel(userId, level, updatedBy);
-            } catch (Exception e) {
-                log.error("批量更新用户权限失败: userId={}", userId, e);
-            }
+        List<Long> distinctIds = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        LocalDateTime now = LocalDateTime.now();
+        
+        // 按批次执行 UPDATE ... WHERE id IN (...)，不存在的用户ID自动忽略
+        int updated = 0;
+        for (int from = 0; from < distinctIds.size(); from += BATCH_UPDATE_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + BATCH_UPDATE_CHUNK_SIZE, distinctIds.size()));
+            updated += userRepository.updatePostPermissionLevelByIds(chunk, level, updatedBy, now);
+            chunk.forEach(userPrincipalService::evict);
         }
         
-        log.info("批量更新用户权限完成: count={}", userIds.size());
+        log.info("批量更新用户权限完成: requested={}, updated={}", distinctIds.size(), updated);
     }
     
     @Override
     @Transactional(readOnly = true)
     public boolean hasAdminPermission(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return false;
         }
         
         // 简化判断：有发帖权限的用户视为有管理权限
-        return Boolean.TRUE.equals(user.getCanCreatePosts());
+        return user.hasPermission(ForumPermission.ADMIN);
     }
     
     @Override
     @Transactional(readOnly = true)
     public boolean hasAuditPermission(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return false;
         }
         
         // 简化判断：有发帖权限的用户视为有审核权限
-        return Boolean.TRUE.equals(user.getCanCreatePosts());
+        return user.hasPermission(ForumPermission.AUDIT);
     }
     
     @Override
     @Transactional(readOnly = true)
     public List<String> getUserRoles(Long userId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return new ArrayList<>();
         }
@@ -363,19 +429,19 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
         List<String> roles = new ArrayList<>();
         
         // 根据用户权限设置角色
-        if (Boolean.TRUE.equals(user.getCanCreatePosts())) {
+        if (user.hasPermission(ForumPermission.POST_GRANTED)) {
             roles.add("POSTER");
         }
         
-        if (Boolean.TRUE.equals(user.getIsPremiumMember())) {
+        if (user.hasPermission(ForumPermission.PREMIUM_CONTENT)) {
             roles.add("PREMIUM_MEMBER");
-        } else if ("member".equals(user.getMemberLevel())) {
+        } else if (user.hasPermission(ForumPermission.MEMBER_CONTENT)) {
             roles.add("MEMBER");
         } else {
             roles.add("FREE_USER");
         }
         
-        if (hasAdminPermission(userId)) {
+        if (user.hasPermission(ForumPermission.ADMIN)) {
             roles.add("ADMIN");
         }
         
@@ -385,35 +451,32 @@ public class ForumPermissionServiceImpl implements ForumPermissionService {
     @Override
     @Transactional(readOnly = true)
     public boolean validateUserOperation(Long userId, String operation, Long targetId) {
-        User user = userRepository.findById(userId).orElse(null);
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        // 根据操作类型验证权限
-        switch (operation) {
-            case "CREATE_POST":
-                return canUserCreatePosts(userId);
-            case "EDIT_POST":
-                // 用户可以编辑自己的帖子，管理员可以编辑所有帖子
-                return canUserCreatePosts(userId);
-            case "DELETE_POST":
-                // 用户可以删除自己的帖子，管理员可以删除所有帖子
-                return canUserCreatePosts(userId);
-            case "CREATE_COMMENT":
-                return canUserCreatePosts(userId);
-            case "EDIT_COMMENT":
-                return canUserCreatePosts(userId);
-            case "DELETE_COMMENT":
-                return canUserCreatePosts(userId);
-            case "RATE_ARTICLE":
-                return true; // 所有用户都可以评分
-            case "ACCESS_PREMIUM_CONTENT":
-                return canUserAccessContent(userId, "premium");
-            case "ACCESS_MEMBER_CONTENT":
-                return canUserAccessContent(userId, "member");
-            default:
-                return false;
+        // 所有用户都可以评分
+        if ("RATE_ARTICLE".equals(operation)) {
+            return true;
+        }
+        
+        // 根据操作类型对应的权限位验证
+        ForumPermission required = operation != null ? OPERATION_PERMISSIONS.get(operation) : null;
+        return required != null && hasPermission(user, required);
+    }
+    
+    /**
+     * 检查快照中的权限位；禁言已过期但尚未解除时顺带清理禁言状态
+     */
+    private boolean hasPermission(UserPrincipal user, ForumPermission permission) {
+        if (user.isForumBanned() && !user.hasPermission(ForumPermission.BANNED)) {
+            try {
+                unbanUser(user.getId(), null);
+            } catch (BusinessException e) {
+                log.debug("禁言状态已被解除: userId={}", user.getId());
+            }
         }
+        return user.hasPermission(permission);
     }
 } 
\ No newline at end of file
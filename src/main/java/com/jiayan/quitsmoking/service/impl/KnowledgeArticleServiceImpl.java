@@ -1,29 +1,44 @@
 package com.jiayan.quitsmoking.service.impl;
 
+import com.jiayan.quitsmoking.dto.ArticleSummary;
 import com.jiayan.quitsmoking.entity.KnowledgeArticle;
 import com.jiayan.quitsmoking.entity.KnowledgeContentBlock;
 import com.jiayan.quitsmoking.entity.KnowledgeCategory;
-import com.jiayan.quitsmoking.entity.User;
+import com.jiayan.quitsmoking.enums.AccessLevel;
 import com.jiayan.quitsmoking.enums.ArticleStatus;
 import com.jiayan.quitsmoking.enums.AuditStatus;
 import com.jiayan.quitsmoking.enums.PostPermissionLevel;
 import com.jiayan.quitsmoking.exception.BusinessException;
 import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
 import com.jiayan.quitsmoking.repository.KnowledgeCategoryRepository;
-import com.jiayan.quitsmoking.repository.KnowledgeContentBlockRepository;
-import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.security.UserPrincipal;
+import com.jiayan.quitsmoking.service.ArticleCacheService;
+import com.jiayan.quitsmoking.service.ArticleSearchService;
+import com.jiayan.quitsmoking.service.ArticleViewCounterService;
 import com.jiayan.quitsmoking.service.KnowledgeArticleService;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 知识文章服务实现类
@@ -34,10 +49,19 @@ import java.util.List;
 @Transactional
 public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
     
+    /**
+     * 热门列表合并未落库浏览增量时重新排序的最大范围（更深的分页只叠加增量，不重新排序）
+     */
+    private static final int POPULAR_MERGE_WINDOW = 200;
+    
     private final KnowledgeArticleRepository articleRepository;
-    private final KnowledgeContentBlockRepository contentBlockRepository;
     private final KnowledgeCategoryRepository categoryRepository;
-    private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
+    private final ArticleSearchService articleSearchService;
+    private final ArticleViewCounterService articleViewCounterService;
+    private final ArticleCacheService articleCacheService;
+    private final OrderedChildBatchWriter childBatchWriter;
+    private final AccessibleArticleIndex accessibleArticleIndex;
     
     @Override
     public KnowledgeArticle createArticle(KnowledgeArticle article, List<KnowledgeContentBlock> contentBlocks) {
@@ -48,8 +72,10 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
                 .orElseThrow(() -> new BusinessException("分类不存在"));
         
         // 验证作者是否存在
-        User author = userRepository.findById(article.getAuthorId())
-                .orElseThrow(() -> new BusinessException("作者不存在"));
+        UserPrincipal author = userPrincipalService.loadPrincipal(article.getAuthorId());
+        if (author == null) {
+            throw new BusinessException("作者不存在");
+        }
         
         // 验证作者是否有发帖权限（后台创建允许跳过，仅记录日志）
         if (!canUserCreateArticle(author)) {
@@ -70,16 +96,10 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         // 保存文章
         KnowledgeArticle savedArticle = articleRepository.save(article);
         
-        // 保存内容块
-        if (contentBlocks != null && !contentBlocks.isEmpty()) {
-            for (int i = 0; i < contentBlocks.size(); i++) {
-                KnowledgeContentBlock block = contentBlocks.get(i);
-                block.setArticleId(savedArticle.getId());
-                block.setContentOrder(i + 1);
-                contentBlockRepository.save(block);
-            }
-        }
+        // 批量保存内容块
+        childBatchWriter.insertContentBlocks(savedArticle.getId(), contentBlocks);
         
+        afterArticlesChanged(List.of(savedArticle.getId()));
         log.info("文章创建成功: articleId={}", savedArticle.getId());
         return savedArticle;
     }
@@ -114,20 +134,12 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         // 保存文章
         KnowledgeArticle updatedArticle = articleRepository.save(existingArticle);
         
-        // 更新内容块
+        // 更新内容块：与现有内容块比对，只写变化的部分
         if (contentBlocks != null) {
-            // 删除旧的内容块
-            contentBlockRepository.deleteByArticleId(articleId);
-            
-            // 保存新的内容块
-            for (int i = 0; i < contentBlocks.size(); i++) {
-                KnowledgeContentBlock block = contentBlocks.get(i);
-                block.setArticleId(articleId);
-                block.setContentOrder(i + 1);
-                contentBlockRepository.save(block);
-            }
+            childBatchWriter.syncContentBlocks(articleId, contentBlocks);
         }
         
+        afterArticlesChanged(List.of(articleId));
         log.info("文章更新成功: articleId={}", articleId);
         return updatedArticle;
     }
@@ -141,13 +153,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
     @Override
     @Transactional(readOnly = true)
     public KnowledgeArticle getArticleWithContent(Long articleId) {
-        KnowledgeArticle article = getArticleById(articleId);
-        if (article != null) {
-            // 暂时注释掉，因为Repository方法不存在
-            // List<KnowledgeContentBlock> contentBlocks = contentBlockRepository.findByArticleIdOrderByContentOrder(articleId);
-            // 这里可以设置文章的内容块，但需要修改实体类或使用DTO
-        }
-        return article;
+        return articleRepository.findWithDetailsById(articleId).orElse(null);
     }
     
     @Override
@@ -158,8 +164,8 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
     
     @Override
     @Transactional(readOnly = true)
-    public Page<KnowledgeArticle> getArticlesByCategory(Long categoryId, Pageable pageable) {
-        return articleRepository.findByCategoryIdAndStatusAndIsDeletedFalse(categoryId, ArticleStatus.PUBLISHED, pageable);
+    public Page<ArticleSummary> getArticlesByCategory(Long categoryId, Pageable pageable) {
+        return articleRepository.findSummariesByCategory(categoryId, ArticleStatus.PUBLISHED, pageable);
     }
     
     @Override
@@ -182,17 +188,60 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
     
     @Override
     @Transactional(readOnly = true)
-    public Page<KnowledgeArticle> searchArticles(String keyword, Pageable pageable) {
+    public Page<ArticleSummary> searchArticles(String keyword, Pageable pageable) {
         if (!StringUtils.hasText(keyword)) {
             return Page.empty(pageable);
         }
-        return articleRepository.findByTitleContainingAndStatusAndIsDeletedFalse(keyword, ArticleStatus.PUBLISHED, pageable);
+        
+        // 优先使用全文检索（标题、正文、内容块，按相关度排序），索引未就绪时回退到标题模糊匹配
+        Page<ArticleSummary> result = articleSearchService.searchPublished(keyword.trim(), pageable);
+        if (result != null) {
+            return result;
+        }
+        return articleRepository.searchSummariesByTitle("%" + keyword + "%", ArticleStatus.PUBLISHED, pageable);
     }
     
     @Override
     @Transactional(readOnly = true)
-    public Page<KnowledgeArticle> getPopularArticles(Pageable pageable) {
-        return articleRepository.findByStatusAndIsDeletedFalseOrderByViewCountDesc(ArticleStatus.PUBLISHED, pageable);
+    public Page<ArticleSummary> getPopularArticles(Pageable pageable) {
+        Map<Long, Long> pendingViews = articleViewCounterService.getPendingViews();
+        long windowSize = pageable.getOffset() + pageable.getPageSize();
+        if (pendingViews.isEmpty() || windowSize > POPULAR_MERGE_WINDOW) {
+            Page<ArticleSummary> page = articleRepository.findPopularSummaries(ArticleStatus.PUBLISHED, pageable);
+            return pendingViews.isEmpty() ? page : page.map(s -> withPendingViews(s, pendingViews));
+        }
+        
+        // 前几页按“库中浏览数 + 未落库增量”重新排序：取库中前 windowSize 条与有增量的文章合并
+        Page<ArticleSummary> top = articleRepository.findPopularSummaries(ArticleStatus.PUBLISHED,
+                PageRequest.of(0, (int) windowSize));
+        Map<Long, ArticleSummary> candidates = new LinkedHashMap<>();
+        top.forEach(s -> candidates.put(s.getId(), s));
+        List<Long> missing = pendingViews.keySet().stream()
+                .filter(id -> !candidates.containsKey(id))
+                .sorted(Comparator.comparing(pendingViews::get, Comparator.reverseOrder()))
+                .limit(POPULAR_MERGE_WINDOW)
+                .toList();
+        if (!missing.isEmpty()) {
+            articleRepository.findSummariesByIdsAndStatus(missing, ArticleStatus.PUBLISHED)
+                    .forEach(s -> candidates.put(s.getId(), s));
+        }
+        
+        List<ArticleSummary> merged = candidates.values().stream()
+                .map(s -> withPendingViews(s, pendingViews))
+                .sorted(Comparator.comparing(ArticleSummary::getViewCount, Comparator.reverseOrder()))
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+        return new PageImpl<>(merged, pageable, top.getTotalElements());
+    }
+    
+    private static ArticleSummary withPendingViews(ArticleSummary summary, Map<Long, Long> pendingViews) {
+        Long pending = pendingViews.get(summary.getId());
+        if (pending == null) {
+            return summary;
+        }
+        int stored = summary.getViewCount() == null ? 0 : summary.getViewCount();
+        return summary.withViewCount((int) Math.min(Integer.MAX_VALUE, stored + pending));
     }
     
     @Override
@@ -203,13 +252,36 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
     
     @Override
     @Transactional(readOnly = true)
-    public Page<KnowledgeArticle> getLatestArticles(Pageable pageable) {
-        return articleRepository.findByStatusAndIsDeletedFalseOrderByPublishTimeDesc(ArticleStatus.PUBLISHED, pageable);
+    public Page<ArticleSummary> getLatestArticles(Pageable pageable) {
+        return articleRepository.findLatestSummaries(ArticleStatus.PUBLISHED, pageable);
     }
     
     @Override
     @Transactional(readOnly = true)
     public Page<KnowledgeArticle> getAccessibleArticles(String memberLevel, Boolean isPremiumMember, Pageable pageable) {
+        // 高级会员可访问全部已发布文章，不需要按分类过滤
+        if (Boolean.TRUE.equals(isPremiumMember)) {
+            return getArticles(pageable);
+        }
+        
+        // 索引就绪时直接切片该等级的可访问文章ID列表（按发布时间倒序）
+        if (accessibleArticleIndex.isReady()) {
+            List<Long> ids = accessibleArticleIndex.accessibleIds(toAccessTier(memberLevel));
+            int from = (int) Math.min(pageable.getOffset(), ids.size());
+            int to = Math.min(from + pageable.getPageSize(), ids.size());
+            List<Long> pageIds = ids.subList(from, to);
+            if (pageIds.isEmpty()) {
+                return new PageImpl<>(List.of(), pageable, ids.size());
+            }
+            Map<Long, KnowledgeArticle> articles = articleRepository.findAllById(pageIds).stream()
+                    .collect(Collectors.toMap(KnowledgeArticle::getId, Function.identity()));
+            List<KnowledgeArticle> content = pageIds.stream()
+                    .map(articles::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            return new PageImpl<>(content, pageable, ids.size());
+        }
+        
         // 根据用户权限获取可访问的文章
         if (Boolean.TRUE.equals(isPremiumMember)) {
             // 高级会员可以访问所有文章
@@ -241,6 +313,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         article.setUpdatedAt(LocalDateTime.now());
         
         articleRepository.save(article);
+        afterArticlesChanged(List.of(articleId));
         log.info("文章审核提交成功: articleId={}", articleId);
     }
     
@@ -267,6 +340,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         }
         
         articleRepository.save(article);
+        afterArticlesChanged(List.of(articleId));
         log.info("文章审核完成: articleId={}, status={}", articleId, auditStatus);
     }
     
@@ -289,6 +363,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         article.setUpdatedAt(LocalDateTime.now());
         
         articleRepository.save(article);
+        afterArticlesChanged(List.of(articleId));
         log.info("文章发布成功: articleId={}", articleId);
     }
     
@@ -308,6 +383,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         article.setUpdatedAt(LocalDateTime.now());
         
         articleRepository.save(article);
+        afterArticlesChanged(List.of(articleId));
         log.info("文章禁用成功: articleId={}", articleId);
     }
     
@@ -339,6 +415,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
       
         
         articleRepository.save(article);
+        afterArticlesChanged(List.of(articleId));
         log.info("文章恢复成功: articleId={}", articleId);
     }
     
@@ -357,6 +434,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         article.setUpdatedAt(LocalDateTime.now());
         
         articleRepository.save(article);
+        afterArticlesChanged(List.of(articleId));
         log.info("文章软删除成功: articleId={}", articleId);
     }
     
@@ -379,27 +457,35 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         article.setUpdatedAt(LocalDateTime.now());
         
         articleRepository.save(article);
+        afterArticlesChanged(List.of(articleId));
         log.info("文章恢复成功: articleId={}", articleId);
     }
     
     @Override
-    public void incrementViewCount(Long articleId) {
-        articleRepository.incrementViewCount(articleId);
+    public void incrementViewCount(Long articleId, Long userId) {
+        articleViewCounterService.recordView(articleId, userId);
     }
     
     @Override
     public void updateLikeCount(Long articleId, Integer increment) {
         articleRepository.updateLikeCount(articleId, increment);
+        articleCacheService.evictAfterCommit(List.of(articleId));
     }
     
     @Override
     public void updateRating(Long articleId, Double ratingScore, Integer ratingCount) {
         articleRepository.updateRating(articleId, ratingScore, ratingCount);
+        articleCacheService.evictAfterCommit(List.of(articleId));
     }
     
     @Override
     @Transactional(readOnly = true)
     public boolean canUserAccessArticle(Long articleId, String memberLevel, Boolean isPremiumMember) {
+        // 已发布文章（索引中存在）必然未被禁用，无需加载文章
+        if (accessibleArticleIndex.isReady() && accessibleArticleIndex.categoryOf(articleId) != null) {
+            return true;
+        }
+        
         KnowledgeArticle article = getArticleById(articleId);
         if (article == null) {
             return false;
@@ -437,8 +523,8 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         }
         
         // 管理员可以编辑所有文章 - 简化判断
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null && Boolean.TRUE.equals(user.getCanCreatePosts())) {
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
+        if (user != null && user.isCanCreatePosts()) {
             return true;
         }
         
@@ -474,6 +560,7 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         }
         
         articleRepository.updateStatusByIds(articleIds, status);
+        afterArticlesChanged(articleIds);
         log.info("批量更新文章状态完成: count={}", articleIds.size());
     }
     
@@ -487,56 +574,93 @@ public class KnowledgeArticleServiceImpl implements KnowledgeArticleService {
         
         LocalDateTime auditTime = LocalDateTime.now();
         articleRepository.updateAuditStatusByIds(articleIds, auditStatus, auditorId, auditTime);
+        afterArticlesChanged(articleIds);
         log.info("批量更新审核状态完成: count={}", articleIds.size());
     }
     
     @Override
     @Transactional(readOnly = true)
-    public Page<KnowledgeArticle> getArticlesCombined(String keyword, Long categoryId, ArticleStatus status, AuditStatus auditStatus, Pageable pageable) {
-        return articleRepository.findAll((root, query, cb) -> {
-            java.util.List<jakarta.persistence.criteria.Predicate> predicates = new java.util.ArrayList<>();
-            // 未删除
-            predicates.add(cb.isFalse(root.get("isDeleted")));
-            // 关键字匹配标题
-            if (org.springframework.util.StringUtils.hasText(keyword)) {
-                predicates.add(cb.like(root.get("title"), "%" + keyword.trim() + "%"));
-            }
-            // 分类
-            if (categoryId != null) {
-                predicates.add(cb.equal(root.get("categoryId"), categoryId));
+    public Page<ArticleSummary> getArticlesCombined(String keyword, Long categoryId, ArticleStatus status, AuditStatus auditStatus, Pageable pageable) {
+        // 关键字走全文检索得到全部命中ID；有排序时按数据库中的排序（只查ID）过滤出命中，再只加载当页
+        if (StringUtils.hasText(keyword)) {
+            List<Long> matchedIds = articleSearchService.findMatchingIds(keyword.trim(), categoryId, status, auditStatus);
+            if (matchedIds != null) {
+                if (matchedIds.isEmpty()) {
+                    return Page.empty(pageable);
+                }
+                List<Long> orderedIds = matchedIds;
+                if (pageable.getSort().isSorted()) {
+                    Set<Long> matched = new HashSet<>(matchedIds);
+                    orderedIds = articleRepository.findIdsByFilter(null, categoryId, status, auditStatus,
+                                    pageable.getSort().and(Sort.by(Sort.Direction.DESC, "id"))).stream()
+                            .filter(matched::contains)
+                            .toList();
+                }
+                return summaryPage(orderedIds, pageable);
             }
-            // 状态
-            if (status != null) {
-                predicates.add(cb.equal(root.get("status"), status));
-            }
-            // 审核状态
-            if (auditStatus != null) {
-                predicates.add(cb.equal(root.get("auditStatus"), auditStatus));
-            }
-            return cb.and(predicates.toArray(new jakarta.persistence.criteria.Predicate[0]));
-        }, pageable);
+        }
+        
+        // 索引未就绪时关键字匹配标题
+        String titlePattern = StringUtils.hasText(keyword) ? "%" + keyword.trim() + "%" : null;
+        return articleRepository.findSummaries(titlePattern, categoryId, status, auditStatus, pageable);
+    }
+    
+    /**
+     * 按给定ID顺序取出当页的文章列表项，总数为ID总数
+     */
+    private Page<ArticleSummary> summaryPage(List<Long> orderedIds, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), orderedIds.size());
+        int to = Math.min(from + pageable.getPageSize(), orderedIds.size());
+        List<Long> pageIds = orderedIds.subList(from, to);
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, orderedIds.size());
+        }
+        Map<Long, ArticleSummary> summaries = articleRepository.findSummariesByIds(pageIds).stream()
+                .collect(Collectors.toMap(ArticleSummary::getId, Function.identity()));
+        List<ArticleSummary> content = pageIds.stream()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, orderedIds.size());
+    }
+    
+    /**
+     * 文章写操作后刷新检索索引、可访问文章索引并失效响应缓存（均在事务提交后生效）
+     * 浏览数走缓冲计数，不触发失效，缓存中的浏览数最多滞后一个缓存过期周期
+     */
+    private void afterArticlesChanged(List<Long> articleIds) {
+        articleSearchService.refreshAfterCommit(articleIds);
+        articleCacheService.evictAfterCommit(articleIds);
+        accessibleArticleIndex.refreshAfterCommit(articleIds);
+    }
+    
+    /**
+     * 非高级会员对应的可访问等级：会员可访问免费和会员分类，其余只能访问免费分类
+     */
+    private static AccessLevel toAccessTier(String memberLevel) {
+        return "member".equals(memberLevel) ? AccessLevel.MEMBER : AccessLevel.FREE;
     }
     
     /**
      * 检查用户是否有发帖权限
      */
-    private boolean canUserCreateArticle(User user) {
+    private boolean canUserCreateArticle(UserPrincipal user) {
         if (user == null) {
             return false;
         }
         
         // 管理员可以发帖 - 简化判断
-        if (Boolean.TRUE.equals(user.getCanCreatePosts())) {
+        if (user.isCanCreatePosts()) {
             return true;
         }
         
         // 检查用户是否被禁言
-        if (Boolean.TRUE.equals(user.getForumBanned())) {
+        if (user.isForumBanned()) {
             return false;
         }
         
         // 检查发帖权限等级 - 简化判断
-        return Boolean.TRUE.equals(user.getCanCreatePosts());
+        return user.isCanCreatePosts();
     }
 
     
@@ -4,6 +4,7 @@ import com.jiayan.quitsmoking.entity.KnowledgeCategory;
 import com.jiayan.quitsmoking.enums.AccessLevel;
 import com.jiayan.quitsmoking.repository.KnowledgeCategoryRepository;
 import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
+import com.jiayan.quitsmoking.service.ArticleCacheService;
 import com.jiayan.quitsmoking.service.KnowledgeCategoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,16 +22,24 @@ public class KnowledgeCategoryServiceImpl implements KnowledgeCategoryService {
     
     private final KnowledgeCategoryRepository categoryRepository;
     private final KnowledgeArticleRepository articleRepository;
+    private final ArticleCacheService articleCacheService;
+    private final AccessibleArticleIndex accessibleArticleIndex;
     
     @Override
     public KnowledgeCategory createCategory(KnowledgeCategory category) {
-        return categoryRepository.save(category);
+        KnowledgeCategory saved = categoryRepository.save(category);
+        accessibleArticleIndex.reloadCategoriesAfterCommit();
+        return saved;
     }
     
     @Override
     public KnowledgeCategory updateCategory(Long categoryId, KnowledgeCategory category) {
         category.setId(categoryId);
-        return categoryRepository.save(category);
+        KnowledgeCategory saved = categoryRepository.save(category);
+        // 文章响应中包含分类名称，访问级别可能变化
+        articleCacheService.evictAllAfterCommit();
+        accessibleArticleIndex.reloadCategoriesAfterCommit();
+        return saved;
     }
     
     @Override
@@ -113,6 +122,8 @@ public class KnowledgeCategoryServiceImpl implements KnowledgeCategoryService {
     @Override
     public void deleteCategory(Long categoryId) {
         categoryRepository.deleteById(categoryId);
+        articleCacheService.evictAllAfterCommit();
+        accessibleArticleIndex.reloadCategoriesAfterCommit();
     }
     
     @Override
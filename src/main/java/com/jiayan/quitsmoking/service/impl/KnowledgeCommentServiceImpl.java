@@ -1,27 +1,36 @@
 package com.jiayan.quitsmoking.service.impl;
 
+import com.jiayan.quitsmoking.dto.CommentResponse;
+import com.jiayan.quitsmoking.dto.CommentStats;
 import com.jiayan.quitsmoking.entity.KnowledgeComment;
 import com.jiayan.quitsmoking.entity.CommentImage;
 import com.jiayan.quitsmoking.entity.KnowledgeArticle;
-import com.jiayan.quitsmoking.entity.User;
 import com.jiayan.quitsmoking.enums.CommentStatus;
 import com.jiayan.quitsmoking.exception.BusinessException;
 import com.jiayan.quitsmoking.repository.KnowledgeCommentRepository;
 import com.jiayan.quitsmoking.repository.CommentImageRepository;
 import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
 import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.security.UserPrincipal;
 import com.jiayan.quitsmoking.service.KnowledgeCommentService;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 评论服务实现类
@@ -35,7 +44,9 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
     private final KnowledgeCommentRepository commentRepository;
     private final CommentImageRepository commentImageRepository;
     private final KnowledgeArticleRepository articleRepository;
+    private final UserPrincipalService userPrincipalService;
     private final UserRepository userRepository;
+    private final OrderedChildBatchWriter childBatchWriter;
     
     @Override
     public KnowledgeComment createComment(KnowledgeComment comment, List<CommentImage> images) {
@@ -46,8 +57,10 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
                 .orElseThrow(() -> new BusinessException("文章不存在"));
         
         // 验证用户是否存在
-        User user = userRepository.findById(comment.getUserId())
-                .orElseThrow(() -> new BusinessException("用户不存在"));
+        UserPrincipal user = userPrincipalService.loadPrincipal(comment.getUserId());
+        if (user == null) {
+            throw new BusinessException("用户不存在");
+        }
         
         // 验证用户是否有评论权限
         if (!canUserComment(user)) {
@@ -75,15 +88,8 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
         // 保存评论
         KnowledgeComment savedComment = commentRepository.save(comment);
         
-        // 保存评论图片
-        if (images != null && !images.isEmpty()) {
-            for (int i = 0; i < images.size(); i++) {
-                CommentImage image = images.get(i);
-                image.setCommentId(savedComment.getId());
-                image.setSortOrder(i + 1);
-                commentImageRepository.save(image);
-            }
-        }
+        // 批量保存评论图片
+        childBatchWriter.insertCommentImages(savedComment.getId(), images);
         
         log.info("评论创建成功: commentId={}", savedComment.getId());
         return savedComment;
@@ -110,18 +116,9 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
         // 保存评论
         KnowledgeComment updatedComment = commentRepository.save(existingComment);
         
-        // 更新评论图片
+        // 更新评论图片：与现有图片比对，只写变化的部分
         if (images != null) {
-            // 删除旧的图片
-            commentImageRepository.deleteByCommentId(commentId);
-            
-            // 保存新的图片
-            for (int i = 0; i < images.size(); i++) {
-                CommentImage image = images.get(i);
-                image.setCommentId(commentId);
-                image.setSortOrder(i + 1);
-                commentImageRepository.save(image);
-            }
+            childBatchWriter.syncCommentImages(commentId, images);
         }
         
         log.info("评论更新成功: commentId={}", commentId);
@@ -158,16 +155,37 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
         return commentRepository.findByParentIdIsNullAndStatusAndIsDeletedFalseOrderByCreatedAtDesc(CommentStatus.ACTIVE, pageable);
     }
     
+    /**
+     * 一次查询取出文章全部可见评论，内存中按 parentId 组装；
+     * 只对当前页实际展开的评论批量查询图片和用户展示信息
+     */
     @Override
     @Transactional(readOnly = true)
-    public List<KnowledgeComment> getCommentTree(Long articleId) {
-        // 获取顶级评论
-        List<KnowledgeComment> topLevelComments = commentRepository.findByParentIdIsNullAndStatusAndIsDeletedFalseOrderByCreatedAtDesc(CommentStatus.ACTIVE, Pageable.unpaged()).getContent();
+    public Page<CommentResponse> getCommentTree(Long articleId, Pageable pageable, int maxDepth, int maxReplies) {
+        List<KnowledgeComment> comments = commentRepository.findVisibleCommentsByArticleId(articleId, CommentStatus.ACTIVE);
+        
+        // 查询结果按 parentId、创建时间正序，同一父评论下的回复天然有序
+        List<KnowledgeComment> roots = new ArrayList<>();
+        Map<Long, List<KnowledgeComment>> children = new HashMap<>();
+        for (KnowledgeComment comment : comments) {
+            if (comment.getParentId() == null) {
+                roots.add(comment);
+            } else {
+                children.computeIfAbsent(comment.getParentId(), id -> new ArrayList<>()).add(comment);
+            }
+        }
+        Collections.reverse(roots);
+        
+        int from = (int) Math.min(pageable.getOffset(), roots.size());
+        int to = Math.min(from + pageable.getPageSize(), roots.size());
+        List<CommentResponse> included = new ArrayList<>();
+        List<CommentResponse> threads = new ArrayList<>(to - from);
+        for (KnowledgeComment root : roots.subList(from, to)) {
+            threads.add(buildCommentNode(root, children, 0, maxDepth, maxReplies, included));
+        }
+        fillImagesAndAuthors(included);
         
-        // 递归构建评论树
-        return topLevelComments.stream()
-                .map(this::buildCommentTree)
-                .collect(Collectors.toList());
+        return new PageImpl<>(threads, pageable, roots.size());
     }
     
     @Override
@@ -309,8 +327,8 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
         }
         
         // 管理员可以编辑所有评论
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null && Boolean.TRUE.equals(user.getCanCreatePosts())) {
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
+        if (user != null && user.isCanCreatePosts()) {
             return true;
         }
         
@@ -331,8 +349,8 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
         }
         
         // 管理员可以删除所有评论
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null && Boolean.TRUE.equals(user.getCanCreatePosts())) {
+        UserPrincipal user = userPrincipalService.loadPrincipal(userId);
+        if (user != null && user.isCanCreatePosts()) {
             return true;
         }
         
@@ -352,6 +370,21 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
         return commentRepository.countByArticleIdAndStatusAndIsDeletedFalse(articleId, CommentStatus.ACTIVE);
     }
     
+    @Override
+    @Transactional(readOnly = true)
+    public CommentStats getCommentStats(Long articleId) {
+        LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
+        Object[] row = commentRepository.aggregateStatsByArticleId(articleId, CommentStatus.ACTIVE, weekAgo).get(0);
+        long total = toLong(row[0]);
+        long active = toLong(row[1]);
+        return new CommentStats(total, active, total - active, toLong(row[2]), toLong(row[3]), toLong(row[4]));
+    }
+    
+    private static long toLong(Object value) {
+        // 无评论时 SUM 返回 null
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+    
     @Override
     @Transactional(readOnly = true)
     public long getCommentCountByUser(Long userId) {
@@ -461,37 +494,90 @@ public class KnowledgeCommentServiceImpl implements KnowledgeCommentService {
     }
     
     /**
-     * 递归构建评论树
+     * 构建评论节点，递归深度受 maxDepth 限制；已展开的节点收集到 included 中
+     */
+    private CommentResponse buildCommentNode(KnowledgeComment comment, Map<Long, List<KnowledgeComment>> children,
+                                             int depth, int maxDepth, int maxReplies, List<CommentResponse> included) {
+        CommentResponse node = new CommentResponse();
+        node.setId(comment.getId());
+        node.setArticleId(comment.getArticleId());
+        node.setUserId(comment.getUserId());
+        node.setParentId(comment.getParentId());
+        node.setContent(comment.getContent());
+        node.setLikeCount(comment.getLikeCount());
+        node.setIsHelpful(comment.getIsHelpful());
+        node.setStatus(comment.getStatus());
+        node.setCreatedAt(comment.getCreatedAt());
+        node.setUpdatedAt(comment.getUpdatedAt());
+        included.add(node);
+        
+        List<KnowledgeComment> replies = children.getOrDefault(comment.getId(), List.of());
+        node.setReplyCount(replies.size());
+        List<CommentResponse> replyNodes = new ArrayList<>();
+        if (depth < maxDepth) {
+            for (KnowledgeComment reply : replies.subList(0, Math.min(maxReplies, replies.size()))) {
+                replyNodes.add(buildCommentNode(reply, children, depth + 1, maxDepth, maxReplies, included));
+            }
+        }
+        node.setReplies(replyNodes);
+        return node;
+    }
+    
+    /**
+     * 按评论ID、用户ID各一次 IN 查询批量填充图片和作者昵称/头像
      */
-    private KnowledgeComment buildCommentTree(KnowledgeComment comment) {
-        // 获取子评论
-        List<KnowledgeComment> replies = getRepliesByParent(comment.getId());
+    private void fillImagesAndAuthors(List<CommentResponse> nodes) {
+        if (nodes.isEmpty()) {
+            return;
+        }
         
-        // 递归构建子评论树
-        List<KnowledgeComment> replyTree = replies.stream()
-                .map(this::buildCommentTree)
-                .collect(Collectors.toList());
+        Set<Long> commentIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (CommentResponse node : nodes) {
+            commentIds.add(node.getId());
+            userIds.add(node.getUserId());
+        }
         
-        // 设置子评论（这里需要修改实体类或使用DTO）
-        // comment.setReplies(replyTree);
+        Map<Long, List<CommentResponse.CommentImageResponse>> imagesByComment = new HashMap<>();
+        for (CommentImage image : commentImageRepository.findByCommentIdInOrderByCommentIdAscSortOrderAsc(commentIds)) {
+            CommentResponse.CommentImageResponse imageResponse = new CommentResponse.CommentImageResponse();
+            imageResponse.setId(image.getId());
+            imageResponse.setImageUrl(image.getImageUrl());
+            imageResponse.setImageAlt(image.getImageAlt());
+            imageResponse.setImageWidth(image.getImageWidth());
+            imageResponse.setImageHeight(image.getImageHeight());
+            imageResponse.setSortOrder(image.getSortOrder());
+            imagesByComment.computeIfAbsent(image.getCommentId(), id -> new ArrayList<>()).add(imageResponse);
+        }
         
-        return comment;
+        Map<Long, Object[]> authors = new HashMap<>();
+        for (Object[] row : userRepository.findDisplayInfoByIds(userIds)) {
+            authors.put((Long) row[0], row);
+        }
+        
+        for (CommentResponse node : nodes) {
+            node.setImages(imagesByComment.getOrDefault(node.getId(), List.of()));
+            Object[] author = authors.get(node.getUserId());
+            String nickname = author != null ? (String) author[1] : null;
+            node.setUserName(StringUtils.hasText(nickname) ? nickname : "用户" + node.getUserId());
+            node.setUserAvatar(author != null ? (String) author[2] : null);
+        }
     }
     
     /**
      * 检查用户是否有评论权限
      */
-    private boolean canUserComment(User user) {
+    private boolean canUserComment(UserPrincipal user) {
         if (user == null) {
             return false;
         }
         
         // 检查用户是否被禁言
-        if (Boolean.TRUE.equals(user.getForumBanned())) {
+        if (user.isForumBanned()) {
             return false;
         }
         
         // 检查用户是否有发帖权限（有发帖权限的用户通常也有评论权限）
-        return Boolean.TRUE.equals(user.getCanCreatePosts());
+        return user.isCanCreatePosts();
     }
 } 
\ No newline at end of file
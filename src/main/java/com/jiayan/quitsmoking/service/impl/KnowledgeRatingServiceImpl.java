@@ -1,33 +1,56 @@
 package com.jiayan.quitsmoking.service.impl;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.jiayan.quitsmoking.dto.RatingActivity;
+import com.jiayan.quitsmoking.dto.RatingSummary;
+import com.jiayan.quitsmoking.entity.ArticleRatingDaily;
+import com.jiayan.quitsmoking.entity.ArticleRatingStats;
 import com.jiayan.quitsmoking.entity.KnowledgeRating;
 import com.jiayan.quitsmoking.entity.KnowledgeArticle;
 import com.jiayan.quitsmoking.entity.User;
+import com.jiayan.quitsmoking.enums.ArticleStatus;
 import com.jiayan.quitsmoking.exception.BusinessException;
+import com.jiayan.quitsmoking.repository.ArticleRatingDailyRepository;
+import com.jiayan.quitsmoking.repository.ArticleRatingStatsRepository;
 import com.jiayan.quitsmoking.repository.KnowledgeRatingRepository;
 import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
 import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.service.ArticleCacheService;
 import com.jiayan.quitsmoking.service.KnowledgeRatingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * 用户评分服务实现类
+ * 评分统计读路径：内存缓存 -> article_rating_stats 主键点查；
+ * 写路径：与评分写入同一事务内对聚合行、每日汇总做增量更新并同步文章冗余字段，
+ * 提交后失效缓存并更新内存排行榜；定时对账修复偏差
  */
 @Service
 @RequiredArgsConstructor
@@ -35,9 +58,28 @@ import java.util.stream.Collectors;
 @Transactional
 public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
     
+    /**
+     * 评分汇总缓存容量及过期时间（毫秒）
+     */
+    private static final int SUMMARY_CACHE_CAPACITY = 5000;
+    private static final long SUMMARY_CACHE_TIMEOUT = 60 * 1000L;
+    
+    /**
+     * 对账每批处理的文章数
+     */
+    private static final int RECONCILE_BATCH_SIZE = 500;
+    
     private final KnowledgeRatingRepository ratingRepository;
     private final KnowledgeArticleRepository articleRepository;
     private final UserRepository userRepository;
+    private final ArticleRatingStatsRepository ratingStatsRepository;
+    private final ArticleRatingDailyRepository ratingDailyRepository;
+    private final RatingLeaderboard ratingLeaderboard;
+    private final ArticleCacheService articleCacheService;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final LRUCache<Long, RatingSummary> summaryCache =
+            CacheUtil.newLRUCache(SUMMARY_CACHE_CAPACITY, SUMMARY_CACHE_TIMEOUT);
     
     @Override
     public KnowledgeRating createRating(KnowledgeRating rating) {
@@ -67,10 +109,12 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
         // rating.setUpdatedAt(LocalDateTime.now());
         
         // 保存评分
-        KnowledgeRating savedRating = ratingRepository.save(rating);
+        KnowledgeRating savedRating = ratingRepository.saveAndFlush(rating);
         
-        // 更新文章的评分统计
-        updateArticleRatingStats(rating.getArticleId());
+        // 增量更新文章的评分统计
+        long[] bucketDelta = new long[5];
+        bucketDelta[rating.getRating() - 1] = 1;
+        applyRatingDelta(rating.getArticleId(), ratingDate(savedRating), bucketDelta);
         
         log.info("评分创建成功: ratingId={}", savedRating.getId());
         return savedRating;
@@ -91,6 +135,7 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
         }
         
         // 更新评分信息
+        Integer previousRating = existingRating.getRating();
         existingRating.setRating(rating);
         if (StringUtils.hasText(comment)) {
             existingRating.setComment(comment);
@@ -99,10 +144,15 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
         // existingRating.setUpdatedAt(LocalDateTime.now());
         
         // 保存评分
-        KnowledgeRating updatedRating = ratingRepository.save(existingRating);
+        KnowledgeRating updatedRating = ratingRepository.saveAndFlush(existingRating);
         
-        // 更新文章的评分统计
-        updateArticleRatingStats(existingRating.getArticleId());
+        // 分值变化时把旧分值桶移到新分值桶
+        if (!rating.equals(previousRating)) {
+            long[] bucketDelta = new long[5];
+            bucketDelta[previousRating - 1] = -1;
+            bucketDelta[rating - 1] = 1;
+            applyRatingDelta(existingRating.getArticleId(), ratingDate(existingRating), bucketDelta);
+        }
         
         log.info("评分更新成功: ratingId={}", ratingId);
         return updatedRating;
@@ -156,31 +206,38 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
     }
     
     @Override
-    @Transactional(readOnly = true)
     public Double calculateAverageRating(Long articleId) {
-        Double avgRating = ratingRepository.calculateAverageRatingByArticleId(articleId);
-        if (avgRating == null) {
-            return 0.0;
-        }
-        
-        // 保留两位小数
-        BigDecimal bd = BigDecimal.valueOf(avgRating);
-        bd = bd.setScale(2, RoundingMode.HALF_UP);
-        return bd.doubleValue();
+        return getRatingSummary(articleId).getAverageRating();
     }
     
     @Override
-    @Transactional(readOnly = true)
     public Map<Integer, Long> getRatingDistribution(Long articleId) {
-        Map<Integer, Long> distribution = new HashMap<>();
-        
-        // 统计1-5分的数量
-        for (int i = 1; i <= 5; i++) {
-            long count = ratingRepository.countByArticleIdAndRating(articleId, i);
-            distribution.put(i, count);
+        return new HashMap<>(getRatingSummary(articleId).getDistribution());
+    }
+    
+    /**
+     * 聚合行不存在（历史数据或首次访问）时从评分明细初始化一次
+     */
+    @Override
+    public RatingSummary getRatingSummary(Long articleId) {
+        RatingSummary summary = summaryCache.get(articleId, false);
+        if (summary != null) {
+            return summary;
         }
         
-        return distribution;
+        ArticleRatingStats stats = ratingStatsRepository.findById(articleId).orElse(null);
+        if (stats == null) {
+            if (ratingRepository.countByArticleId(articleId) == 0) {
+                summary = RatingSummary.empty(articleId);
+                summaryCache.put(articleId, summary);
+                return summary;
+            }
+            recomputeArticle(articleId, LocalDateTime.now());
+            stats = ratingStatsRepository.findById(articleId).orElse(null);
+        }
+        summary = stats != null ? RatingSummary.of(stats) : RatingSummary.empty(articleId);
+        summaryCache.put(articleId, summary);
+        return summary;
     }
     
     @Override
@@ -232,9 +289,12 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
         }
         
         ratingRepository.delete(rating);
+        ratingRepository.flush();
         
-        // 更新文章的评分统计
-        updateArticleRatingStats(articleId);
+        // 增量更新文章的评分统计
+        long[] bucketDelta = new long[5];
+        bucketDelta[rating.getRating() - 1] = -1;
+        applyRatingDelta(articleId, ratingDate(rating), bucketDelta);
         
         log.info("评分删除成功: articleId={}, userId={}", articleId, userId);
     }
@@ -252,9 +312,8 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
     }
     
     @Override
-    @Transactional(readOnly = true)
     public long getRatingCountByArticle(Long articleId) {
-        return ratingRepository.countByArticleId(articleId);
+        return getRatingSummary(articleId).getTotalRatings();
     }
     
     @Override
@@ -273,12 +332,11 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
     }
     
     @Override
-    @Transactional(readOnly = true)
     public long getRatingCountByArticleAndValue(Long articleId, Integer rating) {
         if (!isValidRating(rating)) {
             throw new BusinessException("评分值无效，必须在1-5之间");
         }
-        return ratingRepository.countByArticleIdAndRating(articleId, rating);
+        return getRatingSummary(articleId).getDistribution().get(rating);
     }
     
     @Override
@@ -288,27 +346,161 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
     
     @Override
     public void updateArticleRatingStats(Long articleId) {
-        log.info("更新文章评分统计: articleId={}", articleId);
+        log.info("重算文章评分统计: articleId={}", articleId);
         
-        // 计算平均评分
-        Double avgRating = calculateAverageRating(articleId);
+        ratingRepository.flush();
+        recomputeArticle(articleId, LocalDateTime.now());
+        ratingStatsRepository.syncArticleRating(List.of(articleId));
+        afterRatingChanged(articleId);
+    }
+    
+    @Scheduled(cron = "${knowledge.rating-reconcile.cron:0 30 3 * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void scheduledReconcile() {
+        reconcileRatingStats();
+    }
+    
+    /**
+     * 按文章ID游标分批比对：每批一次 GROUP BY 统计明细、一次主键批量读取聚合，
+     * 只对存在偏差的文章重算，各批独立提交
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int reconcileRatingStats() {
+        int repaired = 0;
+        int checked = 0;
+        Long lastId = 0L;
+        while (true) {
+            List<Long> articleIds = articleRepository.findIdsAfter(lastId, PageRequest.of(0, RECONCILE_BATCH_SIZE));
+            if (articleIds.isEmpty()) {
+                break;
+            }
+            lastId = articleIds.get(articleIds.size() - 1);
+            checked += articleIds.size();
+            
+            Map<Long, long[]> expected = new HashMap<>();
+            for (Object[] row : ratingRepository.countByArticleIdsGroupByRating(articleIds)) {
+                int rating = ((Number) row[1]).intValue();
+                if (isValidRating(rating)) {
+                    expected.computeIfAbsent((Long) row[0], id -> new long[5])[rating - 1] = ((Number) row[2]).longValue();
+                }
+            }
+            Map<Long, ArticleRatingStats> actual = ratingStatsRepository.findAllById(articleIds).stream()
+                    .collect(Collectors.toMap(ArticleRatingStats::getArticleId, Function.identity()));
+            
+            List<Long> drifted = new ArrayList<>();
+            for (Long articleId : articleIds) {
+                if (hasDrift(expected.get(articleId), actual.get(articleId))) {
+                    drifted.add(articleId);
+                }
+            }
+            
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                drifted.forEach(articleId -> recomputeArticle(articleId, now));
+                // 文章冗余字段与聚合不一致的也一并修复
+                ratingStatsRepository.syncArticleRating(articleIds);
+            });
+            drifted.forEach(summaryCache::remove);
+            repaired += drifted.size();
+        }
         
-        // 获取评分人数
-        long ratingCount = getRatingCountByArticle(articleId);
+        if (repaired > 0) {
+            ratingLeaderboard.reload();
+            log.warn("评分聚合对账完成: checked={}, repaired={}", checked, repaired);
+        } else {
+            log.info("评分聚合对账完成: checked={}, repaired=0", checked);
+        }
+        return repaired;
+    }
+    
+    private static boolean hasDrift(long[] expectedHistogram, ArticleRatingStats stats) {
+        if (stats == null) {
+            // 没有评分的文章允许不建聚合行
+            return expectedHistogram != null;
+        }
+        long[] expected = expectedHistogram != null ? expectedHistogram : new long[5];
+        long[] histogram = stats.getHistogram();
+        long count = 0;
+        long sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            count += histogram[i];
+            sum += (i + 1) * histogram[i];
+        }
+        return !Arrays.equals(expected, histogram)
+                || count != stats.getRatingCount()
+                || sum != stats.getRatingSum();
+    }
+    
+    /**
+     * 在当前事务内对聚合行做增量更新（下标 0 对应 1 分），聚合行不存在时从明细初始化；
+     * 调用前评分明细的变更需已 flush
+     */
+    private void applyRatingDelta(Long articleId, LocalDate ratingDate, long[] bucketDelta) {
+        long countDelta = 0;
+        long sumDelta = 0;
+        for (int i = 0; i < bucketDelta.length; i++) {
+            countDelta += bucketDelta[i];
+            sumDelta += (i + 1) * bucketDelta[i];
+        }
         
-        // 更新文章表
-        KnowledgeArticle article = articleRepository.findById(articleId).orElse(null);
-        if (article != null) {
-            article.setRatingScore(BigDecimal.valueOf(avgRating));
-            article.setRatingCount((int) ratingCount);
-            article.setUpdatedAt(LocalDateTime.now());
-            articleRepository.save(article);
-            
-            log.info("文章评分统计更新成功: articleId={}, avgRating={}, ratingCount={}", 
-                    articleId, avgRating, ratingCount);
+        LocalDateTime now = LocalDateTime.now();
+        int updated = ratingStatsRepository.applyDelta(articleId, countDelta, sumDelta,
+                bucketDelta[0], bucketDelta[1], bucketDelta[2], bucketDelta[3], bucketDelta[4], now);
+        if (updated == 0) {
+            // 明细已包含本次变更，直接全量初始化
+            recomputeArticle(articleId, now);
+        } else if (countDelta != 0 || sumDelta != 0) {
+            ratingDailyRepository.upsertDelta(articleId, ratingDate, countDelta, sumDelta, now);
         }
+        ratingStatsRepository.syncArticleRating(List.of(articleId));
+        afterRatingChanged(articleId);
+    }
+    
+    /**
+     * 从评分明细重算文章的评分聚合和每日汇总
+     */
+    private void recomputeArticle(Long articleId, LocalDateTime now) {
+        ratingStatsRepository.recompute(articleId, now);
+        ratingDailyRepository.deleteByArticleId(articleId);
+        ratingDailyRepository.rebuildForArticle(articleId, now);
+    }
+    
+    /**
+     * 评分归属日期（评分创建日期）
+     */
+    private static LocalDate ratingDate(KnowledgeRating rating) {
+        return rating.getCreatedAt() != null ? rating.getCreatedAt().toLocalDate() : LocalDate.now();
     }
     
+    /**
+     * 读取当前事务内的最新聚合；事务提交后再失效缓存并更新排行榜，
+     * 避免并发读取把未提交前的旧值重新放回缓存
+     */
+    private void afterRatingChanged(Long articleId) {
+        summaryCache.remove(articleId);
+        // 文章响应中包含评分和评分人数
+        articleCacheService.evictAfterCommit(List.of(articleId));
+        long[] countAndSum = ratingStatsRepository.findCountAndSum(articleId).stream()
+                .findFirst()
+                .map(row -> new long[]{((Number) row[0]).longValue(), ((Number) row[1]).longValue()})
+                .orElse(new long[2]);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    summaryCache.remove(articleId);
+                    ratingLeaderboard.update(articleId, countAndSum[0], countAndSum[1]);
+                }
+            });
+        } else {
+            ratingLeaderboard.update(articleId, countAndSum[0], countAndSum[1]);
+        }
+    }
+    
+    /**
+     * 从内存排行榜取候选，再用一次主键查询过滤掉未发布/已删除的文章，不足时扩大候选范围
+     */
     @Override
     @Transactional(readOnly = true)
     public List<Long> getTopRatedArticleIds(int limit) {
@@ -316,10 +508,55 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
             throw new BusinessException("限制数量必须大于0");
         }
         
-        // 使用实际存在的方法，暂时返回空列表
-        return List.of();
+        int candidateSize = limit * 2;
+        while (true) {
+            List<Long> candidates = ratingLeaderboard.top(candidateSize);
+            if (candidates.isEmpty()) {
+                return List.of();
+            }
+            Set<Long> published = new LinkedHashSet<>(
+                    articleRepository.findIdsByIdInAndStatus(candidates, ArticleStatus.PUBLISHED));
+            List<Long> result = candidates.stream()
+                    .filter(published::contains)
+                    .limit(limit)
+                    .toList();
+            if (result.size() >= limit || candidates.size() < candidateSize) {
+                return result;
+            }
+            candidateSize *= 2;
+        }
     }
     
+    @Override
+    public int getRatingPercentile(Long articleId) {
+        return ratingLeaderboard.percentile(articleId);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public RatingActivity getRatingActivity(Long articleId, int days) {
+        if (days <= 0) {
+            throw new BusinessException("天数必须大于0");
+        }
+        
+        LocalDate today = LocalDate.now();
+        LocalDate recentStart = today.minusDays(days - 1);
+        long recent = 0;
+        long previous = 0;
+        for (ArticleRatingDaily daily : ratingDailyRepository.findByArticleIdAndRatingDateBetween(
+                articleId, recentStart.minusDays(days), today)) {
+            if (daily.getRatingDate().isBefore(recentStart)) {
+                previous += daily.getRatingCount();
+            } else {
+                recent += daily.getRatingCount();
+            }
+        }
+        return RatingActivity.of(recent, previous);
+    }
+    
+    /**
+     * 用户评分数量很少，一次按 (user_id, created_at) 索引取出区间内的评分按天求平均；无评分的日期为 0
+     */
     @Override
     @Transactional(readOnly = true)
     public Map<String, Double> getUserRatingTrend(Long userId, int days) {
@@ -327,21 +564,26 @@ public class KnowledgeRatingServiceImpl implements KnowledgeRatingService {
             throw new BusinessException("天数必须大于0");
         }
         
-        Map<String, Double> trend = new HashMap<>();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         
         // 获取最近N天的日期
         LocalDate endDate = LocalDate.now();
         LocalDate startDate = endDate.minusDays(days - 1);
         
-        // 计算每天的评分趋势
+        Map<LocalDate, long[]> daily = new HashMap<>();
+        for (Object[] row : ratingRepository.findUserRatingsSince(userId, startDate.atStartOfDay())) {
+            long[] countAndSum = daily.computeIfAbsent(((LocalDateTime) row[0]).toLocalDate(), d -> new long[2]);
+            countAndSum[0]++;
+            countAndSum[1] += ((Number) row[1]).longValue();
+        }
+        
+        // 按日期顺序输出每天的平均分（保留两位小数）
+        Map<String, Double> trend = new LinkedHashMap<>();
         for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            String dateStr = date.format(formatter);
-            
-            // 使用实际存在的方法，暂时设置为0
-            Double avgRating = 0.0;
-            
-            trend.put(dateStr, avgRating);
+            long[] countAndSum = daily.get(date);
+            double avgRating = countAndSum == null ? 0.0
+                    : Math.round(countAndSum[1] * 100.0 / countAndSum[0]) / 100.0;
+            trend.put(date.format(formatter), avgRating);
         }
         
         return trend;
@@ -0,0 +1,213 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import com.jiayan.quitsmoking.entity.CommentImage;
+import com.jiayan.quitsmoking.entity.KnowledgeContentBlock;
+import com.jiayan.quitsmoking.repository.CommentImageRepository;
+import com.jiayan.quitsmoking.repository.KnowledgeContentBlockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * 有序子记录（文章内容块、评论图片）批量写入器
+ * 按位置与现有记录比对：内容相同的跳过，不同的原地更新（由 Hibernate 按 jdbc.batch_size 批量提交），
+ * 多出的新记录用 JDBC 批量插入（IDENTITY 主键下 Hibernate 无法批量插入，配合 rewriteBatchedStatements 合并为多行 INSERT），
+ * 多余的旧记录按ID一次删除；图片较多的文章保存只需少量往返
+ * 注意：批量插入的新记录不回填主键
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderedChildBatchWriter {
+
+    private static final String INSERT_CONTENT_BLOCK_SQL =
+            "INSERT INTO knowledge_content_blocks (article_id, block_type, content_order, text_content, "
+                    + "image_url, image_alt, image_width, image_height) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_COMMENT_IMAGE_SQL =
+            "INSERT INTO comment_images (comment_id, image_url, image_alt, image_width, image_height, "
+                    + "sort_order, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final KnowledgeContentBlockRepository contentBlockRepository;
+    private final CommentImageRepository commentImageRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 新建文章的内容块，顺序号按列表位置从 1 开始
+     */
+    public void insertContentBlocks(Long articleId, List<KnowledgeContentBlock> blocks) {
+        if (blocks == null || blocks.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            blocks.get(i).setArticleId(articleId);
+            blocks.get(i).setContentOrder(i + 1);
+        }
+        batchInsertContentBlocks(blocks);
+    }
+
+    /**
+     * 将文章内容块同步为给定列表（按位置比对，只写变化的部分）
+     */
+    public void syncContentBlocks(Long articleId, List<KnowledgeContentBlock> blocks) {
+        for (int i = 0; i < blocks.size(); i++) {
+            blocks.get(i).setArticleId(articleId);
+            blocks.get(i).setContentOrder(i + 1);
+        }
+        List<KnowledgeContentBlock> existing = contentBlockRepository.findByArticleIdOrderByContentOrderAsc(articleId);
+        Diff<KnowledgeContentBlock> diff = diff(existing, blocks,
+                OrderedChildBatchWriter::sameContentBlock, OrderedChildBatchWriter::copyContentBlock);
+
+        if (!diff.deletes().isEmpty()) {
+            contentBlockRepository.deleteAllByIdInBatch(diff.deletes().stream().map(KnowledgeContentBlock::getId).toList());
+        }
+        batchInsertContentBlocks(diff.inserts());
+        log.debug("同步内容块: articleId={}, updated={}, inserted={}, deleted={}",
+                articleId, diff.updated(), diff.inserts().size(), diff.deletes().size());
+    }
+
+    /**
+     * 新建评论的图片，排序号按列表位置从 1 开始
+     */
+    public void insertCommentImages(Long commentId, List<CommentImage> images) {
+        if (images == null || images.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < images.size(); i++) {
+            images.get(i).setCommentId(commentId);
+            images.get(i).setSortOrder(i + 1);
+        }
+        batchInsertCommentImages(images);
+    }
+
+    /**
+     * 将评论图片同步为给定列表（按位置比对，只写变化的部分）
+     */
+    public void syncCommentImages(Long commentId, List<CommentImage> images) {
+        for (int i = 0; i < images.size(); i++) {
+            images.get(i).setCommentId(commentId);
+            images.get(i).setSortOrder(i + 1);
+        }
+        List<CommentImage> existing = commentImageRepository.findByCommentIdOrderBySortOrderAsc(commentId);
+        Diff<CommentImage> diff = diff(existing, images,
+                OrderedChildBatchWriter::sameCommentImage, OrderedChildBatchWriter::copyCommentImage);
+
+        if (!diff.deletes().isEmpty()) {
+            commentImageRepository.deleteAllByIdInBatch(diff.deletes().stream().map(CommentImage::getId).toList());
+        }
+        batchInsertCommentImages(diff.inserts());
+        log.debug("同步评论图片: commentId={}, updated={}, inserted={}, deleted={}",
+                commentId, diff.updated(), diff.inserts().size(), diff.deletes().size());
+    }
+
+    /**
+     * 比对结果：待插入的新记录、待删除的旧记录、已原地更新的记录数
+     */
+    private record Diff<T>(List<T> inserts, List<T> deletes, int updated) {
+    }
+
+    /**
+     * 按位置比对；existing 为当前事务中的托管实体，原地修改后由脏检查在刷新时批量 UPDATE
+     */
+    private static <T> Diff<T> diff(List<T> existing, List<T> desired,
+                                    BiPredicate<T, T> sameContent, BiConsumer<T, T> copyContent) {
+        int common = Math.min(existing.size(), desired.size());
+        int updated = 0;
+        for (int i = 0; i < common; i++) {
+            T current = existing.get(i);
+            T target = desired.get(i);
+            if (!sameContent.test(current, target)) {
+                copyContent.accept(target, current);
+                updated++;
+            }
+        }
+        List<T> inserts = new ArrayList<>(desired.subList(common, desired.size()));
+        List<T> deletes = new ArrayList<>(existing.subList(common, existing.size()));
+        return new Diff<>(inserts, deletes, updated);
+    }
+
+    private void batchInsertContentBlocks(List<KnowledgeContentBlock> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(blocks.size());
+        for (KnowledgeContentBlock b : blocks) {
+            rows.add(new Object[]{
+                    b.getArticleId(),
+                    b.getBlockType() != null ? b.getBlockType().name() : null,
+                    b.getContentOrder(),
+                    b.getTextContent(),
+                    b.getImageUrl(),
+                    b.getImageAlt(),
+                    b.getImageWidth(),
+                    b.getImageHeight()
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_CONTENT_BLOCK_SQL, rows);
+    }
+
+    private void batchInsertCommentImages(List<CommentImage> images) {
+        if (images.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(images.size());
+        for (CommentImage image : images) {
+            rows.add(new Object[]{
+                    image.getCommentId(),
+                    image.getImageUrl(),
+                    image.getImageAlt(),
+                    image.getImageWidth(),
+                    image.getImageHeight(),
+                    image.getSortOrder(),
+                    now
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_COMMENT_IMAGE_SQL, rows);
+    }
+
+    private static boolean sameContentBlock(KnowledgeContentBlock a, KnowledgeContentBlock b) {
+        return a.getBlockType() == b.getBlockType()
+                && Objects.equals(a.getContentOrder(), b.getContentOrder())
+                && Objects.equals(a.getTextContent(), b.getTextContent())
+                && Objects.equals(a.getImageUrl(), b.getImageUrl())
+                && Objects.equals(a.getImageAlt(), b.getImageAlt())
+                && Objects.equals(a.getImageWidth(), b.getImageWidth())
+                && Objects.equals(a.getImageHeight(), b.getImageHeight());
+    }
+
+    private static void copyContentBlock(KnowledgeContentBlock from, KnowledgeContentBlock to) {
+        to.setBlockType(from.getBlockType());
+        to.setContentOrder(from.getContentOrder());
+        to.setTextContent(from.getTextContent());
+        to.setImageUrl(from.getImageUrl());
+        to.setImageAlt(from.getImageAlt());
+        to.setImageWidth(from.getImageWidth());
+        to.setImageHeight(from.getImageHeight());
+    }
+
+    private static boolean sameCommentImage(CommentImage a, CommentImage b) {
+        return Objects.equals(a.getSortOrder(), b.getSortOrder())
+                && Objects.equals(a.getImageUrl(), b.getImageUrl())
+                && Objects.equals(a.getImageAlt(), b.getImageAlt())
+                && Objects.equals(a.getImageWidth(), b.getImageWidth())
+                && Objects.equals(a.getImageHeight(), b.getImageHeight());
+    }
+
+    private static void copyCommentImage(CommentImage from, CommentImage to) {
+        to.setSortOrder(from.getSortOrder());
+        to.setImageUrl(from.getImageUrl());
+        to.setImageAlt(from.getImageAlt());
+        to.setImageWidth(from.getImageWidth());
+        to.setImageHeight(from.getImageHeight());
+    }
+}
@@ -0,0 +1,165 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import com.jiayan.quitsmoking.entity.ArticleRatingStats;
+import com.jiayan.quitsmoking.repository.ArticleRatingStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 文章评分排行榜（内存有序集合）
+ * 按贝叶斯加权分排序：score = (C * m + 总分) / (C + 评分人数)，m 为全站平均分、C 为先验权重，
+ * 避免评分人数很少的文章靠一两个满分排到前面；评分变更提交后单篇更新 O(log n)，
+ * 先验均值随定时全量重载刷新（同时修复与聚合表的偏差）
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RatingLeaderboard {
+
+    private static final Comparator<Ranked> ORDER = Comparator.comparingDouble(Ranked::score).reversed()
+            .thenComparing(Comparator.comparingLong(Ranked::count).reversed())
+            .thenComparing(Ranked::articleId);
+
+    @Value("${knowledge.rating-rank.prior-weight:10}")
+    private double priorWeight;
+
+    private final ArticleRatingStatsRepository ratingStatsRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Ranked> entries = new HashMap<>();
+    private final TreeSet<Ranked> ranking = new TreeSet<>(ORDER);
+
+    private double priorMean;
+
+    /**
+     * 排行项
+     */
+    private record Ranked(Long articleId, long count, long sum, double score) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("启动时加载评分排行榜失败", e);
+        }
+    }
+
+    /**
+     * 从评分聚合表全量重载，并按当前全站平均分重新计算加权分
+     */
+    @Scheduled(initialDelayString = "${knowledge.rating-rank.reload-interval-ms:600000}",
+               fixedDelayString = "${knowledge.rating-rank.reload-interval-ms:600000}")
+    public void reload() {
+        // 持锁读取，避免重载期间提交的单篇更新被旧数据覆盖；聚合表每篇文章一行，读取很快
+        lock.writeLock().lock();
+        try {
+            List<ArticleRatingStats> all = ratingStatsRepository.findAll();
+            long totalCount = 0;
+            long totalSum = 0;
+            for (ArticleRatingStats stats : all) {
+                totalCount += stats.getRatingCount();
+                totalSum += stats.getRatingSum();
+            }
+            priorMean = totalCount > 0 ? (double) totalSum / totalCount : 0;
+
+            entries.clear();
+            ranking.clear();
+            for (ArticleRatingStats stats : all) {
+                put(stats.getArticleId(), stats.getRatingCount(), stats.getRatingSum());
+            }
+            log.info("评分排行榜加载完成，文章数: {}, 全站平均分: {}", entries.size(), String.format("%.2f", priorMean));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 更新单篇文章的评分人数和总分（评分人数为 0 时移出排行）
+     */
+    public void update(Long articleId, long count, long sum) {
+        lock.writeLock().lock();
+        try {
+            put(articleId, count, sum);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按加权分从高到低返回前 limit 篇文章ID
+     */
+    public List<Long> top(int limit) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(Math.min(limit, ranking.size()));
+            for (Ranked ranked : ranking) {
+                if (ids.size() >= limit) {
+                    break;
+                }
+                ids.add(ranked.articleId());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 文章加权分在全部已评分文章中的百分位（0-100，越高越靠前）；未评分返回 0
+     */
+    public int percentile(Long articleId) {
+        lock.readLock().lock();
+        try {
+            Ranked ranked = entries.get(articleId);
+            if (ranked == null) {
+                return 0;
+            }
+            int size = ranking.size();
+            if (size == 1) {
+                return 100;
+            }
+            int better = ranking.headSet(ranked).size();
+            return (int) Math.round((size - 1 - better) * 100.0 / (size - 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Long articleId, long count, long sum) {
+        Ranked previous = entries.remove(articleId);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        if (count <= 0) {
+            return;
+        }
+        Ranked ranked = new Ranked(articleId, count, sum, (priorWeight * priorMean + sum) / (priorWeight + count));
+        entries.put(articleId, ranked);
+        ranking.add(ranked);
+    }
+}
@@ -2,29 +2,40 @@ package com.jiayan.quitsmoking.service.impl;
 
 import com.jiayan.quitsmoking.dto.CreateSmokingRecordRequest;
 import com.jiayan.quitsmoking.dto.CreateTrainingRecordRequest;
+import com.jiayan.quitsmoking.dto.CursorPageResponse;
 import com.jiayan.quitsmoking.dto.SmokingRecordResponse;
 import com.jiayan.quitsmoking.dto.TrainingRecordResponse;
 import com.jiayan.quitsmoking.entity.SmokingRecord;
-import com.jiayan.quitsmoking.entity.User;
 import com.jiayan.quitsmoking.enums.ErrorCode;
 import com.jiayan.quitsmoking.enums.RecordType;
 import com.jiayan.quitsmoking.exception.BusinessException;
 import com.jiayan.quitsmoking.repository.SmokingRecordRepository;
-import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.service.DailyRecordCounterService;
 import com.jiayan.quitsmoking.service.SmokingRecordService;
+import com.jiayan.quitsmoking.service.SmokingStatisticsService;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
 import com.jiayan.quitsmoking.util.TimeZoneUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 吸烟记录服务实现类
@@ -34,8 +45,18 @@ import java.util.stream.Collectors;
 @Slf4j
 public class SmokingRecordServiceImpl implements SmokingRecordService {
     
+    /**
+     * 游标分页每页最大条数
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    
     private final SmokingRecordRepository smokingRecordRepository;
-    private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
+    private final DailyRecordCounterService dailyRecordCounterService;
+    private final SmokingStatisticsService smokingStatisticsService;
+    private final SmokingRecordWriteBehindBuffer writeBehindBuffer;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
     
     @Override
     @Transactional
@@ -43,8 +64,7 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         log.info("创建吸烟记录，用户ID: {}, 请求: {}", userId, request);
         
         // 验证用户是否存在
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND.getCode(), "用户不存在"));
+        ensureUserExists(userId);
         
         SmokingRecord record = new SmokingRecord();
         record.setUserId(userId);
@@ -53,7 +73,19 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         record.setCigaretteCount(request.getCigaretteCount());
         record.setNote(request.getNote());
         
-        SmokingRecord savedRecord = smokingRecordRepository.save(record);
+        if (writeBehindBuffer.isEnabled()) {
+            // 异步批量写入：入队即返回，记录ID在落库后分配
+            record.setCreatedAt(TimeZoneUtil.getCurrentBeijingTime());
+            writeBehindBuffer.submit(record);
+            log.info("吸烟记录已提交异步写入，用户ID: {}", userId);
+            SmokingRecordResponse response = SmokingRecordResponse.fromEntity(record);
+            response.setPending(true);
+            return response;
+        }
+        
+        SmokingRecord savedRecord = smokingRecordRepository.saveAndFlush(record);
+        dailyRecordCounterService.onRecordCreated(savedRecord);
+        smokingStatisticsService.onRecordChanged(userId, savedRecord.getTimestamp());
         log.info("吸烟记录创建成功，ID: {}", savedRecord.getId());
         
         return SmokingRecordResponse.fromEntity(savedRecord);
@@ -65,8 +97,7 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         log.info("创建训练记录，用户ID: {}, 请求: {}", userId, request);
         
         // 验证用户是否存在
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND.getCode(), "用户不存在"));
+        ensureUserExists(userId);
         
         SmokingRecord record = new SmokingRecord();
         record.setUserId(userId);
@@ -77,7 +108,19 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         record.setCompleted(request.getCompleted());
         record.setNote(request.getNote());
         
-        SmokingRecord savedRecord = smokingRecordRepository.save(record);
+        if (writeBehindBuffer.isEnabled()) {
+            // 异步批量写入：入队即返回，记录ID在落库后分配
+            record.setCreatedAt(TimeZoneUtil.getCurrentBeijingTime());
+            writeBehindBuffer.submit(record);
+            log.info("训练记录已提交异步写入，用户ID: {}", userId);
+            TrainingRecordResponse response = TrainingRecordResponse.fromEntity(record);
+            response.setPending(true);
+            return response;
+        }
+        
+        SmokingRecord savedRecord = smokingRecordRepository.saveAndFlush(record);
+        dailyRecordCounterService.onRecordCreated(savedRecord);
+        smokingStatisticsService.onRecordChanged(userId, savedRecord.getTimestamp());
         log.info("训练记录创建成功，ID: {}", savedRecord.getId());
         
         return TrainingRecordResponse.fromEntity(savedRecord);
@@ -106,13 +149,17 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         return recordPage.map(SmokingRecordResponse::fromEntity);
     }
     
+    @Override
+    public CursorPageResponse<SmokingRecordResponse> getUserSmokingRecordsByCursor(Long userId, String cursor, int limit) {
+        log.info("游标分页获取用户吸烟记录，用户ID: {}, 游标: {}, 大小: {}", userId, cursor, limit);
+        return findPageByCursor(userId, RecordType.SMOKING, cursor, limit, SmokingRecordResponse::fromEntity);
+    }
+    
     @Override
     public List<SmokingRecordResponse> getUserSmokingRecordsByDate(Long userId, LocalDate date) {
         log.info("获取用户指定日期吸烟记录，用户ID: {}, 日期: {}", userId, date);
 
-        List<SmokingRecord> records = smokingRecordRepository
-                .findByUserIdAndRecordTypeAndCreatedAtBetween(
-                        userId, RecordType.SMOKING, date, date.plusDays(1));
+        List<SmokingRecord> records = findRecordsOfBeijingDay(userId, RecordType.SMOKING, date);
 
         return records.stream()
                 .map(SmokingRecordResponse::fromEntity)
@@ -142,16 +189,43 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         return recordPage.map(TrainingRecordResponse::fromEntity);
     }
     
+    @Override
+    public CursorPageResponse<TrainingRecordResponse> getUserTrainingRecordsByCursor(Long userId, String cursor, int limit) {
+        log.info("游标分页获取用户训练记录，用户ID: {}, 游标: {}, 大小: {}", userId, cursor, limit);
+        return findPageByCursor(userId, RecordType.TRAINING, cursor, limit, TrainingRecordResponse::fromEntity);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUserRecords(Long userId, RecordType recordType, OutputStream outputStream) throws IOException {
+        log.info("流式导出用户记录，用户ID: {}, 类型: {}", userId, recordType);
+        
+        Function<SmokingRecord, Object> mapper = recordType == RecordType.TRAINING
+                ? TrainingRecordResponse::fromEntity
+                : SmokingRecordResponse::fromEntity;
+        
+        long exported = 0;
+        try (Stream<SmokingRecord> records = smokingRecordRepository.streamByUserIdAndRecordType(userId, recordType)) {
+            Iterator<SmokingRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                SmokingRecord record = iterator.next();
+                outputStream.write(objectMapper.writeValueAsBytes(mapper.apply(record)));
+                outputStream.write('\n');
+                // 逐条从持久化上下文中移除，避免长历史用户的实体在会话中堆积
+                entityManager.detach(record);
+                exported++;
+            }
+        }
+        outputStream.flush();
+        
+        log.info("用户 {} 记录导出完成，类型: {}, 数量: {}", userId, recordType, exported);
+    }
+    
     @Override
     public List<TrainingRecordResponse> getUserTrainingRecordsByDate(Long userId, LocalDate date) {
         log.info("获取用户指定日期训练记录，用户ID: {}, 日期: {}", userId, date);
 
-        LocalDateTime startTime = date.atStartOfDay();
-        LocalDateTime endTime = date.atTime(LocalTime.MAX);
-
-        List<SmokingRecord> records = smokingRecordRepository
-                .findByUserIdAndRecordTypeAndCreatedAtBetween(
-                        userId, RecordType.TRAINING, date, date.plusDays(1));
+        List<SmokingRecord> records = findRecordsOfBeijingDay(userId, RecordType.TRAINING, date);
 
         return records.stream()
                 .map(TrainingRecordResponse::fromEntity)
@@ -163,7 +237,7 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         log.info("统计用户今日吸烟次数，用户ID: {}", userId);
         
         try {
-            Long count = smokingRecordRepository.countTodaySmokingRecordsByUserId(userId);
+            Long count = dailyRecordCounterService.getTodayCount(userId, RecordType.SMOKING);
             log.info("用户 {} 今日吸烟次数: {}", userId, count);
             return count;
         } catch (Exception e) {
@@ -177,7 +251,7 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         log.info("统计用户今日训练次数，用户ID: {}", userId);
         
         try {
-            Long count = smokingRecordRepository.countTodayTrainingRecordsByUserId(userId);
+            Long count = dailyRecordCounterService.getTodayCount(userId, RecordType.TRAINING);
             log.info("用户 {} 今日训练次数: {}", userId, count);
             return count;
         } catch (Exception e) {
@@ -251,6 +325,9 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         }
         
         smokingRecordRepository.delete(record);
+        smokingRecordRepository.flush();
+        dailyRecordCounterService.onRecordDeleted(record);
+        smokingStatisticsService.onRecordChanged(userId, record.getTimestamp());
         log.info("吸烟记录删除成功，ID: {}", recordId);
     }
     
@@ -271,6 +348,82 @@ public class SmokingRecordServiceImpl implements SmokingRecordService {
         }
         
         smokingRecordRepository.delete(record);
+        smokingRecordRepository.flush();
+        dailyRecordCounterService.onRecordDeleted(record);
+        smokingStatisticsService.onRecordChanged(userId, record.getTimestamp());
         log.info("训练记录删除成功，ID: {}", recordId);
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 校验用户是否存在，复用认证过滤器在本次请求中已加载的用户快照缓存
+     */
+    private void ensureUserExists(Long userId) {
+        if (userPrincipalService.loadPrincipal(userId) == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND.getCode(), "用户不存在");
+        }
+    }
+    
+    /**
+     * 查询北京时间某一天的记录：timestamp 以UTC存储，因此把北京日转换为UTC的 [start, end) 区间
+     */
+    private List<SmokingRecord> findRecordsOfBeijingDay(Long userId, RecordType recordType, LocalDate date) {
+        return smokingRecordRepository.findByUserIdAndRecordTypeInTimeRange(userId, recordType,
+                TimeZoneUtil.getUTCStartOfBeijingDay(date),
+                TimeZoneUtil.getUTCStartOfBeijingDay(date.plusDays(1)));
+    }
+    
+    /**
+     * 按 (timestamp, id) 游标读取下一页，多取一条用于判断是否还有更多数据
+     */
+    private <T> CursorPageResponse<T> findPageByCursor(Long userId, RecordType recordType, String cursor,
+                                                       int limit, Function<SmokingRecord, T> mapper) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE));
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        
+        List<SmokingRecord> records;
+        if (cursor == null || cursor.isBlank()) {
+            records = smokingRecordRepository.findFirstPage(userId, recordType, pageable);
+        } else {
+            String[] position = decodeCursor(cursor);
+            records = smokingRecordRepository.findPageAfterCursor(userId, recordType,
+                    LocalDateTime.parse(position[0]), Long.valueOf(position[1]), pageable);
+        }
+        
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = records.subList(0, pageSize);
+        }
+        
+        String nextCursor = null;
+        if (hasMore) {
+            SmokingRecord last = records.get(records.size() - 1);
+            nextCursor = encodeCursor(last.getTimestamp(), last.getId());
+        }
+        
+        List<T> content = records.stream().map(mapper).collect(Collectors.toList());
+        return new CursorPageResponse<>(content, nextCursor, hasMore);
+    }
+    
+    /**
+     * 游标格式：Base64URL("UTC时间|记录ID")
+     */
+    private String encodeCursor(LocalDateTime timestamp, Long id) {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] position = raw.split("\\|");
+            if (position.length != 2) {
+                throw new IllegalArgumentException(raw);
+            }
+            LocalDateTime.parse(position[0]);
+            Long.valueOf(position[1]);
+            return position;
+        } catch (RuntimeException e) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST.getCode(), "无效的分页游标");
+        }
+    }
+}
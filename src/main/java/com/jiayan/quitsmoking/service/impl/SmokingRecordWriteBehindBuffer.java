@@ -0,0 +1,413 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jiayan.quitsmoking.entity.SmokingRecord;
+import com.jiayan.quitsmoking.repository.SmokingRecordRepository;
+import com.jiayan.quitsmoking.service.DailyRecordCounterService;
+import com.jiayan.quitsmoking.service.SmokingStatisticsService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 吸烟/训练记录异步批量写入缓冲区（write-behind）
+ * 开启后记录先进入有界内存队列，由后台线程按批次 JDBC batch 插入；
+ * 队列已满（数据库变慢）时记录追加到本地溢出文件，数据库恢复后自动回放。
+ * 整批写入失败时：数据库不可用则整批写入溢出文件等待回放；否则逐条重试，
+ * 单条失败的记录带着失败次数写回溢出文件，达到上限后移到 .bad 文件，不会拖累同批的其他记录
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SmokingRecordWriteBehindBuffer {
+
+    /**
+     * 溢出文件回放的最小间隔（毫秒）
+     */
+    private static final long SPILL_REPLAY_INTERVAL = 30 * 1000L;
+
+    /**
+     * 单条记录（数据库可用时）写入失败的最大次数，达到后移到 .bad 文件
+     */
+    private static final int MAX_RECORD_ATTEMPTS = 3;
+
+    @Value("${records.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${records.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${records.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${records.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${records.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${records.write-behind.spill-path:data/record-spill.ndjson}")
+    private String spillPath;
+
+    private final SmokingRecordRepository smokingRecordRepository;
+    private final DailyRecordCounterService dailyRecordCounterService;
+    private final SmokingStatisticsService smokingStatisticsService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper spillMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final Object spillLock = new Object();
+
+    private BlockingQueue<SmokingRecord> queue;
+    private Thread flushThread;
+    private volatile boolean running;
+    private long lastReplayTime;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        flushThread = new Thread(this::flushLoop, "record-write-behind");
+        flushThread.setDaemon(true);
+        flushThread.start();
+        log.info("记录异步批量写入已开启，队列容量: {}, 批次大小: {}", queueCapacity, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+
+        running = false;
+        flushThread.interrupt();
+        try {
+            flushThread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 停机前尽量落库，失败则写入溢出文件
+        List<SmokingRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flushBatch(toEntries(remaining));
+        }
+        log.info("记录异步批量写入已停止");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交记录；队列在等待时间内仍无空位时写入溢出文件，保证记录不丢失
+     */
+    public void submit(SmokingRecord record) {
+        try {
+            if (queue.offer(record, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        log.warn("记录写入队列已满，写入溢出文件，用户ID: {}", record.getUserId());
+        spill(List.of(new SpillEntry(0, record)));
+    }
+
+    private void flushLoop() {
+        List<SmokingRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                SmokingRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpillFileIfDue();
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flushBatch(toEntries(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("记录批量写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 单事务批量插入记录并合并更新每日计数与统计
+     *
+     * @return 成功写入的记录数；数据库不可用（整批已写入溢出文件）时返回 -1
+     */
+    private int flushBatch(List<SpillEntry> batch) {
+        try {
+            insert(batch);
+            log.debug("批量写入记录成功，数量: {}", batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            // 回滚后实体上可能残留已分配的ID，清空后重新作为新记录保存
+            batch.forEach(entry -> entry.record().setId(null));
+            if (isDatabaseUnavailable(e)) {
+                log.error("数据库不可用，整批写入溢出文件，数量: {}", batch.size(), e);
+                spill(batch);
+                return -1;
+            }
+            if (batch.size() == 1) {
+                handleRecordFailure(batch.get(0), e);
+                return 0;
+            }
+            log.warn("批量写入记录失败，改为逐条写入，数量: {}", batch.size(), e);
+        }
+
+        int written = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            SpillEntry entry = batch.get(i);
+            try {
+                insert(List.of(entry));
+                written++;
+            } catch (Exception e) {
+                entry.record().setId(null);
+                if (isDatabaseUnavailable(e)) {
+                    log.error("数据库不可用，剩余记录写入溢出文件，数量: {}", batch.size() - i, e);
+                    spill(batch.subList(i, batch.size()));
+                    return written > 0 ? written : -1;
+                }
+                handleRecordFailure(entry, e);
+            }
+        }
+        return written;
+    }
+
+    private void insert(List<SpillEntry> entries) {
+        List<SmokingRecord> records = entries.stream().map(SpillEntry::record).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            smokingRecordRepository.saveAll(records);
+            smokingRecordRepository.flush();
+            dailyRecordCounterService.onRecordsCreated(records);
+            smokingStatisticsService.onRecordsChanged(records);
+        });
+    }
+
+    /**
+     * 单条记录写入失败（数据本身的问题，如约束冲突、字段超长）：未达上限时计数后写回溢出文件，否则移到 .bad 文件
+     */
+    private void handleRecordFailure(SpillEntry entry, Exception e) {
+        SpillEntry failed = new SpillEntry(entry.attempts() + 1, entry.record());
+        if (failed.attempts() < MAX_RECORD_ATTEMPTS) {
+            log.warn("记录写入失败，第 {} 次，写回溢出文件，用户ID: {}", failed.attempts(), entry.record().getUserId(), e);
+            spill(List.of(failed));
+            return;
+        }
+        log.error("记录写入失败已达 {} 次，移到 .bad 文件，用户ID: {}", failed.attempts(), entry.record().getUserId(), e);
+        try {
+            appendBadLine(spillMapper.writeValueAsString(failed));
+        } catch (IOException ioe) {
+            log.error("写入 .bad 文件失败，丢失记录，用户ID: {}", entry.record().getUserId(), ioe);
+        }
+    }
+
+    /**
+     * 连接、事务创建失败或死锁等暂时性错误：与记录内容无关，不计入单条失败次数
+     */
+    private static boolean isDatabaseUnavailable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<SpillEntry> toEntries(List<SmokingRecord> records) {
+        return records.stream().map(record -> new SpillEntry(0, record)).toList();
+    }
+
+    private void spill(List<SpillEntry> entries) {
+        synchronized (spillLock) {
+            Path path = Paths.get(spillPath);
+            try {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                try (FileOutputStream out = new FileOutputStream(path.toFile(), true)) {
+                    for (SpillEntry entry : entries) {
+                        out.write(spillMapper.writeValueAsBytes(entry));
+                        out.write('\n');
+                    }
+                    out.getChannel().force(false);
+                }
+            } catch (IOException e) {
+                log.error("写入记录溢出文件失败，丢失记录数量: {}", entries.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 队列空闲时回放溢出文件；先原子改名再读取，回放期间的新溢出写入新文件。
+     * 每处理完一批记录已处理行数到进度文件，中途失败下次从断点继续，已写入的记录不会重复回放
+     * （仅在批次提交与进度写入之间崩溃时会重复一批）；无法解析的行移到 .bad 文件。
+     * 数据库不可用时本轮剩余记录原样写回溢出文件，等下一轮回放
+     */
+    private void replaySpillFileIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastReplayTime < SPILL_REPLAY_INTERVAL) {
+            return;
+        }
+        lastReplayTime = now;
+
+        Path path = Paths.get(spillPath);
+        Path replayPath = Paths.get(spillPath + ".replay");
+        Path progressPath = Paths.get(spillPath + ".replay.progress");
+        try {
+            synchronized (spillLock) {
+                if (!Files.exists(replayPath)) {
+                    if (!Files.exists(path)) {
+                        return;
+                    }
+                    // 上一个回放文件已处理完，残留的进度不属于新文件
+                    Files.deleteIfExists(progressPath);
+                    Files.move(path, replayPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            long processedLines = readReplayProgress(progressPath);
+            log.info("开始回放记录溢出文件: {}, 跳过已处理行数: {}", replayPath, processedLines);
+            int replayed = 0;
+            boolean failed = false;
+            long lineNumber = 0;
+            List<SpillEntry> batch = new ArrayList<>(batchSize);
+            try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (lineNumber <= processedLines || line.isBlank()) {
+                        continue;
+                    }
+                    SpillEntry entry;
+                    try {
+                        entry = readSpillEntry(line);
+                    } catch (JsonProcessingException e) {
+                        // 溢出写入中途崩溃可能留下截断的行
+                        log.warn("记录溢出文件第 {} 行无法解析，移到 .bad 文件", lineNumber, e);
+                        appendBadLine(line);
+                        continue;
+                    }
+                    entry.record().setId(null);
+                    batch.add(entry);
+                    if (batch.size() >= batchSize) {
+                        if (failed) {
+                            spill(batch);
+                        } else {
+                            // 数据库不可用时 flushBatch 已把本批写回溢出文件，剩余记录不再尝试直接写入
+                            int written = flushBatch(batch);
+                            failed = written < 0;
+                            replayed += Math.max(written, 0);
+                        }
+                        writeReplayProgress(progressPath, lineNumber);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                if (failed) {
+                    spill(batch);
+                } else {
+                    replayed += Math.max(flushBatch(batch), 0);
+                }
+            }
+            writeReplayProgress(progressPath, lineNumber);
+
+            // 先删回放文件再删进度：两步之间崩溃时，下次改名新文件前会清掉残留进度
+            Files.delete(replayPath);
+            Files.deleteIfExists(progressPath);
+            log.info("记录溢出文件回放完成，成功写入: {}", replayed);
+        } catch (IOException e) {
+            log.error("回放记录溢出文件失败: {}", replayPath, e);
+        }
+    }
+
+    /**
+     * 解析溢出文件的一行；兼容旧格式（整行即记录，失败次数为 0）
+     */
+    private SpillEntry readSpillEntry(String line) throws JsonProcessingException {
+        JsonNode node = spillMapper.readTree(line);
+        if (node.has("record")) {
+            return spillMapper.treeToValue(node, SpillEntry.class);
+        }
+        return new SpillEntry(0, spillMapper.treeToValue(node, SmokingRecord.class));
+    }
+
+    private long readReplayProgress(Path progressPath) throws IOException {
+        if (!Files.exists(progressPath)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(progressPath, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            log.warn("回放进度文件内容无效，从头回放: {}", progressPath);
+            return 0;
+        }
+    }
+
+    /**
+     * 写临时文件后原子替换，崩溃时不会留下半个进度
+     */
+    private void writeReplayProgress(Path progressPath, long processedLines) throws IOException {
+        Path temp = Paths.get(progressPath + ".tmp");
+        Files.writeString(temp, Long.toString(processedLines), StandardCharsets.UTF_8);
+        Files.move(temp, progressPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void appendBadLine(String line) throws IOException {
+        Files.writeString(Paths.get(spillPath + ".bad"), line + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 溢出文件中的一行：记录及其在数据库可用时已写入失败的次数
+     */
+    private record SpillEntry(int attempts, SmokingRecord record) {
+    }
+}
@@ -0,0 +1,287 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import com.jiayan.quitsmoking.dto.SmokingStatisticsResponse;
+import com.jiayan.quitsmoking.entity.DailySmokingStat;
+import com.jiayan.quitsmoking.entity.SmokingRecord;
+import com.jiayan.quitsmoking.enums.ErrorCode;
+import com.jiayan.quitsmoking.enums.StatisticsGranularity;
+import com.jiayan.quitsmoking.exception.BusinessException;
+import com.jiayan.quitsmoking.repository.DailySmokingStatRepository;
+import com.jiayan.quitsmoking.repository.SmokingRecordRepository;
+import com.jiayan.quitsmoking.repository.SmokingStatMaterializationRepository;
+import com.jiayan.quitsmoking.service.SmokingStatisticsService;
+import com.jiayan.quitsmoking.util.TimeZoneUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 吸烟/训练趋势统计服务实现类
+ * 每日统计由 SQL 分组汇总得到并物化到 daily_smoking_stats，记录变更时只重算所在的一天；
+ * 查询时读取范围内的日数据，在内存中合并为天/周/月分桶并计算连续无烟天数等指标
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SmokingStatisticsServiceImpl implements SmokingStatisticsService {
+
+    /**
+     * 单次查询允许的最大天数
+     */
+    private static final long MAX_RANGE_DAYS = 3660;
+
+    /**
+     * 重建统计时的时间范围（UTC）
+     */
+    private static final LocalDateTime REBUILD_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime REBUILD_END = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private final DailySmokingStatRepository dailySmokingStatRepository;
+    private final SmokingRecordRepository smokingRecordRepository;
+    private final SmokingStatMaterializationRepository materializationRepository;
+
+    @Override
+    @Transactional
+    public SmokingStatisticsResponse getStatistics(Long userId, LocalDate startDate, LocalDate endDate,
+                                                   StatisticsGranularity granularity) {
+        log.info("获取用户趋势统计，用户ID: {}, 范围: {} ~ {}, 粒度: {}", userId, startDate, endDate, granularity);
+
+        if (startDate.isAfter(endDate)) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST.getCode(), "开始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) > MAX_RANGE_DAYS) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST.getCode(), "统计范围过大");
+        }
+
+        // 没有物化标记的用户（历史记录早于统计上线）首次查询时整体补算一次；
+        // 不能以是否已有日统计判断，上线后新写入的记录只会物化当天
+        if (!materializationRepository.existsById(userId)) {
+            rebuildUserStatistics(userId);
+        }
+
+        Map<LocalDate, DailySmokingStat> statsByDate = new HashMap<>();
+        List<DailySmokingStat> stats = dailySmokingStatRepository
+                .findByUserIdAndStatDateBetweenOrderByStatDateAsc(userId, startDate, endDate);
+        for (DailySmokingStat stat : stats) {
+            statsByDate.put(stat.getStatDate(), stat);
+        }
+
+        SmokingStatisticsResponse response = new SmokingStatisticsResponse();
+        response.setGranularity(granularity.getCode());
+        response.setStartDate(startDate);
+        response.setEndDate(endDate);
+        response.setBuckets(buildBuckets(statsByDate, startDate, endDate, granularity));
+
+        long totalTrainingSeconds = 0;
+        for (DailySmokingStat stat : stats) {
+            response.setTotalSmokingCount(response.getTotalSmokingCount() + stat.getSmokingRecords());
+            response.setTotalCigaretteCount(response.getTotalCigaretteCount() + stat.getCigaretteCount());
+            response.setTotalTrainingCount(response.getTotalTrainingCount() + stat.getTrainingCount());
+            totalTrainingSeconds += stat.getTrainingSeconds();
+        }
+        response.setTotalTrainingMinutes(toMinutes(totalTrainingSeconds));
+
+        fillSmokeFreeStreaks(response, userId, statsByDate, startDate, endDate);
+        response.setLongestSmokeFreeMinutes(computeLongestSmokeFreeMinutes(stats, endDate));
+
+        return response;
+    }
+
+    @Override
+    public void onRecordChanged(Long userId, LocalDateTime timestamp) {
+        recomputeDay(userId, TimeZoneUtil.getBeijingDate(timestamp));
+    }
+
+    @Override
+    public void onRecordsChanged(List<SmokingRecord> records) {
+        Map<Long, Set<LocalDate>> affectedDays = new HashMap<>();
+        for (SmokingRecord record : records) {
+            affectedDays.computeIfAbsent(record.getUserId(), k -> new LinkedHashSet<>())
+                    .add(TimeZoneUtil.getBeijingDate(record.getTimestamp()));
+        }
+        affectedDays.forEach((userId, days) -> days.forEach(day -> recomputeDay(userId, day)));
+    }
+
+    @Override
+    @Transactional
+    public void rebuildUserStatistics(Long userId) {
+        log.info("重建用户每日统计，用户ID: {}", userId);
+
+        dailySmokingStatRepository.deleteByUserId(userId);
+        List<Object[]> rows = smokingRecordRepository.aggregateDailyStats(userId, REBUILD_START, REBUILD_END);
+        for (Object[] row : rows) {
+            upsertRow(userId, row);
+        }
+        materializationRepository.markMaterialized(userId, TimeZoneUtil.getCurrentBeijingTime());
+
+        log.info("用户 {} 每日统计重建完成，天数: {}", userId, rows.size());
+    }
+
+    /**
+     * 重算用户某一天（北京时间）的统计
+     */
+    private void recomputeDay(Long userId, LocalDate day) {
+        List<Object[]> rows = smokingRecordRepository.aggregateDailyStats(userId,
+                TimeZoneUtil.getUTCStartOfBeijingDay(day), TimeZoneUtil.getUTCStartOfBeijingDay(day.plusDays(1)));
+
+        if (rows.isEmpty()) {
+            dailySmokingStatRepository.deleteByUserIdAndStatDate(userId, day);
+            return;
+        }
+
+        upsertRow(userId, rows.get(0));
+    }
+
+    /**
+     * 将 aggregateDailyStats 的一行结果原子写入（插入或覆盖）当天统计
+     */
+    private void upsertRow(Long userId, Object[] row) {
+        DailySmokingStat stat = new DailySmokingStat();
+        stat.setUserId(userId);
+        stat.setStatDate(toLocalDate(row[0]));
+        stat.setSmokingRecords(toLong(row[1]));
+        stat.setCigaretteCount(toLong(row[2]));
+        stat.setTrainingCount(toLong(row[3]));
+        stat.setTrainingSeconds(toLong(row[4]));
+        stat.setFirstSmokingAt(toLocalDateTime(row[5]));
+        stat.setLastSmokingAt(toLocalDateTime(row[6]));
+        stat.setMaxSmokingGapSeconds(row[7] != null ? toLong(row[7]) : null);
+        stat.setUpdatedAt(TimeZoneUtil.getCurrentBeijingTime());
+        dailySmokingStatRepository.upsert(stat);
+    }
+
+    private List<SmokingStatisticsResponse.Bucket> buildBuckets(Map<LocalDate, DailySmokingStat> statsByDate,
+                                                                LocalDate startDate, LocalDate endDate,
+                                                                StatisticsGranularity granularity) {
+        Map<LocalDate, SmokingStatisticsResponse.Bucket> buckets = new LinkedHashMap<>();
+        Map<LocalDate, Long> trainingSeconds = new HashMap<>();
+
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            LocalDate periodStart = switch (granularity) {
+                case DAY -> day;
+                case WEEK -> day.with(DayOfWeek.MONDAY);
+                case MONTH -> day.withDayOfMonth(1);
+            };
+
+            SmokingStatisticsResponse.Bucket bucket = buckets.computeIfAbsent(periodStart, k -> {
+                SmokingStatisticsResponse.Bucket created = new SmokingStatisticsResponse.Bucket();
+                created.setPeriodStart(k);
+                return created;
+            });
+
+            DailySmokingStat stat = statsByDate.get(day);
+            if (stat != null) {
+                bucket.setSmokingCount(bucket.getSmokingCount() + stat.getSmokingRecords());
+                bucket.setCigaretteCount(bucket.getCigaretteCount() + stat.getCigaretteCount());
+                bucket.setTrainingCount(bucket.getTrainingCount() + stat.getTrainingCount());
+                trainingSeconds.merge(periodStart, stat.getTrainingSeconds(), Long::sum);
+            }
+        }
+
+        buckets.forEach((periodStart, bucket) ->
+                bucket.setTrainingMinutes(toMinutes(trainingSeconds.getOrDefault(periodStart, 0L))));
+        return new ArrayList<>(buckets.values());
+    }
+
+    /**
+     * 统计无烟天数及连续无烟天数，只统计用户开始记录之后、今天及之前的日期
+     */
+    private void fillSmokeFreeStreaks(SmokingStatisticsResponse response, Long userId,
+                                      Map<LocalDate, DailySmokingStat> statsByDate,
+                                      LocalDate startDate, LocalDate endDate) {
+        LocalDate firstDay = dailySmokingStatRepository.findFirstByUserIdOrderByStatDateAsc(userId)
+                .map(DailySmokingStat::getStatDate)
+                .orElse(null);
+        if (firstDay == null) {
+            return;
+        }
+
+        LocalDate from = startDate.isBefore(firstDay) ? firstDay : startDate;
+        LocalDate today = TimeZoneUtil.getCurrentBeijingDate();
+        LocalDate to = endDate.isAfter(today) ? today : endDate;
+
+        int smokeFreeDays = 0;
+        int currentStreak = 0;
+        int longestStreak = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            DailySmokingStat stat = statsByDate.get(day);
+            if (stat == null || stat.getSmokingRecords() == 0) {
+                smokeFreeDays++;
+                currentStreak++;
+                longestStreak = Math.max(longestStreak, currentStreak);
+            } else {
+                currentStreak = 0;
+            }
+        }
+
+        response.setSmokeFreeDays(smokeFreeDays);
+        response.setCurrentSmokeFreeStreak(currentStreak);
+        response.setLongestSmokeFreeStreak(longestStreak);
+    }
+
+    /**
+     * 最长无烟间隔：取每日内部最大间隔、相邻吸烟日之间的间隔，以及最后一次吸烟至今（范围包含今天时）的间隔
+     */
+    private long computeLongestSmokeFreeMinutes(List<DailySmokingStat> stats, LocalDate endDate) {
+        long longestSeconds = 0;
+        LocalDateTime previousLast = null;
+
+        for (DailySmokingStat stat : stats) {
+            if (stat.getSmokingRecords() == 0 || stat.getFirstSmokingAt() == null) {
+                continue;
+            }
+            if (stat.getMaxSmokingGapSeconds() != null) {
+                longestSeconds = Math.max(longestSeconds, stat.getMaxSmokingGapSeconds());
+            }
+            if (previousLast != null) {
+                longestSeconds = Math.max(longestSeconds,
+                        Duration.between(previousLast, stat.getFirstSmokingAt()).getSeconds());
+            }
+            previousLast = stat.getLastSmokingAt();
+        }
+
+        if (previousLast != null && !endDate.isBefore(TimeZoneUtil.getCurrentBeijingDate())) {
+            longestSeconds = Math.max(longestSeconds,
+                    Duration.between(previousLast, TimeZoneUtil.getCurrentUTCTime()).getSeconds());
+        }
+
+        return longestSeconds / 60;
+    }
+
+    private long toMinutes(long seconds) {
+        return Math.round(seconds / 60.0);
+    }
+
+    private long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private LocalDate toLocalDate(Object value) {
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        return (LocalDate) value;
+    }
+
+    private LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+}
@@ -0,0 +1,281 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import com.jiayan.quitsmoking.media.BlobStore;
+import com.jiayan.quitsmoking.media.ImageDerivativeGenerator;
+import com.jiayan.quitsmoking.repository.AudioRepository;
+import com.jiayan.quitsmoking.repository.CommentImageRepository;
+import com.jiayan.quitsmoking.repository.DiaryRepository;
+import com.jiayan.quitsmoking.repository.KnowledgeArticleRepository;
+import com.jiayan.quitsmoking.repository.KnowledgeCategoryRepository;
+import com.jiayan.quitsmoking.repository.KnowledgeContentBlockRepository;
+import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.util.CategoryIconUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 上传文件垃圾回收（标记-清除）
+ * 标记：从日记图片、评论图片、文章内容块和正文、音频、用户头像和背景图、分类图标中收集仍被引用的文件；
+ * 清除：删除超过保留期且未被引用的上传文件（音频由管理员放置后再建记录，只纳入不删除；
+ * 代码中使用的默认图片及文件名以 default 开头的管理员放置文件始终保留），
+ * 把尚未纳入内容寻址存储的旧文件纳入（相同内容合并为一份），最后清理已无文件链接的 blob。
+ * 默认不定时执行；开启前先用 dry-run（默认开启）只在日志中列出待删除文件，确认无误后再关闭
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UploadGarbageCollector {
+
+    private static final Pattern DIARY_IMAGE_URL = Pattern.compile("/diary/image/(\\d+)/([^\"'/?#\\s]+)");
+    /**
+     * /uploads/{目录}/ 之后的多级路径（Markdown/HTML 中 URL 后常跟括号、尖括号）
+     */
+    private static final Pattern UPLOADS_URL = Pattern.compile("/uploads/([\\w-]+)/([^\"'?#\\s()<>]+)");
+
+    /**
+     * 日记图片信息由客户端提交，可能只存文件名：其中形如文件名的片段都按该用户目录下的文件保留
+     */
+    private static final Pattern FILE_NAME = Pattern.compile("[\\w-]+\\.\\w{2,5}");
+
+    private static final String AUDIOS = "audios";
+    private static final String DIARIES = "diaries";
+
+    /**
+     * 管理员放置的默认文件名前缀，即使未被引用也不删除
+     */
+    private static final String DEFAULT_FILE_PREFIX = "default";
+
+    /**
+     * 标记阶段每页读取的行数
+     */
+    private static final int MARK_PAGE_SIZE = 500;
+
+    private final DiaryRepository diaryRepository;
+    private final CommentImageRepository commentImageRepository;
+    private final KnowledgeContentBlockRepository contentBlockRepository;
+    private final KnowledgeArticleRepository articleRepository;
+    private final AudioRepository audioRepository;
+    private final UserRepository userRepository;
+    private final KnowledgeCategoryRepository categoryRepository;
+    private final BlobStore blobStore;
+    private final ImageDerivativeGenerator imageDerivativeGenerator;
+
+    @Value("${diary.image.upload-path:uploads/diaries}")
+    private String diaryUploadPath;
+
+    @Value("${media.blob.gc-grace-hours:24}")
+    private long graceHours;
+
+    /**
+     * 只记录待删除和待纳入的文件，不做任何修改
+     */
+    @Value("${media.blob.gc-dry-run:true}")
+    private boolean dryRun;
+
+    @Scheduled(cron = "${media.blob.gc-cron:-}")
+    public void scheduledCollect() {
+        collect();
+    }
+
+    /**
+     * 执行一次垃圾回收，返回删除（dry-run 时为待删除）的上传文件数
+     */
+    public int collect() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Path> directories = directories();
+        Set<Path> referenced = markReferencedFiles(directories);
+        long cutoff = startTime - Duration.ofHours(graceHours).toMillis();
+
+        int deleted = 0;
+        int adopted = 0;
+        for (Map.Entry<String, Path> entry : directories.entrySet()) {
+            if (!Files.isDirectory(entry.getValue())) {
+                continue;
+            }
+            boolean deletable = !AUDIOS.equals(entry.getKey());
+            for (Path file : listFiles(entry.getValue())) {
+                try {
+                    // 保留期内的文件可能刚上传、尚未保存到业务数据
+                    if (Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                        continue;
+                    }
+                    if (deletable && !referenced.contains(file) && !isDefaultFile(file)) {
+                        if (dryRun) {
+                            log.info("[dry-run] 待删除未引用文件: {}", file);
+                        } else {
+                            Files.deleteIfExists(file);
+                            imageDerivativeGenerator.deleteDerivatives(file);
+                        }
+                        deleted++;
+                    } else if (!blobStore.isManaged(file)) {
+                        if (!dryRun) {
+                            blobStore.adopt(file);
+                        }
+                        adopted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("上传文件回收处理失败: {}", file, e);
+                }
+            }
+        }
+
+        if (dryRun) {
+            log.info("[dry-run] 上传文件垃圾回收预演完成: 引用文件 {} 个, 待删除未引用文件 {} 个, 待纳入存储 {} 个, 耗时 {} ms",
+                    referenced.size(), deleted, adopted, System.currentTimeMillis() - startTime);
+            return deleted;
+        }
+        int sweptBlobs = 0;
+        try {
+            sweptBlobs = blobStore.sweep(Duration.ofHours(graceHours));
+        } catch (IOException e) {
+            log.warn("清理无引用 blob 失败", e);
+        }
+        log.info("上传文件垃圾回收完成: 引用文件 {} 个, 删除未引用文件 {} 个, 纳入存储 {} 个, 清理 blob {} 个, 耗时 {} ms",
+                referenced.size(), deleted, adopted, sweptBlobs, System.currentTimeMillis() - startTime);
+        return deleted;
+    }
+
+    private Map<String, Path> directories() {
+        return Map.of(
+                DIARIES, normalize(Paths.get(diaryUploadPath)),
+                "articles", normalize(Paths.get("uploads", "articles")),
+                "avatars", normalize(Paths.get("uploads", "avatars")),
+                "backgrounds", normalize(Paths.get("uploads", "backgrounds")),
+                "category-icons", normalize(Paths.get("uploads", "category-icons")),
+                AUDIOS, normalize(Paths.get("uploads", AUDIOS)));
+    }
+
+    private Set<Path> markReferencedFiles(Map<String, Path> directories) {
+        Set<Path> referenced = new HashSet<>();
+        forEachPage(diaryRepository::findUserImageUrlsAfter, row -> {
+            String imageUrls = (String) row[2];
+            addUrls(referenced, directories, imageUrls);
+            Matcher matcher = FILE_NAME.matcher(imageUrls);
+            while (matcher.find()) {
+                addFile(referenced, directories, DIARIES, "user_" + row[1] + "/" + matcher.group());
+            }
+        });
+        forEachPage(commentImageRepository::findImageUrlsAfter,
+                row -> addUrls(referenced, directories, (String) row[1]));
+        forEachPage(contentBlockRepository::findImageUrlsAfter,
+                row -> addUrls(referenced, directories, (String) row[1]));
+        forEachPage(articleRepository::findContentsReferencingUploadsAfter,
+                row -> addUrls(referenced, directories, (String) row[1]));
+        forEachPage(audioRepository::findFileNamesAfter,
+                row -> addFile(referenced, directories, AUDIOS, (String) row[1]));
+        forEachPage(userRepository::findAvatarsAndBackgroundsAfter, row -> {
+            if (row[1] != null) {
+                addNameOrUrl(referenced, directories, "avatars", (String) row[1]);
+            }
+            if (row[2] != null) {
+                addNameOrUrl(referenced, directories, "backgrounds", (String) row[2]);
+            }
+        });
+        forEachPage(categoryRepository::findIconNamesAfter,
+                row -> addNameOrUrl(referenced, directories, "category-icons", (String) row[1]));
+
+        // 代码中使用的默认文件
+        addNameOrUrl(referenced, directories, "backgrounds", BackgroundServiceImpl.DEFAULT_BACKGROUND);
+        addFile(referenced, directories, "category-icons", CategoryIconUtil.getDefaultIconName());
+        return referenced;
+    }
+
+    /**
+     * 按ID顺序分页读取（每行第一列为ID），避免一次把全部日记、文章正文载入内存
+     */
+    private void forEachPage(BiFunction<Long, Pageable, List<Object[]>> query, Consumer<Object[]> consumer) {
+        Pageable page = PageRequest.of(0, MARK_PAGE_SIZE);
+        long afterId = 0;
+        while (true) {
+            List<Object[]> rows = query.apply(afterId, page);
+            rows.forEach(consumer);
+            if (rows.size() < MARK_PAGE_SIZE) {
+                return;
+            }
+            afterId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+        }
+    }
+
+    /**
+     * 字段可能存文件名，也可能存 URL：按 URL 解析的同时把最后一段当作该目录下的文件名（宁可多保留）
+     */
+    private void addNameOrUrl(Set<Path> referenced, Map<String, Path> directories, String directory, String value) {
+        addUrls(referenced, directories, value);
+        String name = value;
+        int query = name.indexOf('?');
+        if (query >= 0) {
+            name = name.substring(0, query);
+        }
+        addFile(referenced, directories, directory, name.substring(name.lastIndexOf('/') + 1));
+    }
+
+    private void addUrls(Set<Path> referenced, Map<String, Path> directories, String text) {
+        Matcher diaryMatcher = DIARY_IMAGE_URL.matcher(text);
+        while (diaryMatcher.find()) {
+            addFile(referenced, directories, DIARIES, "user_" + diaryMatcher.group(1) + "/" + diaryMatcher.group(2));
+        }
+        Matcher uploadsMatcher = UPLOADS_URL.matcher(text);
+        while (uploadsMatcher.find()) {
+            addFile(referenced, directories, uploadsMatcher.group(1), uploadsMatcher.group(2));
+        }
+    }
+
+    private void addFile(Set<Path> referenced, Map<String, Path> directories, String directory, String relativePath) {
+        Path base = directories.get(directory);
+        if (base != null && !relativePath.isBlank()) {
+            referenced.add(base.resolve(relativePath).normalize());
+        }
+    }
+
+    /**
+     * 列出目录下的上传文件（跳过缩略图规格目录和发布中的临时文件）
+     */
+    private List<Path> listFiles(Path directory) {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .filter(file -> !isVariant(directory.relativize(file)))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("遍历上传目录失败: {}", directory, e);
+            return List.of();
+        }
+    }
+
+    private static boolean isDefaultFile(Path file) {
+        return file.getFileName().toString().startsWith(DEFAULT_FILE_PREFIX);
+    }
+
+    private static boolean isVariant(Path relativePath) {
+        for (Path name : relativePath) {
+            if (ImageDerivativeGenerator.VARIANTS_DIR.equals(name.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
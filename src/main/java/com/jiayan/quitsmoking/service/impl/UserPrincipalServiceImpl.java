@@ -0,0 +1,146 @@
+package com.jiayan.quitsmoking.service.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.security.UserPrincipal;
+import com.jiayan.quitsmoking.security.UserProfileSnapshot;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户快照缓存服务实现类
+ * 用户资料、戒烟目标、头像、禁言和发帖权限的写路径会调用 evict 精确失效，
+ * 过期时间只用于兜底直接修改数据库等未经过服务层的变更
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserPrincipalServiceImpl implements UserPrincipalService {
+
+    private static final int PRINCIPAL_CACHE_CAPACITY = 20000;
+    private static final int PROFILE_CACHE_CAPACITY = 5000;
+    private static final long CACHE_TIMEOUT = 10 * 60 * 1000L;
+
+    /**
+     * 每查询多少次输出一次缓存统计日志
+     */
+    private static final long STATS_LOG_INTERVAL = 10000;
+
+    private final UserRepository userRepository;
+
+    private final LRUCache<Long, UserPrincipal> principalCache =
+            CacheUtil.newLRUCache(PRINCIPAL_CACHE_CAPACITY, CACHE_TIMEOUT);
+
+    private final LRUCache<Long, UserProfileSnapshot> profileCache =
+            CacheUtil.newLRUCache(PROFILE_CACHE_CAPACITY, CACHE_TIMEOUT);
+
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    @Override
+    public UserPrincipal loadPrincipal(Long userId) {
+        logStatsIfDue();
+        UserPrincipal principal = principalCache.get(userId, false);
+        if (principal != null) {
+            return principal;
+        }
+
+        principal = userRepository.findById(userId)
+                .map(UserPrincipal::fromUser)
+                .orElse(null);
+        if (principal != null) {
+            principalCache.put(userId, principal, timeoutOf(principal));
+        }
+        return principal;
+    }
+
+    @Override
+    public UserProfileSnapshot loadProfileSnapshot(Long userId) {
+        logStatsIfDue();
+        UserProfileSnapshot snapshot = profileCache.get(userId, false);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        snapshot = userRepository.findById(userId)
+                .map(UserProfileSnapshot::fromUser)
+                .orElse(null);
+        if (snapshot != null) {
+            profileCache.put(userId, snapshot);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+
+        // 立即失效，并在事务提交后再次失效，防止提交前的并发读取把旧数据重新放回缓存
+        evictNow(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(userId);
+                }
+            });
+        }
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("principal", describe(principalCache));
+        stats.put("profile", describe(profileCache));
+        return stats;
+    }
+
+    /**
+     * 快照缓存到权限掩码的有效期限为止，使禁言结束、权限过期后重新计算
+     */
+    private static long timeoutOf(UserPrincipal principal) {
+        LocalDateTime validUntil = principal.getPermissionsValidUntil();
+        if (validUntil == null) {
+            return CACHE_TIMEOUT;
+        }
+        long millis = Duration.between(LocalDateTime.now(), validUntil).toMillis() + 1;
+        return Math.max(1, Math.min(CACHE_TIMEOUT, millis));
+    }
+
+    private void evictNow(Long userId) {
+        principalCache.remove(userId);
+        profileCache.remove(userId);
+    }
+
+    private void logStatsIfDue() {
+        if (lookupCount.incrementAndGet() % STATS_LOG_INTERVAL == 0) {
+            log.info("用户快照缓存统计: {}", getCacheStats());
+        }
+    }
+
+    private static Map<String, Object> describe(LRUCache<Long, ?> cache) {
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        long total = hits + misses;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("capacity", cache.capacity());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        return stats;
+    }
+}
@@ -7,6 +7,8 @@ import com.jiayan.quitsmoking.entity.User;
 import com.jiayan.quitsmoking.enums.ErrorCode;
 import com.jiayan.quitsmoking.exception.BusinessException;
 import com.jiayan.quitsmoking.repository.UserRepository;
+import com.jiayan.quitsmoking.security.UserProfileSnapshot;
+import com.jiayan.quitsmoking.service.UserPrincipalService;
 import com.jiayan.quitsmoking.service.UserService;
 import com.jiayan.quitsmoking.util.JwtUtil;
 import lombok.RequiredArgsConstructor;
@@ -38,6 +40,7 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
+    private final UserPrincipalService userPrincipalService;
 
     // 临时存储验证码（生产环境应使用Redis）
     private static final ConcurrentHashMap<String, CodeInfo> CODE_CACHE = new ConcurrentHashMap<>();
@@ -245,8 +248,12 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public UserProfileResponse getUserProfile(Long userId) {
-        User user = getUserById(userId);
-        return UserProfileResponse.fromEntity(user);
+        // 读取缓存的用户资料快照，资料变更的写路径会失效快照
+        UserProfileSnapshot snapshot = userPrincipalService.loadProfileSnapshot(userId);
+        if (snapshot == null || !Boolean.TRUE.equals(snapshot.enabled())) {
+            throw new BusinessException(ErrorCode.NOT_FOUND.getCode(), "用户不存在或已禁用");
+        }
+        return UserProfileResponse.fromSnapshot(snapshot);
     }
 
     @Override
@@ -353,6 +360,7 @@ public class UserServiceImpl implements UserService {
         }
         
         User savedUser = userRepository.save(user);
+        userPrincipalService.evict(userId);
         log.info("用户信息更新完成: userId={}", userId);
         return UserProfileResponse.fromEntity(savedUser);
     }
@@ -375,6 +383,7 @@ public class UserServiceImpl implements UserService {
         }
         
         User savedUser = userRepository.save(user);
+        userPrincipalService.evict(userId);
         return UserProfileResponse.fromEntity(savedUser);
     }
 
@@ -384,6 +393,7 @@ public class UserServiceImpl implements UserService {
         User user = getUserById(userId);
         user.setAvatar(avatarUrl);
         User savedUser = userRepository.save(user);
+        userPrincipalService.evict(userId);
         return UserProfileResponse.fromEntity(savedUser);
     }
 
@@ -407,6 +417,7 @@ public class UserServiceImpl implements UserService {
         }
         
         User savedUser = userRepository.save(user);
+        userPrincipalService.evict(userId);
         return UserProfileResponse.fromEntity(savedUser);
     }
 
@@ -432,6 +443,7 @@ public class UserServiceImpl implements UserService {
         
         user.setCurrentDailyCigarettes(currentDailyCigarettes);
         User savedUser = userRepository.save(user);
+        userPrincipalService.evict(userId);
         return UserProfileResponse.fromEntity(savedUser);
     }
 
@@ -1,9 +1,15 @@
 package com.jiayan.quitsmoking.util;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
@@ -12,10 +18,23 @@ import java.util.Map;
 
 /**
  * JWT工具类
+ * 签名密钥和解析器在启动时构建一次；验签通过的Token按哈希缓存其Claims直到过期，
+ * 同一请求内重复解析同一Token时直接复用请求属性中的结果
  */
 @Component
 public class JwtUtil {
 
+    /**
+     * 已验证Token缓存容量及最长缓存时间（毫秒）
+     */
+    private static final int CLAIMS_CACHE_CAPACITY = 10000;
+    private static final long CLAIMS_CACHE_MAX_TIMEOUT = 30 * 60 * 1000L;
+
+    /**
+     * 当前请求已解析Token的请求属性名
+     */
+    private static final String REQUEST_CLAIMS_ATTRIBUTE = JwtUtil.class.getName() + ".VERIFIED_TOKEN";
+
     @Value("${jwt.secret}")
     private String secret;
 
@@ -25,6 +44,21 @@ public class JwtUtil {
     @Value("${jwt.refresh-expiration}")
     private Long refreshExpiration;
 
+    private SecretKey signingKey;
+
+    private JwtParser jwtParser;
+
+    private final LRUCache<String, Claims> claimsCache =
+            CacheUtil.newLRUCache(CLAIMS_CACHE_CAPACITY, CLAIMS_CACHE_MAX_TIMEOUT);
+
+    @PostConstruct
+    public void init() {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     /**
      * 生成访问Token
      */
@@ -98,28 +132,76 @@ public class JwtUtil {
      */
     private boolean isTokenExpired(Claims claims) {
         Date expiration = claims.getExpiration();
-        return expiration.before(new Date());
+        return expiration != null && expiration.before(new Date());
     }
 
     /**
-     * 从Token中解析Claims
+     * 从Token中解析Claims：请求内结果 -> 已验证Token缓存 -> 验签解析
      */
     private Claims getClaimsFromToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            Object verified = requestAttributes.getAttribute(REQUEST_CLAIMS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (verified instanceof VerifiedToken verifiedToken && verifiedToken.token().equals(token)) {
+                return verifiedToken.claims();
+            }
+        }
+
+        Claims claims = getVerifiedClaims(token);
+
+        if (requestAttributes != null && claims != null) {
+            requestAttributes.setAttribute(REQUEST_CLAIMS_ATTRIBUTE, new VerifiedToken(token, claims),
+                    RequestAttributes.SCOPE_REQUEST);
+        }
+        return claims;
+    }
+
+    /**
+     * 从缓存获取已验证的Claims，未命中或已过期时重新验签
+     */
+    private Claims getVerifiedClaims(String token) {
+        String cacheKey = DigestUtil.sha256Hex(token);
+
+        Claims claims = claimsCache.get(cacheKey, false);
+        if (claims != null) {
+            if (!isTokenExpired(claims)) {
+                return claims;
+            }
+            claimsCache.remove(cacheKey);
+            return null;
+        }
+
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            claims = jwtParser.parseClaimsJws(token).getBody();
         } catch (JwtException | IllegalArgumentException e) {
             return null;
         }
+
+        // 缓存时间不超过Token剩余有效期
+        long timeout = CLAIMS_CACHE_MAX_TIMEOUT;
+        if (claims.getExpiration() != null) {
+            timeout = Math.min(timeout, claims.getExpiration().getTime() - System.currentTimeMillis());
+        }
+        if (timeout > 0) {
+            claimsCache.put(cacheKey, claims, timeout);
+        }
+        return claims;
     }
 
     /**
      * 获取签名密钥
      */
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        return signingKey;
+    }
+
+    /**
+     * 已验证的Token及其Claims
+     */
+    private record VerifiedToken(String token, Claims claims) {
     }
-} 
\ No newline at end of file
+}
@@ -64,6 +64,27 @@ public class TimeZoneUtil {
         return LocalDateTime.now(BEIJING_ZONE);
     }
     
+    /**
+     * 获取当前北京日期
+     */
+    public static LocalDate getCurrentBeijingDate() {
+        return LocalDate.now(BEIJING_ZONE);
+    }
+    
+    /**
+     * 获取北京时间某一天开始时刻对应的UTC时间
+     */
+    public static LocalDateTime getUTCStartOfBeijingDay(LocalDate beijingDate) {
+        return convertBeijingToUTC(beijingDate.atStartOfDay());
+    }
+    
+    /**
+     * 获取UTC时间所在的北京日期
+     */
+    public static LocalDate getBeijingDate(LocalDateTime utcTime) {
+        return convertUTCToBeijing(utcTime).toLocalDate();
+    }
+    
     /**
      * 获取当前UTC时间
      */